@@ -0,0 +1,187 @@
+package com.sportalliance.graylog.plugins.slacknotification.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageSummary;
+import org.graylog2.plugin.Tools;
+import org.joda.time.DateTime;
+
+import com.google.common.base.Splitter;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackResponse;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTimings;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTransport;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTransportProvider;
+import com.sportalliance.graylog.plugins.slacknotification.upload.BacklogFileFormat;
+import com.sportalliance.graylog.plugins.slacknotification.upload.MultipartBody;
+import com.sportalliance.graylog.plugins.slacknotification.upload.SlackBacklogUploader;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Uploads a large backlog to a local stand-in of the Slack files.upload endpoint, which parses the
+ * multipart request while it arrives and checks the form fields and the number of rows.
+ * <p>
+ * Run with {@code mvn -P load-test verify -Dload-test.main-class=com.sportalliance.graylog.plugins.slacknotification.loadtest.BacklogUploadCheck},
+ * settings are passed as system properties, e.g. {@code -Dcheck.rows=1000000 -Dcheck.format=ndjson}.
+ * The backlog items are created on access, so the heap use of the sender stays flat however many rows are sent.
+ */
+public class BacklogUploadCheck {
+
+	private static final String PATH = "/api/files.upload";
+	private static final Pattern BOUNDARY = Pattern.compile("boundary=(\\S+)");
+	private static final Pattern FIELD_NAME = Pattern.compile("name=\"([^\"]*)\"");
+
+	private final int rows = Integer.getInteger("check.rows", 200_000);
+	private final BacklogFileFormat format = BacklogFileFormat.forName(System.getProperty("check.format", "csv"));
+	private final List<String> columns = Splitter.on(',').trimResults().omitEmptyStrings()
+			.splitToList(System.getProperty("check.columns", ""));
+	private final String transport = System.getProperty("check.transport", SlackTransport.HTTP1);
+
+	public static void main(String[] args) throws Exception {
+		new BacklogUploadCheck().run();
+	}
+
+	private void run() throws Exception {
+		final Received received = new Received();
+		final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 16);
+		server.createContext(PATH, exchange -> received.handle(exchange));
+		server.start();
+		final SlackTransport slackTransport = new SlackTransportProvider(transport).get();
+		try {
+			final String url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + PATH;
+			final SlackClient client = new SlackClient(url, "", 0, "xoxb-check", slackTransport);
+			final MultipartBody body = SlackBacklogUploader.body("#check", "backlog-check." + format.extension(), format,
+					columns, new SyntheticBacklog(rows));
+
+			final Runtime runtime = Runtime.getRuntime();
+			System.gc();
+			final long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+			final long start = System.nanoTime();
+			final SlackResponse response = client.send(body.contentType(), body, new SlackTimings());
+			final double seconds = (System.nanoTime() - start) / 1_000_000_000d;
+			final long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+			final String permalink = SlackBacklogUploader.permalink(response);
+			System.out.printf(Locale.ROOT, "Uploaded %d rows, %.1f MB as %s in %.2f s via %s, heap %+.1f MB%n",
+					body.rows(), received.fileBytes / 1_048_576d, format.extension(), seconds, transport,
+					(heapAfter - heapBefore) / 1_048_576d);
+			System.out.printf(Locale.ROOT, "Stand-in received fields %s, %d rows, chunked %s, permalink %s%n",
+					received.fields, received.fileRows, received.chunked, permalink);
+
+			final int expectedRows = format == BacklogFileFormat.CSV ? rows + 1 : rows;
+			if (received.fileRows != expectedRows || !received.fields.containsKey("channels") || !received.chunked) {
+				throw new IllegalStateException("Upload check failed, expected " + expectedRows + " rows in a chunked request");
+			}
+		} finally {
+			slackTransport.shutdown();
+			server.stop(0);
+		}
+	}
+
+	/**
+	 * Reads the multipart body line by line and only keeps counts of the file part.
+	 */
+	private static class Received {
+		// Written by the server thread before it responds, read after the response arrived
+		private final Map<String, String> fields = new LinkedHashMap<>();
+		private volatile long fileRows;
+		private volatile long fileBytes;
+		private volatile boolean chunked;
+
+		void handle(HttpExchange exchange) throws IOException {
+			chunked = "chunked".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Transfer-Encoding"));
+			final Matcher boundaryMatcher = BOUNDARY.matcher(exchange.getRequestHeaders().getFirst("Content-Type"));
+			if (!boundaryMatcher.find()) {
+				respond(exchange, 400, "{\"ok\":false,\"error\":\"no_multipart\"}");
+				return;
+			}
+			final String delimiter = "--" + boundaryMatcher.group(1);
+
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+				String name = null;
+				boolean file = false;
+				boolean inHeaders = false;
+				final StringBuilder value = new StringBuilder();
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith(delimiter)) {
+						if (name != null && !file) {
+							fields.put(name, value.toString());
+						}
+						value.setLength(0);
+						name = null;
+						file = false;
+						inHeaders = true;
+					} else if (inHeaders) {
+						if (line.isEmpty()) {
+							inHeaders = false;
+						} else if (line.toLowerCase(Locale.ROOT).startsWith("content-disposition")) {
+							final Matcher nameMatcher = FIELD_NAME.matcher(line);
+							name = nameMatcher.find() ? nameMatcher.group(1) : null;
+							file = line.contains("filename=");
+						}
+					} else if (file) {
+						// The line break before the closing delimiter belongs to the multipart framing
+						if (!line.isEmpty()) {
+							fileRows++;
+							fileBytes += line.length() + 1;
+						}
+					} else {
+						value.append(line);
+					}
+				}
+			}
+			respond(exchange, 200, "{\"ok\":true,\"file\":{\"permalink\":\"https://example.slack.com/files/U0/F0/backlog\"}}");
+		}
+
+		private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+			final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(status, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		}
+	}
+
+	/**
+	 * Backlog whose items are created when they are read, like a backlog streamed from a search.
+	 */
+	private static class SyntheticBacklog extends AbstractList<MessageSummary> {
+		private final int size;
+		private final DateTime timestamp = Tools.nowUTC();
+
+		SyntheticBacklog(int size) {
+			this.size = size;
+		}
+
+		@Override
+		public MessageSummary get(int index) {
+			final Message message = new Message("Backlog message " + index + ", with \"quotes\" and a comma",
+					"source-" + (index % 20), timestamp);
+			message.addField("http_status", 500 + index % 4);
+			message.addField("path", "/api/items/" + index);
+			return new MessageSummary("check-index", message);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
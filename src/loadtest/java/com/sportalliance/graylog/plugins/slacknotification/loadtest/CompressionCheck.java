@@ -0,0 +1,161 @@
+package com.sportalliance.graylog.plugins.slacknotification.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageSummary;
+import org.graylog2.plugin.Tools;
+import org.joda.time.DateTime;
+
+import com.google.common.base.Splitter;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTimings;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTransport;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTransportProvider;
+import com.sportalliance.graylog.plugins.slacknotification.upload.BacklogFileFormat;
+import com.sportalliance.graylog.plugins.slacknotification.upload.MultipartBody;
+import com.sportalliance.graylog.plugins.slacknotification.upload.SlackBacklogUploader;
+
+/**
+ * Sends through each transport to the stub server, which decodes what it receives, and checks that
+ * payloads above the compression threshold arrive gzip compressed and intact, that smaller payloads
+ * and streamed bodies arrive uncompressed, and that a multipart backlog upload arrives complete.
+ * <p>
+ * Run with {@code mvn -P load-test verify -Dload-test.main-class=com.sportalliance.graylog.plugins.slacknotification.loadtest.CompressionCheck},
+ * settings are passed as system properties, e.g. {@code -Dcheck.payload-bytes=1048576 -Dcheck.rows=100000}.
+ */
+public class CompressionCheck {
+
+	private static final int COMPRESSION_THRESHOLD = 1024;
+
+	private final int payloadBytes = Integer.getInteger("check.payload-bytes", 256 * 1024);
+	private final int rows = Integer.getInteger("check.rows", 10_000);
+	private final List<String> transports = Splitter.on(',').trimResults().omitEmptyStrings()
+			.splitToList(System.getProperty("check.transports", SlackTransport.HTTP1 + "," + SlackTransport.HTTP2));
+
+	public static void main(String[] args) throws Exception {
+		new CompressionCheck().run();
+	}
+
+	private void run() throws Exception {
+		try (StubSlackServer server = new StubSlackServer(0, 0, 0).recordBodies()) {
+			for (String name : transports) {
+				final SlackTransport transport = new SlackTransportProvider(name).get();
+				try {
+					checkCompressed(server, transport, name);
+					checkUncompressed(server, transport, name);
+					checkStreamed(server, transport, name);
+					checkMultipart(server, transport, name);
+				} finally {
+					transport.shutdown();
+				}
+			}
+		}
+		System.out.println("Compression checks passed");
+	}
+
+	private void checkCompressed(StubSlackServer server, SlackTransport transport, String name) throws Exception {
+		final String url = server.webhookUrl("compression-check-" + name + "-gzip");
+		final byte[] payload = payload(payloadBytes);
+		new SlackClient(url, "", COMPRESSION_THRESHOLD, null, transport).send(payload);
+
+		final StubSlackServer.ReceivedRequest received = received(server, url);
+		check("gzip".equalsIgnoreCase(received.contentEncoding()),
+				name + ": payload above the threshold was sent with Content-Encoding " + received.contentEncoding());
+		check(Arrays.equals(received.body(), payload), name + ": gzip payload did not round-trip");
+		check(received.wireBytes() < payload.length, name + ": gzip payload was not smaller on the wire");
+		System.out.printf(Locale.ROOT, "%s: %d byte payload sent as %d gzip bytes%n", name, payload.length, received.wireBytes());
+	}
+
+	private void checkUncompressed(StubSlackServer server, SlackTransport transport, String name) throws Exception {
+		final String url = server.webhookUrl("compression-check-" + name + "-small");
+		final byte[] payload = payload(COMPRESSION_THRESHOLD / 2);
+		new SlackClient(url, "", COMPRESSION_THRESHOLD, null, transport).send(payload);
+
+		final StubSlackServer.ReceivedRequest received = received(server, url);
+		check(received.contentEncoding() == null,
+				name + ": payload below the threshold was sent with Content-Encoding " + received.contentEncoding());
+		check(Arrays.equals(received.body(), payload), name + ": small payload did not round-trip");
+	}
+
+	private void checkStreamed(StubSlackServer server, SlackTransport transport, String name) throws Exception {
+		final String url = server.webhookUrl("compression-check-" + name + "-stream");
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		writeLines(expected);
+		// A compression threshold does not apply to streamed bodies
+		new SlackClient(url, "", COMPRESSION_THRESHOLD, null, transport)
+				.send("application/x-ndjson", this::writeLines, new SlackTimings());
+
+		final StubSlackServer.ReceivedRequest received = received(server, url);
+		check(received.contentEncoding() == null, name + ": streamed body was sent with Content-Encoding " + received.contentEncoding());
+		check("application/x-ndjson".equals(received.contentType()), name + ": streamed body was sent as " + received.contentType());
+		check(Arrays.equals(received.body(), expected.toByteArray()), name + ": streamed body did not round-trip");
+	}
+
+	private void checkMultipart(StubSlackServer server, SlackTransport transport, String name) throws Exception {
+		final String url = server.webhookUrl("compression-check-" + name + "-upload");
+		final MultipartBody body = SlackBacklogUploader.body("#check", "backlog.csv", BacklogFileFormat.CSV,
+				Collections.singletonList("path"), backlog());
+		new SlackClient(url, "", COMPRESSION_THRESHOLD, "xoxb-check", transport)
+				.send(body.contentType(), body, new SlackTimings());
+
+		final StubSlackServer.ReceivedRequest received = received(server, url);
+		final String text = new String(received.body(), StandardCharsets.UTF_8);
+		final String boundary = body.contentType().substring(body.contentType().indexOf("boundary=") + "boundary=".length());
+		check(body.contentType().equals(received.contentType()), name + ": upload was sent as " + received.contentType());
+		check(received.contentEncoding() == null, name + ": upload was sent with Content-Encoding " + received.contentEncoding());
+		check(body.rows() == rows, name + ": " + body.rows() + " of " + rows + " rows were written");
+		check(text.startsWith("--" + boundary + "\r\n") && text.endsWith("\r\n--" + boundary + "--\r\n"),
+				name + ": upload is not a complete multipart body");
+		check(text.contains("/api/items/0\r\n") && text.contains("/api/items/" + (rows - 1) + "\r\n"),
+				name + ": upload is missing rows");
+	}
+
+	private static StubSlackServer.ReceivedRequest received(StubSlackServer server, String url) {
+		final StubSlackServer.ReceivedRequest received = server.lastRequest(url);
+		check(received != null, "No request was received at " + url);
+		return received;
+	}
+
+	/**
+	 * A message payload of roughly the given size, repetitive like a rendered backlog.
+	 */
+	private static byte[] payload(int size) {
+		final StringBuilder text = new StringBuilder(size + 64).append("{\"text\":\"");
+		for (int i = 0; text.length() < size; i++) {
+			text.append("Backlog message ").append(i).append(" from source-").append(i % 20).append("\\n");
+		}
+		return text.append("\"}").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private void writeLines(OutputStream out) throws IOException {
+		for (int i = 0; i < rows; i++) {
+			out.write(("{\"message\":\"Backlog message " + i + "\"}\n").getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	private List<MessageSummary> backlog() {
+		final DateTime timestamp = Tools.nowUTC();
+		final List<MessageSummary> backlog = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			final Message message = new Message("Backlog message " + i, "source-" + (i % 20), timestamp);
+			message.addField("path", "/api/items/" + i);
+			backlog.add(new MessageSummary("check-index", message));
+		}
+		return backlog;
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new IllegalStateException(message);
+		}
+	}
+}
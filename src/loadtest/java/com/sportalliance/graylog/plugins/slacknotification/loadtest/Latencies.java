@@ -0,0 +1,46 @@
+package com.sportalliance.graylog.plugins.slacknotification.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of one worker thread, merged after the run to compute percentiles.
+ */
+class Latencies {
+
+	private long[] nanos = new long[4096];
+	private int size;
+
+	void add(long latencyNanos) {
+		if (size == nanos.length) {
+			nanos = Arrays.copyOf(nanos, size * 2);
+		}
+		nanos[size++] = latencyNanos;
+	}
+
+	int size() {
+		return size;
+	}
+
+	static long[] mergeSorted(Iterable<Latencies> all) {
+		int total = 0;
+		for (Latencies latencies : all) {
+			total += latencies.size;
+		}
+		final long[] merged = new long[total];
+		int offset = 0;
+		for (Latencies latencies : all) {
+			System.arraycopy(latencies.nanos, 0, merged, offset, latencies.size);
+			offset += latencies.size;
+		}
+		Arrays.sort(merged);
+		return merged;
+	}
+
+	static double percentileMillis(long[] sorted, double percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		final int index = (int) Math.ceil(percentile / 100d * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000d;
+	}
+}
@@ -0,0 +1,263 @@
+package com.sportalliance.graylog.plugins.slacknotification.loadtest;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.graylog.events.notifications.EventNotificationContext;
+import org.graylog.events.notifications.EventNotificationService;
+import org.graylog.events.notifications.PermanentEventNotificationException;
+import org.graylog2.notifications.NotificationService;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.plugin.system.NodeId;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.graylog2.streams.StreamService;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.floreysoft.jmte.Engine;
+import com.github.joschi.jadconfig.util.Duration;
+import com.github.joschi.jadconfig.util.Size;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.RateLimiter;
+import com.sportalliance.graylog.plugins.slacknotification.SlackDispatcher;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeCache;
+import com.sportalliance.graylog.plugins.slacknotification.SlackSendGuard;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTransport;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTransportProvider;
+import com.sportalliance.graylog.plugins.slacknotification.audit.DeliveryAuditLog;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotification;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+import com.sportalliance.graylog.plugins.slacknotification.digest.SlackDigestBuffer;
+import com.sportalliance.graylog.plugins.slacknotification.live.SlackLiveMessages;
+import com.sportalliance.graylog.plugins.slacknotification.suppression.SlackSuppressor;
+import com.sportalliance.graylog.plugins.slacknotification.template.TemplateRenderer;
+import com.sportalliance.graylog.plugins.slacknotification.upload.SlackBacklogUploader;
+
+/**
+ * Replays recorded or synthetic events through {@link SlackEventNotification#execute(EventNotificationContext)}
+ * against a local stub webhook and reports throughput, latency percentiles and allocation rate.
+ * <p>
+ * Run with {@code mvn -P load-test verify}, settings are passed as system properties, e.g.
+ * {@code -Dloadtest.rate=1000 -Dloadtest.latency-ms=50 -Dloadtest.error-429=0.01}. Only the Graylog
+ * services are stubbed, the send guard, audit log and runtime cache are the production classes.
+ */
+public class LoadTest {
+
+	private static final String NOTIFICATION_ID = "load-test-notification";
+	private static final String CUSTOM_MESSAGE = ""
+			+ "Message: ${event.message}\n"
+			+ "Streams: ${streams}\n"
+			+ "${if backlog}Last messages accounting for this alert:\n"
+			+ "${foreach backlog item}${item.message}\n"
+			+ "${end}${else}<No backlog>\n"
+			+ "${end}";
+
+	private final int rate = Integer.getInteger("loadtest.rate", 1000);
+	private final int threads = Integer.getInteger("loadtest.threads", 64);
+	private final int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 5);
+	private final int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 30);
+	private final int syntheticEvents = Integer.getInteger("loadtest.events", 1000);
+	private final int backlogSize = Integer.getInteger("loadtest.backlog-size", 10);
+	private final String recording = System.getProperty("loadtest.recording");
+	private final boolean blockKit = Boolean.getBoolean("loadtest.block-kit");
+	private final long latencyMillis = Long.getLong("loadtest.latency-ms", 50);
+	private final double rateLimitedRatio = doubleProperty("loadtest.error-429", 0);
+	private final double serverErrorRatio = doubleProperty("loadtest.error-5xx", 0);
+	private final int maxConcurrentSends = Integer.getInteger("loadtest.max-concurrent-sends", 8);
+	private final int maxConcurrentSendsPerWebhook = Integer.getInteger("loadtest.max-concurrent-sends-per-webhook", 2);
+	// The stub speaks HTTP/1.1 only, see TransportBenchmark for HTTP/2
+	private final String transport = System.getProperty("loadtest.transport", SlackTransport.HTTP1);
+
+	public static void main(String[] args) throws Exception {
+		new LoadTest().run();
+	}
+
+	private void run() throws Exception {
+		final Path spoolDir = Files.createTempDirectory("slack-notification-load-test");
+		try (StubSlackServer server = new StubSlackServer(latencyMillis, rateLimitedRatio, serverErrorRatio)) {
+			final ObjectMapper objectMapper = new ObjectMapperProvider().get();
+			final SlackEventNotificationConfig config = config(server.webhookUrl());
+			final List<ReplayEvent> events = recording == null
+					? ReplayEvent.synthetic(syntheticEvents, backlogSize, NOTIFICATION_ID, config)
+					: ReplayEvent.recorded(Paths.get(recording), objectMapper, NOTIFICATION_ID, config);
+			if (events.isEmpty()) {
+				throw new IllegalArgumentException("No events to replay in <" + recording + ">");
+			}
+
+			final SlackEventNotification notification = notification(events, objectMapper, spoolDir);
+
+			System.out.printf(Locale.ROOT, "Replaying %d %s events at %d/s with %d threads, stub latency %d ms, 429 %.1f%%, 5xx %.1f%%%n",
+					events.size(), recording == null ? "synthetic" : "recorded", rate, threads, latencyMillis,
+					rateLimitedRatio * 100, serverErrorRatio * 100);
+
+			replay(notification, events, warmupSeconds);
+			final long requestsBefore = server.requests();
+			final long bytesBefore = server.receivedBytes();
+			final Result result = replay(notification, events, durationSeconds);
+
+			report(result, server.requests() - requestsBefore, server.receivedBytes() - bytesBefore);
+			System.out.printf(Locale.ROOT, "Stub answered %d x 429 and %d x 5xx in total%n", server.rateLimited(), server.serverErrors());
+		} finally {
+			deleteRecursively(spoolDir);
+		}
+	}
+
+	private SlackEventNotificationConfig config(String webhookUrl) {
+		return SlackEventNotificationConfig.builder()
+				.color("#FF0000")
+				.webhookUrl(webhookUrl)
+				.channel("#load-test")
+				.customMessage(CUSTOM_MESSAGE)
+				.backlogItemMessage("${backlog_item.message}")
+				.userName("Graylog")
+				.notifyChannel(false)
+				.linkNames(false)
+				.iconUrl("")
+				.iconEmoji("")
+				.graylogUrl("https://graylog.example.org/")
+				.proxy("")
+				.blockKit(blockKit)
+				.build();
+	}
+
+	private SlackEventNotification notification(List<ReplayEvent> events, ObjectMapper objectMapper, Path spoolDir) {
+		// Mocks are stub-only, otherwise Mockito keeps every invocation and skews the allocation rate
+		final Map<EventNotificationContext, List<?>> backlogs = new IdentityHashMap<>();
+		events.forEach(event -> backlogs.put(event.context(), event.backlog()));
+		final EventNotificationService eventNotificationService = mock(EventNotificationService.class, withSettings().stubOnly());
+		when(eventNotificationService.getBacklogForEvent(any())).thenAnswer(invocation -> backlogs.get(invocation.getArgument(0)));
+
+		final Stream stream = mock(Stream.class, withSettings().stubOnly());
+		when(stream.getId()).thenReturn("000000000000000000000001");
+		when(stream.getTitle()).thenReturn("Load Test Stream");
+		when(stream.getDescription()).thenReturn("Stream of the load test events");
+		final StreamService streamService = mock(StreamService.class, withSettings().stubOnly());
+		when(streamService.loadByIds(anyCollection())).thenReturn(Collections.singletonList(stream));
+
+		final NotificationService notificationService = mock(NotificationService.class,
+				withSettings().stubOnly().defaultAnswer(RETURNS_DEEP_STUBS));
+		final NodeId nodeId = mock(NodeId.class, withSettings().stubOnly());
+
+		final MetricRegistry metricRegistry = new MetricRegistry();
+		final SlackSendGuard sendGuard = new SlackSendGuard(maxConcurrentSends, maxConcurrentSendsPerWebhook,
+				Duration.seconds(10), Duration.seconds(5), 0, 10, 30, 60, metricRegistry);
+		final DeliveryAuditLog auditLog = new DeliveryAuditLog(spoolDir, 1000, Size.megabytes(10), 5);
+		final TemplateRenderer templateRenderer = new TemplateRenderer(20000, 10000, Duration.milliseconds(500), metricRegistry);
+		final SlackRuntimeCache runtimeCache = new SlackRuntimeCache(new Engine(), new SlackTransportProvider(transport).get(),
+				ImmutableSet.of(sendGuard, templateRenderer));
+
+		return new SlackEventNotification(
+				eventNotificationService,
+				streamService,
+				notificationService,
+				objectMapper,
+				nodeId,
+				new SlackDispatcher(sendGuard, auditLog),
+				new SlackDigestBuffer(spoolDir, 500),
+				runtimeCache,
+				new SlackLiveMessages(1000, sendGuard, auditLog, runtimeCache),
+				new SlackSuppressor(),
+				templateRenderer,
+				new SlackBacklogUploader(sendGuard, auditLog));
+	}
+
+	private Result replay(SlackEventNotification notification, List<ReplayEvent> events, int seconds) throws InterruptedException {
+		final RateLimiter rateLimiter = RateLimiter.create(rate);
+		final AtomicLong next = new AtomicLong();
+		final LongAdder failures = new LongAdder();
+		final LongAdder allocatedBytes = new LongAdder();
+		final List<Latencies> latencies = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch done = new CountDownLatch(threads);
+		final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+		final long start = System.nanoTime();
+		final long end = start + seconds * 1_000_000_000L;
+		for (int i = 0; i < threads; i++) {
+			final Thread worker = new Thread(() -> {
+				final Latencies own = new Latencies();
+				final long allocatedBefore = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+				try {
+					while (System.nanoTime() < end) {
+						rateLimiter.acquire();
+						final ReplayEvent event = events.get((int) (next.getAndIncrement() % events.size()));
+						final long sendStart = System.nanoTime();
+						try {
+							notification.execute(event.context());
+						} catch (PermanentEventNotificationException e) {
+							failures.increment();
+						}
+						own.add(System.nanoTime() - sendStart);
+					}
+				} finally {
+					allocatedBytes.add(threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore);
+					latencies.add(own);
+					done.countDown();
+				}
+			}, "load-test-worker-" + i);
+			worker.start();
+		}
+		done.await();
+
+		return new Result(System.nanoTime() - start, Latencies.mergeSorted(latencies), failures.sum(), allocatedBytes.sum());
+	}
+
+	private void report(Result result, long requests, long receivedBytes) {
+		final double seconds = result.elapsedNanos / 1_000_000_000d;
+		final int executions = result.latencies.length;
+		System.out.printf(Locale.ROOT, "Executions:   %d in %.1f s (%d failed)%n", executions, seconds, result.failures);
+		System.out.printf(Locale.ROOT, "Throughput:   %.1f events/s (target %d/s)%n", executions / seconds, rate);
+		System.out.printf(Locale.ROOT, "Latency:      p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+				Latencies.percentileMillis(result.latencies, 50),
+				Latencies.percentileMillis(result.latencies, 99),
+				Latencies.percentileMillis(result.latencies, 100));
+		System.out.printf(Locale.ROOT, "Allocation:   %.1f MB/s, %d bytes/event%n",
+				result.allocatedBytes / seconds / (1024 * 1024),
+				executions == 0 ? 0 : result.allocatedBytes / executions);
+		System.out.printf(Locale.ROOT, "Webhook:      %d requests, %d bytes/request%n",
+				requests, requests == 0 ? 0 : receivedBytes / requests);
+	}
+
+	private static double doubleProperty(String name, double defaultValue) {
+		final String value = System.getProperty(name);
+		return value == null ? defaultValue : Double.parseDouble(value);
+	}
+
+	private static void deleteRecursively(Path dir) throws IOException {
+		try (java.util.stream.Stream<Path> paths = Files.walk(dir)) {
+			paths.sorted(Collections.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	private static class Result {
+		private final long elapsedNanos;
+		private final long[] latencies;
+		private final long failures;
+		private final long allocatedBytes;
+
+		Result(long elapsedNanos, long[] latencies, long failures, long allocatedBytes) {
+			this.elapsedNanos = elapsedNanos;
+			this.latencies = latencies;
+			this.failures = failures;
+			this.allocatedBytes = allocatedBytes;
+		}
+	}
+}
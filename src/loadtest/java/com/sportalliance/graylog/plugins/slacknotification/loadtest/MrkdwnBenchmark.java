@@ -0,0 +1,119 @@
+package com.sportalliance.graylog.plugins.slacknotification.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+import com.floreysoft.jmte.Engine;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeCache;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeState;
+import com.sportalliance.graylog.plugins.slacknotification.UrlConnectionTransport;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+import com.sportalliance.graylog.plugins.slacknotification.format.Mrkdwn;
+
+/**
+ * Checks the mrkdwn escaping against known cases, then compares building the default message text
+ * with the former {@code String.format} path, with the escaper and with the per event definition cache.
+ * <p>
+ * Run with {@code mvn -P load-test verify -Dload-test.main-class=com.sportalliance.graylog.plugins.slacknotification.loadtest.MrkdwnBenchmark},
+ * settings are passed as system properties, e.g. {@code -Dbenchmark.iterations=5000000}.
+ */
+public class MrkdwnBenchmark {
+
+	private static final String GRAYLOG_URL = "https://graylog.example.org/alerts?from=now-1h&to=now";
+	private static final String TITLE = "Errors > 100 in <checkout> & <payment>";
+	private static final String DESCRIPTION = "More than 100 errors per minute, see the runbook for the on-call steps";
+
+	private final int iterations = Integer.getInteger("benchmark.iterations", 2_000_000);
+	private final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) {
+		checkEscaping();
+		new MrkdwnBenchmark().run();
+	}
+
+	private static void checkEscaping() {
+		check(Mrkdwn.escape("plain text"), "plain text");
+		check(Mrkdwn.escape("a < b && c > d"), "a &lt; b &amp;&amp; c &gt; d");
+		check(Mrkdwn.escape("<!channel>"), "&lt;!channel&gt;");
+		check(Mrkdwn.escape("&amp;"), "&amp;amp;");
+		check(Mrkdwn.escape(""), "");
+		check(Mrkdwn.escape("ünïcödé 🚨 <x>"), "ünïcödé 🚨 &lt;x&gt;");
+		check(Mrkdwn.appendEscaped(new StringBuilder("> "), new StringBuilder("1 < 2")).toString(), "> 1 &lt; 2");
+		check(Mrkdwn.link("https://example.org/?a=1&b=2", "A & B"), "<https://example.org/?a=1&amp;b=2|A &amp; B>");
+		check(Mrkdwn.link("https://example.org/x|y", "a|b"), "<https://example.org/x%7Cy|a|b>");
+		check(Mrkdwn.unescape(Mrkdwn.escape("a < b && c > d &amp;")), "a < b && c > d &amp;");
+		final String unchanged = "nothing to escape";
+		if (Mrkdwn.escape(unchanged) != unchanged) {
+			throw new IllegalStateException("Text without control characters must not be copied");
+		}
+		System.out.println("Escaping checks passed");
+	}
+
+	private static void check(String actual, String expected) {
+		if (!Objects.equals(actual, expected)) {
+			throw new IllegalStateException("Expected <" + expected + "> but got <" + actual + ">");
+		}
+	}
+
+	private void run() {
+		final SlackEventNotificationConfig config = SlackEventNotificationConfig.builder()
+				.color("#FF0000")
+				.webhookUrl("https://hooks.slack.com/services/T000/B000/benchmark")
+				.channel("#benchmark")
+				.customMessage("")
+				.backlogItemMessage("")
+				.userName("Graylog")
+				.notifyChannel(true)
+				.linkNames(false)
+				.iconUrl("")
+				.iconEmoji("")
+				.graylogUrl(GRAYLOG_URL)
+				.proxy("")
+				.build();
+		final SlackRuntimeState state = new SlackRuntimeCache(new Engine(), UrlConnectionTransport.INSTANCE, Collections.emptySet())
+				.create(config);
+
+		final IntFunction<String> format = i -> String.format("%s*Alert %s* triggered:\n> %s \n",
+				"@channel ", "<" + GRAYLOG_URL + "|" + TITLE + ">", DESCRIPTION);
+		final IntFunction<String> escaped = i -> escapedMessage(TITLE, DESCRIPTION);
+		final String[] definitionIds = {"definition-0", "definition-1", "definition-2", "definition-3"};
+		final IntFunction<String> cached = i -> state.defaultMessage(definitionIds[i & 3], TITLE, DESCRIPTION,
+				() -> escapedMessage(TITLE, DESCRIPTION));
+
+		for (int round = 0; round < 2; round++) {
+			// The first round only warms up
+			final boolean report = round == 1;
+			measure("String.format", format, report);
+			measure("escaped", escaped, report);
+			measure("cached", cached, report);
+		}
+	}
+
+	private static String escapedMessage(String title, String description) {
+		final StringBuilder message = new StringBuilder(48 + title.length() + description.length());
+		message.append("@channel *Alert ");
+		Mrkdwn.appendLink(message, GRAYLOG_URL, title);
+		message.append("* triggered:\n> ");
+		Mrkdwn.appendEscaped(message, description);
+		return message.append(" \n").toString();
+	}
+
+	private void measure(String name, IntFunction<String> build, boolean report) {
+		final long threadId = Thread.currentThread().getId();
+		long checksum = 0;
+		final long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+		final long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			checksum += build.apply(i).length();
+		}
+		final long elapsed = System.nanoTime() - start;
+		final long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+		if (report) {
+			System.out.printf(Locale.ROOT, "%-14s %8.1f ns/op %8.1f B/op  (checksum %d)%n",
+					name, elapsed / (double) iterations, allocated / (double) iterations, checksum);
+		}
+	}
+}
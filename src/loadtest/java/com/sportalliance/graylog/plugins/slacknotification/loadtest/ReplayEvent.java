@@ -0,0 +1,135 @@
+package com.sportalliance.graylog.plugins.slacknotification.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.graylog.events.event.EventDto;
+import org.graylog.events.notifications.EventNotificationContext;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageSummary;
+import org.graylog2.plugin.Tools;
+import org.joda.time.DateTime;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+
+/**
+ * One event replayed through the notification together with its backlog.
+ */
+class ReplayEvent {
+
+	private static final String INDEX = "load-test";
+	private static final String FIELD_EVENT = "event";
+	private static final String FIELD_BACKLOG = "backlog";
+
+	private final EventNotificationContext context;
+	private final List<MessageSummary> backlog;
+
+	private ReplayEvent(EventNotificationContext context, List<MessageSummary> backlog) {
+		this.context = context;
+		this.backlog = backlog;
+	}
+
+	EventNotificationContext context() {
+		return context;
+	}
+
+	List<MessageSummary> backlog() {
+		return backlog;
+	}
+
+	/**
+	 * Synthetic events with the given number of backlog messages each, spread over three priorities.
+	 */
+	static List<ReplayEvent> synthetic(int count, int backlogSize, String notificationId, SlackEventNotificationConfig config) {
+		final List<ReplayEvent> events = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			final DateTime now = Tools.nowUTC();
+			final EventDto event = EventDto.builder()
+					.id("load-test-event-" + i)
+					.eventDefinitionType("aggregation-v1")
+					.eventDefinitionId("load-test-definition-" + (i % 10))
+					.eventTimestamp(now)
+					.processingTimestamp(now)
+					.streams(ImmutableSet.of("000000000000000000000001"))
+					.sourceStreams(ImmutableSet.of("000000000000000000000001"))
+					.message("Synthetic load test event " + i)
+					.source("load-test-" + (i % 50))
+					.keyTuple(ImmutableList.of("key-" + (i % 100)))
+					.key("key-" + (i % 100))
+					.priority(1 + i % 3)
+					.alert(true)
+					.fields(ImmutableMap.of("field1", "value" + i, "field2", "value" + (i % 7)))
+					.build();
+
+			final List<MessageSummary> backlog = new ArrayList<>(backlogSize);
+			for (int j = 0; j < backlogSize; j++) {
+				final Message message = new Message("Backlog message " + j + " of event " + i
+						+ " with some payload to make the templates do actual work", "source-" + (j % 5), now);
+				message.addField("http_status", 500 + j % 4);
+				message.addField("request_path", "/api/resource/" + j);
+				backlog.add(new MessageSummary(INDEX, message));
+			}
+
+			events.add(new ReplayEvent(context(notificationId, config, event), backlog));
+		}
+		return events;
+	}
+
+	/**
+	 * Events recorded as a JSON array of {@code {"event": <EventDto>, "backlog": [<message fields>]}},
+	 * the same shape the test endpoint accepts.
+	 */
+	static List<ReplayEvent> recorded(Path file, ObjectMapper objectMapper, String notificationId,
+									  SlackEventNotificationConfig config) throws IOException {
+		final List<ReplayEvent> events = new ArrayList<>();
+		final JsonNode recording;
+		try (InputStream in = Files.newInputStream(file)) {
+			recording = objectMapper.readTree(in);
+		}
+		for (JsonNode node : recording) {
+			final EventDto event = objectMapper.treeToValue(node.get(FIELD_EVENT), EventDto.class);
+			final List<MessageSummary> backlog = new ArrayList<>();
+			if (node.has(FIELD_BACKLOG)) {
+				final List<Map<String, Object>> messages = objectMapper.convertValue(node.get(FIELD_BACKLOG),
+						new TypeReference<List<Map<String, Object>>>() {});
+				for (Map<String, Object> fields : messages) {
+					backlog.add(toMessageSummary(fields));
+				}
+			}
+			events.add(new ReplayEvent(context(notificationId, config, event), Collections.unmodifiableList(backlog)));
+		}
+		return events;
+	}
+
+	private static EventNotificationContext context(String notificationId, SlackEventNotificationConfig config, EventDto event) {
+		return EventNotificationContext.builder()
+				.notificationId(notificationId)
+				.notificationConfig(config)
+				.event(event)
+				.build();
+	}
+
+	private static MessageSummary toMessageSummary(Map<String, Object> fields) {
+		final Object text = fields.getOrDefault(Message.FIELD_MESSAGE, "");
+		final Object source = fields.getOrDefault(Message.FIELD_SOURCE, "load-test");
+		final Message message = new Message(String.valueOf(text), String.valueOf(source), Tools.nowUTC());
+		fields.forEach((key, value) -> {
+			if (!Message.RESERVED_FIELDS.contains(key)) {
+				message.addField(key, value);
+			}
+		});
+		return new MessageSummary(INDEX, message);
+	}
+}
@@ -0,0 +1,103 @@
+package com.sportalliance.graylog.plugins.slacknotification.loadtest;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageSummary;
+import org.graylog2.plugin.Tools;
+import org.joda.time.DateTime;
+
+import com.sportalliance.graylog.plugins.slacknotification.sampling.BacklogSample;
+import com.sportalliance.graylog.plugins.slacknotification.sampling.BacklogSampler;
+import com.sportalliance.graylog.plugins.slacknotification.sampling.SamplingStrategy;
+
+/**
+ * Checks the backlog sampling strategies on skewed synthetic backlogs and measures their cost per event
+ * for growing backlog sizes.
+ * <p>
+ * Run with {@code mvn -P load-test verify -Dload-test.main-class=com.sportalliance.graylog.plugins.slacknotification.loadtest.SamplingBenchmark},
+ * settings are passed as system properties, e.g. {@code -Dbenchmark.sample-size=10 -Dbenchmark.max-backlog=1000000}.
+ */
+public class SamplingBenchmark {
+
+	private static final String FIELD = "http_path";
+	// Paths which make up 60% of the synthetic backlog, top-K must rank them first
+	private static final int HEAVY_HITTERS = 3;
+
+	private final int sampleSize = Integer.getInteger("benchmark.sample-size", 5);
+	private final int maxBacklog = Integer.getInteger("benchmark.max-backlog", 1_000_000);
+	private final int repetitions = Integer.getInteger("benchmark.repetitions", 20);
+
+	public static void main(String[] args) {
+		new SamplingBenchmark().run();
+	}
+
+	private void run() {
+		for (int backlogSize = 1_000; backlogSize <= maxBacklog; backlogSize *= 10) {
+			final List<MessageSummary> backlog = backlog(backlogSize);
+			for (SamplingStrategy strategy : SamplingStrategy.values()) {
+				check(strategy, backlog);
+				measure(strategy, backlog);
+			}
+		}
+		System.out.println("Sampling checks passed");
+	}
+
+	private void check(SamplingStrategy strategy, List<MessageSummary> backlog) {
+		final BacklogSample sample = BacklogSampler.sample(backlog, strategy, sampleSize, FIELD);
+		final List<MessageSummary> items = sample.items();
+		if (items.size() != sampleSize) {
+			throw new IllegalStateException(strategy + " chose " + items.size() + " instead of " + sampleSize + " items");
+		}
+		final Set<MessageSummary> distinct = new HashSet<>(items);
+		if (distinct.size() != items.size()) {
+			throw new IllegalStateException(strategy + " chose an item twice");
+		}
+		if (strategy == SamplingStrategy.TOP_K) {
+			for (int i = 0; i < HEAVY_HITTERS; i++) {
+				final String expected = "/api/path/" + i;
+				if (!expected.equals(items.get(i).getField(FIELD))) {
+					throw new IllegalStateException("Top-K ranked <" + items.get(i).getField(FIELD) + "> at " + i + " instead of <" + expected + ">");
+				}
+			}
+		}
+		if (strategy != SamplingStrategy.RESERVOIR && sample.note(0) == null) {
+			throw new IllegalStateException(strategy + " has no count per item");
+		}
+	}
+
+	private void measure(SamplingStrategy strategy, List<MessageSummary> backlog) {
+		long checksum = 0;
+		final long start = System.nanoTime();
+		for (int i = 0; i < repetitions; i++) {
+			checksum += BacklogSampler.sample(backlog, strategy, sampleSize, FIELD).summary().length();
+		}
+		final double micros = (System.nanoTime() - start) / 1_000d / repetitions;
+		System.out.printf(Locale.ROOT, "%-9s backlog %8d  %10.1f µs/event  (checksum %d)%n",
+				strategy.configValue(), backlog.size(), micros, checksum);
+	}
+
+	/**
+	 * Messages whose path is /api/path/0 for 30%, /api/path/1 for 20%, /api/path/2 for 10% of the
+	 * messages, and one of many rare paths for the rest.
+	 */
+	private static List<MessageSummary> backlog(int size) {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final DateTime timestamp = Tools.nowUTC();
+		final int rarePaths = Math.max(100, size / 10);
+		final List<MessageSummary> backlog = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			final double dice = random.nextDouble();
+			final int path = dice < 0.3 ? 0 : dice < 0.5 ? 1 : dice < 0.6 ? 2 : HEAVY_HITTERS + random.nextInt(rarePaths);
+			final Message message = new Message("Request " + i + " failed", "source-" + (i % 20), timestamp);
+			message.addField(FIELD, "/api/path/" + path);
+			backlog.add(new MessageSummary("benchmark-index", message));
+		}
+		return backlog;
+	}
+}
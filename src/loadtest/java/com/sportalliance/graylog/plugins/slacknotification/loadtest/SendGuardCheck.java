@@ -0,0 +1,193 @@
+package com.sportalliance.graylog.plugins.slacknotification.loadtest;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.floreysoft.jmte.Engine;
+import com.github.joschi.jadconfig.util.Duration;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeCache;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeState;
+import com.sportalliance.graylog.plugins.slacknotification.SlackSendGuard;
+import com.sportalliance.graylog.plugins.slacknotification.UrlConnectionTransport;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+
+/**
+ * Sends from many threads through the {@link SlackSendGuard} to several webhooks of the stub server and
+ * checks that the node-wide and per-webhook limits hold, that rejected sends release what they acquired
+ * and that the permits of a webhook are dropped with the last cached notification sending to it.
+ * <p>
+ * Run with {@code mvn -P load-test verify -Dload-test.main-class=com.sportalliance.graylog.plugins.slacknotification.loadtest.SendGuardCheck},
+ * settings are passed as system properties, e.g. {@code -Dcheck.threads=64 -Dcheck.latency-ms=50}.
+ */
+public class SendGuardCheck {
+
+	private static final int MAX_CONCURRENT_SENDS = 4;
+	private static final int MAX_CONCURRENT_SENDS_PER_WEBHOOK = 2;
+	private static final int WEBHOOKS = 3;
+	private static final byte[] PAYLOAD = "{\"text\":\"Send guard check\"}".getBytes(StandardCharsets.UTF_8);
+
+	private final int threads = Integer.getInteger("check.threads", 32);
+	private final int sendsPerThread = Integer.getInteger("check.sends", 20);
+	private final long latencyMillis = Long.getLong("check.latency-ms", 20);
+
+	public static void main(String[] args) throws Exception {
+		new SendGuardCheck().run();
+	}
+
+	private void run() throws Exception {
+		try (StubSlackServer server = new StubSlackServer(latencyMillis, 0, 0)) {
+			final List<String> webhooks = new ArrayList<>();
+			for (int i = 0; i < WEBHOOKS; i++) {
+				webhooks.add(server.webhookUrl("send-guard-check-" + i));
+			}
+
+			final MetricRegistry metricRegistry = new MetricRegistry();
+			final SlackSendGuard sendGuard = sendGuard(Duration.minutes(1), metricRegistry);
+			final Result result = sendInParallel(sendGuard, webhooks);
+			check(result.rejected.sum() == 0, "No send may be rejected within the wait timeout, " + result.rejected.sum() + " were");
+			check(server.maxConcurrentRequests() <= MAX_CONCURRENT_SENDS,
+					server.maxConcurrentRequests() + " concurrent requests exceed the node-wide limit");
+			check(server.maxConcurrentRequests() > 1, "Sends were not run in parallel");
+			for (String webhook : webhooks) {
+				check(server.maxConcurrentRequests(webhook) <= MAX_CONCURRENT_SENDS_PER_WEBHOOK,
+						server.maxConcurrentRequests(webhook) + " concurrent requests exceed the per-webhook limit");
+			}
+			checkIdle(sendGuard, metricRegistry, result);
+			System.out.printf("Sent %d messages with at most %d concurrent requests%n", result.sent.sum(), server.maxConcurrentRequests());
+
+			checkEviction(sendGuard, metricRegistry, webhooks, server.webhookUrl("send-guard-check-replacement"));
+		}
+
+		// Far more senders than permits and a wait timeout below the latency of one send
+		try (StubSlackServer server = new StubSlackServer(200, 0, 0)) {
+			final List<String> webhooks = new ArrayList<>();
+			for (int i = 0; i < WEBHOOKS; i++) {
+				webhooks.add(server.webhookUrl("send-guard-check-" + i));
+			}
+
+			final MetricRegistry metricRegistry = new MetricRegistry();
+			final SlackSendGuard sendGuard = sendGuard(Duration.milliseconds(50), metricRegistry);
+			final Result result = sendInParallel(sendGuard, webhooks);
+			check(result.rejected.sum() > 0, "Sends beyond the permits must be rejected after the wait timeout");
+			checkIdle(sendGuard, metricRegistry, result);
+			System.out.printf("Sent %d and rejected %d messages after the wait timeout%n", result.sent.sum(), result.rejected.sum());
+
+			// Only permits which are no longer held can be dropped
+			checkEviction(sendGuard, metricRegistry, webhooks, server.webhookUrl("send-guard-check-replacement"));
+		}
+		System.out.println("Send guard checks passed");
+	}
+
+	private static SlackSendGuard sendGuard(Duration sendWaitTimeout, MetricRegistry metricRegistry) {
+		return new SlackSendGuard(MAX_CONCURRENT_SENDS, MAX_CONCURRENT_SENDS_PER_WEBHOOK, sendWaitTimeout,
+				Duration.milliseconds(10), 0, 10, 30, 60, metricRegistry);
+	}
+
+	private Result sendInParallel(SlackSendGuard sendGuard, List<String> webhooks) throws InterruptedException {
+		final Result result = new Result();
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			final String webhook = webhooks.get(t % webhooks.size());
+			final SlackClient client = new SlackClient(webhook, "", 0);
+			final long priority = 1 + t % 3;
+			executor.execute(() -> {
+				try {
+					start.await();
+					for (int i = 0; i < sendsPerThread; i++) {
+						try {
+							sendGuard.execute(webhook, priority, () -> client.send(PAYLOAD));
+							result.sent.increment();
+						} catch (SlackClientException e) {
+							result.rejected.increment();
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		start.countDown();
+		executor.shutdown();
+		check(executor.awaitTermination(5, TimeUnit.MINUTES), "Sends did not finish");
+		check(result.sent.sum() + result.rejected.sum() == (long) threads * sendsPerThread, "Sends were lost");
+		return result;
+	}
+
+	private static void checkIdle(SlackSendGuard sendGuard, MetricRegistry metricRegistry, Result result) {
+		check(sendGuard.inFlight() == 0 && sendGuard.waiting() == 0,
+				sendGuard.inFlight() + " sends still in flight and " + sendGuard.waiting() + " waiting");
+		// Rejected sends stop their wait time as well
+		final long waitTimes = metricRegistry.getTimers((metricName, metric) -> metricName.contains(".wait-time."))
+				.values().stream()
+				.mapToLong(Timer::getCount)
+				.sum();
+		check(waitTimes == result.sent.sum() + result.rejected.sum(),
+				waitTimes + " wait times recorded for " + (result.sent.sum() + result.rejected.sum()) + " sends");
+	}
+
+	private static void checkEviction(SlackSendGuard sendGuard, MetricRegistry metricRegistry, List<String> webhooks,
+									  String replacementWebhook) {
+		final SlackRuntimeCache runtimeCache = new SlackRuntimeCache(new Engine(), UrlConnectionTransport.INSTANCE,
+				Collections.singleton(sendGuard));
+		for (int i = 0; i < webhooks.size(); i++) {
+			runtimeCache.get("notification-" + i, config(webhooks.get(i)));
+		}
+		check(webhookCount(metricRegistry) == webhooks.size(), "Expected permits for " + webhooks.size() + " webhooks");
+
+		// A changed webhook drops the permits of the former one
+		runtimeCache.get("notification-0", config(replacementWebhook));
+		check(webhookCount(metricRegistry) == webhooks.size() - 1,
+				"Permits of the former webhook were kept, " + webhookCount(metricRegistry) + " webhooks");
+
+		// A discarded test state must not drop the permits of a webhook which is still in use
+		final SlackRuntimeState uncached = runtimeCache.create(config(webhooks.get(1)));
+		runtimeCache.discard("test-notification", uncached);
+		check(webhookCount(metricRegistry) == webhooks.size() - 1, "Permits of a webhook in use were dropped");
+	}
+
+	private static int webhookCount(MetricRegistry metricRegistry) {
+		return (Integer) metricRegistry.getGauges().get(name(SlackSendGuard.class, "webhooks")).getValue();
+	}
+
+	private static SlackEventNotificationConfig config(String webhookUrl) {
+		return SlackEventNotificationConfig.builder()
+				.color("#FF0000")
+				.webhookUrl(webhookUrl)
+				.channel("#send-guard-check")
+				.customMessage("")
+				.backlogItemMessage("")
+				.userName("Graylog")
+				.notifyChannel(false)
+				.linkNames(false)
+				.iconUrl("")
+				.iconEmoji("")
+				.graylogUrl("")
+				.proxy("")
+				.build();
+	}
+
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new IllegalStateException(message);
+		}
+	}
+
+	private static class Result {
+		private final LongAdder sent = new LongAdder();
+		private final LongAdder rejected = new LongAdder();
+	}
+}
@@ -0,0 +1,266 @@
+package com.sportalliance.graylog.plugins.slacknotification.loadtest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Webhook receiver on the loopback interface answering like Slack, with injectable latency and errors.
+ * It accepts any webhook below {@code /services/} and records the highest number of concurrent
+ * requests, in total and per webhook. Optionally it keeps the last request per webhook with its
+ * body decoded, see {@link #recordBodies()}.
+ */
+class StubSlackServer implements AutoCloseable {
+
+	private static final String CONTEXT = "/services/";
+	private static final String PATH = CONTEXT + "T000/B000/load-test";
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final long latencyMillis;
+	private final double rateLimitedRatio;
+	private final double serverErrorRatio;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong rateLimited = new AtomicLong();
+	private final AtomicLong serverErrors = new AtomicLong();
+	private final AtomicLong receivedBytes = new AtomicLong();
+	private final Concurrency concurrency = new Concurrency();
+	private final Map<String, Concurrency> concurrencyPerWebhook = new ConcurrentHashMap<>();
+	private final Map<String, ReceivedRequest> lastRequests = new ConcurrentHashMap<>();
+	private volatile boolean recordBodies;
+
+	/**
+	 * @param rateLimitedRatio share of requests answered with 429
+	 * @param serverErrorRatio share of requests answered with 503
+	 */
+	StubSlackServer(long latencyMillis, double rateLimitedRatio, double serverErrorRatio) throws IOException {
+		this.latencyMillis = latencyMillis;
+		this.rateLimitedRatio = rateLimitedRatio;
+		this.serverErrorRatio = serverErrorRatio;
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+		this.executor = Executors.newCachedThreadPool();
+		server.createContext(CONTEXT, this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	String webhookUrl() {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + PATH;
+	}
+
+	/**
+	 * @return the URL of another webhook of the same server
+	 */
+	String webhookUrl(String name) {
+		return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + CONTEXT + "T000/B000/" + name;
+	}
+
+	/**
+	 * Keeps the last request per webhook from now on, gzip compressed bodies are decoded and answered
+	 * with 400 if they cannot be.
+	 */
+	StubSlackServer recordBodies() {
+		recordBodies = true;
+		return this;
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		final Concurrency webhookConcurrency = concurrencyPerWebhook.computeIfAbsent(exchange.getRequestURI().getPath(),
+				path -> new Concurrency());
+		concurrency.enter();
+		webhookConcurrency.enter();
+		try {
+			answer(exchange);
+		} finally {
+			webhookConcurrency.exit();
+			concurrency.exit();
+		}
+	}
+
+	private void answer(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		final ByteArrayOutputStream recorded = recordBodies ? new ByteArrayOutputStream() : null;
+		try (InputStream body = exchange.getRequestBody()) {
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = body.read(buffer)) != -1) {
+				receivedBytes.addAndGet(read);
+				if (recorded != null) {
+					recorded.write(buffer, 0, read);
+				}
+			}
+		}
+		if (recorded != null && !record(exchange, recorded.toByteArray())) {
+			respond(exchange, 400, "invalid_gzip");
+			return;
+		}
+
+		if (latencyMillis > 0) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		final double dice = ThreadLocalRandom.current().nextDouble();
+		if (dice < rateLimitedRatio) {
+			rateLimited.incrementAndGet();
+			exchange.getResponseHeaders().add("Retry-After", "1");
+			respond(exchange, 429, "rate_limited");
+		} else if (dice < rateLimitedRatio + serverErrorRatio) {
+			serverErrors.incrementAndGet();
+			respond(exchange, 503, "service_unavailable");
+		} else {
+			respond(exchange, 200, "ok");
+		}
+	}
+
+	private boolean record(HttpExchange exchange, byte[] body) {
+		final String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+		final byte[] decoded;
+		try {
+			decoded = "gzip".equalsIgnoreCase(contentEncoding) ? gunzip(body) : body;
+		} catch (IOException e) {
+			return false;
+		}
+		lastRequests.put(exchange.getRequestURI().getPath(), new ReceivedRequest(
+				exchange.getRequestHeaders().getFirst("Content-Type"), contentEncoding, body.length, decoded));
+		return true;
+	}
+
+	private static byte[] gunzip(byte[] body) throws IOException {
+		final ByteArrayOutputStream decoded = new ByteArrayOutputStream(body.length * 4);
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+			final byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				decoded.write(buffer, 0, read);
+			}
+		}
+		return decoded.toByteArray();
+	}
+
+	private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+		final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "text/plain");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	long requests() {
+		return requests.get();
+	}
+
+	long rateLimited() {
+		return rateLimited.get();
+	}
+
+	long serverErrors() {
+		return serverErrors.get();
+	}
+
+	long receivedBytes() {
+		return receivedBytes.get();
+	}
+
+	/**
+	 * @return the highest number of requests which were handled at the same time
+	 */
+	int maxConcurrentRequests() {
+		return concurrency.max.get();
+	}
+
+	/**
+	 * @return the highest number of requests to the given webhook which were handled at the same time
+	 */
+	int maxConcurrentRequests(String webhookUrl) {
+		final Concurrency webhookConcurrency = concurrencyPerWebhook.get(webhookUrl.substring(webhookUrl.indexOf(CONTEXT)));
+		return webhookConcurrency == null ? 0 : webhookConcurrency.max.get();
+	}
+
+	/**
+	 * @return the last request to the given webhook or {@code null} if there was none or bodies are not recorded
+	 */
+	ReceivedRequest lastRequest(String webhookUrl) {
+		return lastRequests.get(webhookUrl.substring(webhookUrl.indexOf(CONTEXT)));
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	static class ReceivedRequest {
+		private final String contentType;
+		private final String contentEncoding;
+		private final int wireBytes;
+		private final byte[] body;
+
+		ReceivedRequest(String contentType, String contentEncoding, int wireBytes, byte[] body) {
+			this.contentType = contentType;
+			this.contentEncoding = contentEncoding;
+			this.wireBytes = wireBytes;
+			this.body = body;
+		}
+
+		String contentType() {
+			return contentType;
+		}
+
+		/**
+		 * @return the Content-Encoding header or {@code null} if the body was not encoded
+		 */
+		String contentEncoding() {
+			return contentEncoding;
+		}
+
+		/**
+		 * @return the size of the body as received, before it was decoded
+		 */
+		int wireBytes() {
+			return wireBytes;
+		}
+
+		/**
+		 * @return the decoded body
+		 */
+		byte[] body() {
+			return body;
+		}
+	}
+
+	private static class Concurrency {
+		private final AtomicInteger current = new AtomicInteger();
+		private final AtomicInteger max = new AtomicInteger();
+
+		void enter() {
+			max.accumulateAndGet(current.incrementAndGet(), Math::max);
+		}
+
+		void exit() {
+			current.decrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package com.sportalliance.graylog.plugins.slacknotification.loadtest;
+
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.HttpsURLConnection;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.sportalliance.graylog.plugins.slacknotification.Http2Transport;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTimings;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTransport;
+import com.sportalliance.graylog.plugins.slacknotification.UrlConnectionTransport;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+
+/**
+ * Compares the {@link SlackTransport} implementations at high concurrency against a local stand-in
+ * server which speaks HTTP/2 and HTTP/1.1 over TLS, or only h2c with {@code -Dbenchmark.cleartext=true}.
+ * <p>
+ * Run with {@code mvn -P load-test verify -Dload-test.main-class=com.sportalliance.graylog.plugins.slacknotification.loadtest.TransportBenchmark},
+ * settings are passed as system properties, e.g. {@code -Dbenchmark.concurrency=512 -Dbenchmark.latency-ms=100}.
+ * The HTTP/2 transport needs a JDK with ALPN (8u252 or later) to negotiate HTTP/2 over TLS.
+ */
+public class TransportBenchmark {
+
+	private static final String PATH = "/services/T000/B000/benchmark";
+
+	private final int concurrency = Integer.getInteger("benchmark.concurrency", 256);
+	private final int warmupSeconds = Integer.getInteger("benchmark.warmup-seconds", 3);
+	private final int durationSeconds = Integer.getInteger("benchmark.duration-seconds", 10);
+	private final long latencyMillis = Long.getLong("benchmark.latency-ms", 50);
+	private final int payloadBytes = Integer.getInteger("benchmark.payload-bytes", 2048);
+	private final boolean cleartext = Boolean.getBoolean("benchmark.cleartext");
+	private final List<String> transports = Splitter.on(',').trimResults().omitEmptyStrings()
+			.splitToList(System.getProperty("benchmark.transports", SlackTransport.HTTP1 + "," + SlackTransport.HTTP2));
+
+	private final AtomicLong connections = new AtomicLong();
+
+	public static void main(String[] args) throws Exception {
+		new TransportBenchmark().run();
+	}
+
+	private void run() throws Exception {
+		final HeldCertificate certificate = new HeldCertificate.Builder()
+				.addSubjectAlternativeName("localhost")
+				.build();
+		final HandshakeCertificates serverCertificates = new HandshakeCertificates.Builder()
+				.heldCertificate(certificate)
+				.build();
+		final HandshakeCertificates clientCertificates = new HandshakeCertificates.Builder()
+				.addTrustedCertificate(certificate.certificate())
+				.build();
+
+		try (MockWebServer server = new MockWebServer()) {
+			if (cleartext) {
+				server.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+			} else {
+				server.useHttps(serverCertificates.sslSocketFactory(), false);
+				server.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+			}
+			server.setDispatcher(new Dispatcher() {
+				@Override
+				public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+					TimeUnit.MILLISECONDS.sleep(latencyMillis);
+					return new MockResponse().setBody("ok");
+				}
+			});
+			server.start();
+			final Thread drain = drainRequests(server);
+
+			final URL url = server.url(PATH).url();
+			final byte[] payload = ("{\"text\":\"" + Strings.repeat("x", Math.max(0, payloadBytes - 11)) + "\"}").getBytes(StandardCharsets.UTF_8);
+			System.out.printf(Locale.ROOT, "Sending %d byte payloads with %d threads to %s, stub latency %d ms%n",
+					payload.length, concurrency, cleartext ? "h2c" : "h2/HTTP/1.1 over TLS", latencyMillis);
+
+			for (String name : transports) {
+				final SlackTransport transport = transport(name, clientCertificates);
+				if (transport == null) {
+					System.out.printf(Locale.ROOT, "%-6s skipped, h2c needs prior knowledge%n", name);
+					continue;
+				}
+				try {
+					run(transport, url, payload, warmupSeconds);
+					final long connectionsBefore = connections.get();
+					final Result result = run(transport, url, payload, durationSeconds);
+					report(name, result, connections.get() - connectionsBefore);
+				} finally {
+					transport.shutdown();
+				}
+			}
+			drain.interrupt();
+		}
+	}
+
+	private SlackTransport transport(String name, HandshakeCertificates certificates) {
+		switch (name) {
+			case SlackTransport.HTTP1:
+				if (cleartext) {
+					return null;
+				}
+				HttpsURLConnection.setDefaultSSLSocketFactory(certificates.sslSocketFactory());
+				return UrlConnectionTransport.INSTANCE;
+			case SlackTransport.HTTP2:
+				return new Http2Transport(new OkHttpClient.Builder()
+						.sslSocketFactory(certificates.sslSocketFactory(), certificates.trustManager()), cleartext);
+			default:
+				throw new IllegalArgumentException("Unknown transport <" + name + ">");
+		}
+	}
+
+	/**
+	 * Consumes the recorded requests, which the server would keep otherwise, and counts new connections.
+	 */
+	private Thread drainRequests(MockWebServer server) {
+		final Thread thread = new Thread(() -> {
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					final RecordedRequest request = server.takeRequest();
+					if (request.getSequenceNumber() == 0) {
+						connections.incrementAndGet();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "benchmark-drain");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	private Result run(SlackTransport transport, URL url, byte[] payload, int seconds) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		final LongAdder failures = new LongAdder();
+		final List<Latencies> latencies = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch done = new CountDownLatch(concurrency);
+
+		final long start = System.nanoTime();
+		for (int i = 0; i < concurrency; i++) {
+			final Thread worker = new Thread(() -> {
+				final Latencies own = new Latencies();
+				try {
+					while (System.nanoTime() < deadline) {
+						final long sendStart = System.nanoTime();
+						try {
+							transport.post(url, Proxy.NO_PROXY, ImmutableMap.of("Content-Type", "application/json"), payload, false, new SlackTimings());
+							own.add(System.nanoTime() - sendStart);
+						} catch (SlackClientException e) {
+							failures.increment();
+						}
+					}
+				} finally {
+					latencies.add(own);
+					done.countDown();
+				}
+			}, "benchmark-" + i);
+			worker.setDaemon(true);
+			worker.start();
+		}
+		done.await();
+		return new Result(System.nanoTime() - start, failures.sum(), Latencies.mergeSorted(latencies));
+	}
+
+	private static void report(String name, Result result, long connections) {
+		System.out.printf(Locale.ROOT, "%-6s %9.1f req/s  p50 %7.2f ms  p99 %7.2f ms  %d failed  %d new connections%n",
+				name,
+				result.latencies.length / (result.elapsedNanos / 1_000_000_000d),
+				Latencies.percentileMillis(result.latencies, 50),
+				Latencies.percentileMillis(result.latencies, 99),
+				result.failures,
+				connections);
+	}
+
+	private static class Result {
+		private final long elapsedNanos;
+		private final long failures;
+		private final long[] latencies;
+
+		Result(long elapsedNanos, long failures, long[] latencies) {
+			this.elapsedNanos = elapsedNanos;
+			this.failures = failures;
+			this.latencies = latencies;
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import org.graylog.events.event.EventDto;
+import org.graylog.events.notifications.EventNotificationContext;
+
+/**
+ * Identifies the alert an event belongs to by notification, event definition and event key, shared by
+ * live messages and repeat suppression so both treat the same events as one alert.
+ */
+public final class AlertKey {
+
+	private AlertKey() {
+	}
+
+	public static String of(EventNotificationContext ctx) {
+		final EventDto event = ctx.event();
+		return ctx.notificationId() + "/" + event.eventDefinitionId() + "/" + event.key().orElse("");
+	}
+}
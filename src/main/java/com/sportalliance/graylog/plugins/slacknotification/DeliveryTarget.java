@@ -0,0 +1,55 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackResponse;
+import com.sportalliance.graylog.plugins.slacknotification.format.PayloadFormat;
+
+/**
+ * One receiver of a notification: a webhook URL together with the payload format it understands.
+ */
+public class DeliveryTarget {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DeliveryTarget.class);
+
+	private final String webhookUrl;
+	private final PayloadFormat format;
+	private final SlackClient client;
+
+	public DeliveryTarget(String webhookUrl, PayloadFormat format, SlackClient client) {
+		this.webhookUrl = webhookUrl;
+		this.format = format;
+		this.client = client;
+	}
+
+	public String webhookUrl() {
+		return webhookUrl;
+	}
+
+	public PayloadFormat format() {
+		return format;
+	}
+
+	public SlackClient client() {
+		return client;
+	}
+
+	public byte[] encode(SlackMessage message) {
+		return format.encode(message);
+	}
+
+	/**
+	 * @throws SlackClientException if the request fails or the receiver reports an error in a 2xx response
+	 */
+	public SlackResponse send(byte[] payload, SlackTimings timings) throws SlackClientException {
+		final SlackResponse response = client.send(payload, timings);
+		if (!format.isSuccess(response.body())) {
+			throw new SlackClientException("Receiver of " + format.name() + " message reported an error",
+					response.statusCode(), response.body());
+		}
+		LOG.debug("Successfully sent {} message.", format.name());
+		return response;
+	}
+}
@@ -0,0 +1,262 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackResponse;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+/**
+ * The {@link SlackTransport#HTTP2} transport based on OkHttp.
+ * <p>
+ * HTTPS hosts negotiate HTTP/2 via ALPN and all concurrent requests to a host share one connection as
+ * separate streams, up to the stream limit announced by the host. Writing a payload blocks while the
+ * HTTP/2 send window of the stream or connection is exhausted, so a slow host pushes back on the
+ * sending threads instead of making the transport buffer payloads. Hosts without HTTP/2 get pooled
+ * HTTP/1.1 connections. Plain HTTP hosts only use HTTP/2 if {@code cleartextHttp2} is set, because
+ * h2c is only possible with prior knowledge.
+ */
+public class Http2Transport implements SlackTransport {
+
+	private static final Logger LOG = LoggerFactory.getLogger(Http2Transport.class);
+
+	private static final int MAX_IDLE_CONNECTIONS = 5;
+	private static final long KEEP_ALIVE_MINUTES = 5;
+
+	private final OkHttpClient httpsClient;
+	private final OkHttpClient httpClient;
+	// Derived clients per proxy, sharing the connection pool of the base clients
+	private final ConcurrentMap<Proxy, OkHttpClient> httpsClients = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Proxy, OkHttpClient> httpClients = new ConcurrentHashMap<>();
+
+	/**
+	 * @param connectTimeoutMillis time to set up a connection
+	 * @param readTimeoutMillis    time the host may stay silent while the response is read
+	 */
+	public Http2Transport(int connectTimeoutMillis, int readTimeoutMillis) {
+		// A stalled host must not hold the permits of the send guard for longer than its wait timeout
+		this(new OkHttpClient.Builder()
+				.connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+				.readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS)
+				.writeTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS), false);
+	}
+
+	/**
+	 * @param builder        base settings of the clients, e.g. trusted certificates or timeouts
+	 * @param cleartextHttp2 whether plain HTTP hosts are expected to speak HTTP/2 without an upgrade (h2c)
+	 */
+	public Http2Transport(OkHttpClient.Builder builder, boolean cleartextHttp2) {
+		this.httpsClient = builder
+				.connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+				.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+				.eventListenerFactory(Http2Transport::timingListener)
+				.retryOnConnectionFailure(false)
+				.build();
+		this.httpClient = cleartextHttp2
+				? httpsClient.newBuilder().protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE)).build()
+				: httpsClient;
+	}
+
+	@Override
+	public SlackResponse post(URL url, Proxy proxy, Map<String, String> headers, byte[] payload, boolean compress,
+							  SlackTimings timings) throws SlackClientException {
+		final Request.Builder request = newRequest(url, headers, timings);
+		final MediaType contentType = MediaType.parse(headers.getOrDefault("Content-Type", "application/json"));
+		if (compress) {
+			request.header("Content-Encoding", "gzip")
+					.post(gzip(contentType, payload));
+		} else {
+			request.post(RequestBody.create(contentType, payload));
+		}
+
+		return execute(client(url, proxy).newCall(request.build()));
+	}
+
+	@Override
+	public SlackResponse post(URL url, Proxy proxy, Map<String, String> headers, BodyWriter body,
+							  SlackTimings timings) throws SlackClientException {
+		final Request.Builder request = newRequest(url, headers, timings);
+		final MediaType contentType = MediaType.parse(headers.getOrDefault("Content-Type", "application/octet-stream"));
+		request.post(new RequestBody() {
+			@Override
+			public MediaType contentType() {
+				return contentType;
+			}
+
+			@Override
+			public long contentLength() {
+				return -1;
+			}
+
+			@Override
+			public void writeTo(BufferedSink sink) throws IOException {
+				final OutputStream out = sink.outputStream();
+				body.writeTo(out);
+				out.flush();
+			}
+		});
+		return execute(client(url, proxy).newCall(request.build()));
+	}
+
+	private static Request.Builder newRequest(URL url, Map<String, String> headers, SlackTimings timings) {
+		final Request.Builder request = new Request.Builder()
+				.url(url)
+				.tag(SlackTimings.class, timings);
+		headers.forEach((name, value) -> {
+			// OkHttp requests and decodes compressed responses by itself, but only if no encoding is set
+			if (!"Accept-Encoding".equalsIgnoreCase(name)) {
+				request.header(name, value);
+			}
+		});
+		return request;
+	}
+
+	private static SlackResponse execute(Call call) throws SlackClientException {
+		try (Response response = call.execute()) {
+			final ResponseBody responseBody = response.body();
+			final String body = responseBody == null ? "" : responseBody.string();
+			LOG.debug("Received HTTP response body via {}:\n{}", response.protocol(), body);
+			if (!response.isSuccessful()) {
+				throw new SlackClientException("Unexpected HTTP response status " + response.code(), response.code(), body);
+			}
+			return new SlackResponse(response.code(), body);
+		} catch (IOException e) {
+			throw new SlackClientException("Could not POST to Slack API", e);
+		}
+	}
+
+	/**
+	 * Requests the root of the host with HEAD, so DNS, TCP, TLS and the HTTP/2 preface are done and
+	 * the connection is in the pool before the first message is sent.
+	 */
+	@Override
+	public void warmUp(URL url, Proxy proxy, int timeoutMillis) throws SlackClientException {
+		final OkHttpClient client = client(url, proxy).newBuilder()
+				.connectTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+				.readTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+				.build();
+		final Request request = new Request.Builder()
+				.url(url.getProtocol() + "://" + url.getAuthority() + "/")
+				.head()
+				.build();
+		try (Response response = client.newCall(request).execute()) {
+			LOG.debug("Warmed up {} connection to <{}> with HTTP status {}.", response.protocol(), url.getHost(), response.code());
+		} catch (IOException e) {
+			throw new SlackClientException("Could not warm up connection to " + url.getHost(), e);
+		}
+	}
+
+	@Override
+	public void shutdown() {
+		httpsClient.connectionPool().evictAll();
+		httpsClient.dispatcher().executorService().shutdown();
+	}
+
+	private OkHttpClient client(URL url, Proxy proxy) {
+		final boolean https = "https".equalsIgnoreCase(url.getProtocol());
+		final OkHttpClient base = https ? httpsClient : httpClient;
+		return (https ? httpsClients : httpClients)
+				.computeIfAbsent(proxy, p -> base.newBuilder().proxy(p).build());
+	}
+
+	private static RequestBody gzip(MediaType contentType, byte[] payload) {
+		return new RequestBody() {
+			@Override
+			public MediaType contentType() {
+				return contentType;
+			}
+
+			@Override
+			public long contentLength() {
+				// Unknown up front, the payload is compressed while it is written
+				return -1;
+			}
+
+			@Override
+			public void writeTo(BufferedSink sink) throws IOException {
+				try (BufferedSink gzipSink = Okio.buffer(new GzipSink(sink))) {
+					gzipSink.write(payload);
+				}
+			}
+		};
+	}
+
+	private static EventListener timingListener(Call call) {
+		final SlackTimings timings = call.request().tag(SlackTimings.class);
+		return timings == null ? EventListener.NONE : new TimingListener(timings);
+	}
+
+	/**
+	 * Splits the time of a call into getting a connection, which is mostly free for a multiplexed
+	 * connection, and the exchange itself. All events of a synchronous call happen on the calling thread.
+	 */
+	private static class TimingListener extends EventListener {
+		private final SlackTimings timings;
+		private long callStart;
+		private long exchangeStart;
+		private boolean connected;
+
+		TimingListener(SlackTimings timings) {
+			this.timings = timings;
+		}
+
+		@Override
+		public void callStart(Call call) {
+			callStart = System.nanoTime();
+		}
+
+		@Override
+		public void connectionAcquired(Call call, Connection connection) {
+			// Only the first connection counts, follow-ups like redirects are part of the exchange
+			if (!connected) {
+				connected = true;
+				timings.addConnect(callStart);
+				exchangeStart = System.nanoTime();
+			}
+		}
+
+		@Override
+		public void callEnd(Call call) {
+			addResponse();
+		}
+
+		@Override
+		public void callFailed(Call call, IOException ioe) {
+			addResponse();
+		}
+
+		private void addResponse() {
+			if (connected) {
+				timings.addResponse(exchangeStart);
+			} else {
+				timings.addConnect(callStart);
+			}
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Counting semaphore that hands free permits to the waiter with the highest effective priority.
+ * <p>
+ * The effective priority of a waiter grows by one level per aging interval spent waiting, so low
+ * priority waiters are eventually served even while higher priority sends keep arriving. As all
+ * waiters age at the same rate, the order can be computed once on enqueue.
+ */
+class PriorityPermits {
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+			Comparator.comparingLong((Waiter waiter) -> waiter.rank).reversed());
+	private final long agingNanos;
+	private int available;
+
+	PriorityPermits(int permits, long agingNanos) {
+		this.available = permits;
+		this.agingNanos = Math.max(1L, agingNanos);
+	}
+
+	boolean tryAcquire() {
+		lock.lock();
+		try {
+			if (available > 0 && waiters.isEmpty()) {
+				available--;
+				return true;
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	boolean tryAcquire(int priority, long timeout, TimeUnit unit) throws InterruptedException {
+		long remaining = unit.toNanos(timeout);
+		lock.lock();
+		try {
+			if (available > 0 && waiters.isEmpty()) {
+				available--;
+				return true;
+			}
+
+			final long now = System.nanoTime();
+			final Waiter waiter = new Waiter(lock.newCondition(), priority * agingNanos - now);
+			waiters.add(waiter);
+			try {
+				while (!waiter.granted) {
+					if (remaining <= 0L) {
+						waiters.remove(waiter);
+						return false;
+					}
+					remaining = waiter.condition.awaitNanos(remaining);
+				}
+				return true;
+			} catch (InterruptedException e) {
+				if (waiter.granted) {
+					releaseLocked();
+				} else {
+					waiters.remove(waiter);
+				}
+				throw e;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void release() {
+		lock.lock();
+		try {
+			releaseLocked();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of waiters which were not granted a permit yet
+	 */
+	int waiting() {
+		lock.lock();
+		try {
+			return waiters.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void releaseLocked() {
+		final Waiter next = waiters.poll();
+		if (next != null) {
+			next.granted = true;
+			next.condition.signal();
+		} else {
+			available++;
+		}
+	}
+
+	private static class Waiter {
+		private final Condition condition;
+		private final long rank;
+		private boolean granted;
+
+		private Waiter(Condition condition, long rank) {
+			this.condition = condition;
+			this.rank = rank;
+		}
+	}
+}
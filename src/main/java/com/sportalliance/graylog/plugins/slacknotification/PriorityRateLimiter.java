@@ -0,0 +1,63 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Splits the node-wide send rate into one share per event priority, so a flood of low priority
+ * events cannot use up the rate that is reserved for high priority ones.
+ */
+class PriorityRateLimiter {
+
+	static final int PRIORITY_LOW = 1;
+	static final int PRIORITY_NORMAL = 2;
+	static final int PRIORITY_HIGH = 3;
+
+	// Index 0 is unused, so the limiters can be looked up by priority directly.
+	private final RateLimiter[] limiters;
+
+	/**
+	 * @param sendsPerSecond total rate of this node, {@code 0} disables rate limiting
+	 */
+	PriorityRateLimiter(double sendsPerSecond, int shareLow, int shareNormal, int shareHigh) {
+		if (sendsPerSecond <= 0) {
+			this.limiters = null;
+			return;
+		}
+
+		final double totalShares = shareLow + shareNormal + shareHigh;
+		this.limiters = new RateLimiter[]{
+				null,
+				create(sendsPerSecond, shareLow / totalShares),
+				create(sendsPerSecond, shareNormal / totalShares),
+				create(sendsPerSecond, shareHigh / totalShares)
+		};
+	}
+
+	private static RateLimiter create(double sendsPerSecond, double share) {
+		// Every priority keeps a minimal rate so it cannot be blocked completely.
+		return RateLimiter.create(Math.max(sendsPerSecond * share, 0.01d));
+	}
+
+	boolean tryAcquire(int priority, long timeout, TimeUnit unit) {
+		return limiters == null || limiters[priority].tryAcquire(timeout, unit);
+	}
+
+	/**
+	 * @return the sends per second of the given priority or {@code 0} if rate limiting is disabled
+	 */
+	double rate(int priority) {
+		return limiters == null ? 0 : limiters[priority].getRate();
+	}
+
+	static int normalize(long priority) {
+		if (priority <= PRIORITY_LOW) {
+			return PRIORITY_LOW;
+		}
+		if (priority >= PRIORITY_HIGH) {
+			return PRIORITY_HIGH;
+		}
+		return PRIORITY_NORMAL;
+	}
+}
@@ -1,106 +1,173 @@
 package com.sportalliance.graylog.plugins.slacknotification;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
 import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
 
 public class SlackClient {
 
-	private static final Logger LOG = LoggerFactory.getLogger(SlackClient.class);
-
-	private final String webhookUrl;
-	private final String proxyURL;
+	private final URL url;
+	private final Proxy proxy;
+	private final int compressionThreshold;
+	private final Map<String, String> headers;
+	private final SlackTransport transport;
+	// Reported on send, so broken configs fail like before instead of on construction
+	private final SlackClientException configError;
 
 	public SlackClient(SlackEventNotificationConfig configuration) {
-		this.webhookUrl = configuration.webhookUrl();
-		this.proxyURL = configuration.proxy();
+		this(configuration.webhookUrl(), configuration.proxy(), configuration.compressionThreshold());
+	}
+
+	public SlackClient(String webhookUrl, String proxyURL, int compressionThreshold) {
+		this(webhookUrl, proxyURL, compressionThreshold, null, UrlConnectionTransport.INSTANCE);
 	}
 
-	public void send(SlackMessage message) throws SlackClientException {
-		final URL url;
+	/**
+	 * @param bearerToken token sent as authorization, e.g. for Slack Web API methods, or {@code null}
+	 * @param transport   the transport of the node, see {@link SlackTransport}
+	 */
+	public SlackClient(String webhookUrl, String proxyURL, int compressionThreshold, String bearerToken, SlackTransport transport) {
+		URL url = null;
+		Proxy proxy = Proxy.NO_PROXY;
+		SlackClientException configError = null;
 		try {
 			url = new URL(webhookUrl);
 		} catch (MalformedURLException e) {
-			throw new SlackClientException("Error while constructing webhook URL.", e);
+			configError = new SlackClientException("Error while constructing webhook URL.", e);
 		}
 
-		final HttpURLConnection conn;
-		try {
-			if (!StringUtils.isEmpty(proxyURL)) {
+		if (!StringUtils.isEmpty(proxyURL)) {
+			try {
 				final URI proxyUri = new URI(proxyURL);
-				InetSocketAddress sockAddress = new InetSocketAddress(proxyUri.getHost(), proxyUri.getPort());
-				final Proxy proxy = new Proxy(Proxy.Type.HTTP, sockAddress);
-				conn = (HttpURLConnection) url.openConnection(proxy);
-			} else {
-				conn = (HttpURLConnection) url.openConnection();
+				InetSocketAddress sockAddress = InetSocketAddress.createUnresolved(proxyUri.getHost(), proxyUri.getPort());
+				proxy = new Proxy(Proxy.Type.HTTP, sockAddress);
+			} catch (URISyntaxException | IllegalArgumentException e) {
+				configError = new SlackClientException("Could not open connection to Slack API", e);
 			}
-			conn.setDoOutput(true);
-			conn.setRequestMethod("POST");
-			conn.setRequestProperty("Content-Type", "application/json");
-		} catch (URISyntaxException | IOException e) {
-			throw new SlackClientException("Could not open connection to Slack API", e);
 		}
 
-		try (final Writer writer = new OutputStreamWriter(conn.getOutputStream(), StandardCharsets.UTF_8)) {
-			String json = message.getJsonString();
-			writer.write(json);
-			writer.flush();
-
-			final int responseCode = conn.getResponseCode();
-			if (responseCode != 200) {
-				if(LOG.isDebugEnabled()){
-					try (final InputStream responseStream = conn.getInputStream()) {
-						final byte[] responseBytes = IOUtils.toByteArray(responseStream);
-						final String response = new String(responseBytes, Charsets.UTF_8);
-						LOG.debug("Received HTTP response body:\n{}", response);
-					}
-				}
-				throw new SlackClientException("Unexpected HTTP response status " + responseCode);
-			}
-		} catch (IOException e) {
-			throw new SlackClientException("Could not POST to Slack API", e);
+		this.url = url;
+		this.proxy = proxy;
+		this.compressionThreshold = compressionThreshold;
+		this.headers = headers(compressionThreshold, bearerToken);
+		this.transport = transport;
+		this.configError = configError;
+	}
+
+	private static Map<String, String> headers(int compressionThreshold, String bearerToken) {
+		final ImmutableMap.Builder<String, String> headers = ImmutableMap.builder();
+		if (bearerToken != null) {
+			headers.put("Authorization", "Bearer " + bearerToken);
+			// The Web API warns about JSON bodies without charset
+			headers.put("Content-Type", "application/json; charset=utf-8");
+		} else {
+			headers.put("Content-Type", "application/json");
 		}
+		if (compressionThreshold > 0) {
+			headers.put("Accept-Encoding", "gzip, deflate");
+		}
+		return headers.build();
+	}
 
-		try (final InputStream responseStream = conn.getInputStream()) {
-			final byte[] responseBytes = IOUtils.toByteArray(responseStream);
+	public SlackResponse send(SlackMessage message) throws SlackClientException {
+		return send(message.getJsonBytes());
+	}
 
-			final String response = new String(responseBytes, Charsets.UTF_8);
-			if (response.equals("ok")) {
-				LOG.debug("Successfully sent message to Slack.");
-			} else {
-				LOG.warn("Message couldn't be successfully sent. Response was: {}", response);
-			}
-		} catch (IOException e) {
-			throw new SlackClientException("Could not read response body from Slack API", e);
+	public SlackResponse send(byte[] payload) throws SlackClientException {
+		return send(payload, new SlackTimings());
+	}
+
+	public SlackResponse send(byte[] payload, SlackTimings timings) throws SlackClientException {
+		if (configError != null) {
+			throw configError;
 		}
+
+		// Slack itself does not accept compressed requests, only compatible receivers may do
+		final boolean compress = compressionThreshold > 0 && payload.length >= compressionThreshold;
+		return transport.post(url, proxy, headers, payload, compress, timings);
 	}
 
+	/**
+	 * Sends a body which is written while it is sent, e.g. a multipart file upload. It is never compressed.
+	 */
+	public SlackResponse send(String contentType, SlackTransport.BodyWriter body, SlackTimings timings) throws SlackClientException {
+		if (configError != null) {
+			throw configError;
+		}
+
+		final Map<String, String> streamHeaders = new HashMap<>(headers);
+		streamHeaders.put("Content-Type", contentType);
+		return transport.post(url, proxy, streamHeaders, body, timings);
+	}
+
+	/**
+	 * Resolves the host and sets up a connection to it before the first message is sent.
+	 */
+	public void warmUp(int timeoutMillis) throws SlackClientException {
+		if (configError != null) {
+			throw configError;
+		}
+		transport.warmUp(url, proxy, timeoutMillis);
+	}
+
+	public static class SlackResponse {
+		private final int statusCode;
+		private final String body;
+
+		public SlackResponse(int statusCode, String body) {
+			this.statusCode = statusCode;
+			this.body = body;
+		}
+
+		public int statusCode() {
+			return statusCode;
+		}
+
+		public String body() {
+			return body;
+		}
+	}
 
 	public static class SlackClientException extends Exception {
 
+		private final int statusCode;
+		private final String responseBody;
+
 		public SlackClientException(String msg) {
+			this(msg, -1, null);
+		}
+
+		public SlackClientException(String msg, int statusCode, String responseBody) {
 			super(msg);
+			this.statusCode = statusCode;
+			this.responseBody = responseBody;
 		}
 
 		public SlackClientException(String msg, Throwable cause) {
 			super(msg, cause);
+			this.statusCode = -1;
+			this.responseBody = null;
+		}
+
+		/**
+		 * @return the HTTP status of the response or {@code -1} if no response was received
+		 */
+		public int statusCode() {
+			return statusCode;
+		}
+
+		public String responseBody() {
+			return responseBody;
 		}
 
 	}
@@ -0,0 +1,53 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.audit.DeliveryAuditLog;
+
+/**
+ * Sends one rendered message to all targets of a notification, each through the send guard and
+ * recorded in the delivery audit log.
+ */
+@Singleton
+public class SlackDispatcher {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SlackDispatcher.class);
+
+	private final SlackSendGuard sendGuard;
+	private final DeliveryAuditLog auditLog;
+
+	@Inject
+	public SlackDispatcher(SlackSendGuard sendGuard, DeliveryAuditLog auditLog) {
+		this.sendGuard = sendGuard;
+		this.auditLog = auditLog;
+	}
+
+	/**
+	 * A failing target does not keep the message from the other targets, the first failure is
+	 * thrown once all targets were tried.
+	 */
+	public void dispatch(String notificationId, String eventId, long priority,
+						 SlackRuntimeState state, SlackMessage message) throws SlackClientException {
+		SlackClientException failure = null;
+		for (DeliveryTarget target : state.targets()) {
+			try {
+				sendGuard.execute(target.webhookUrl(), priority,
+						() -> auditLog.send(notificationId, eventId, target, message));
+			} catch (SlackClientException e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					LOG.warn("Could not send {} message of notification <{}>.", target.format().name(), notificationId, e);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
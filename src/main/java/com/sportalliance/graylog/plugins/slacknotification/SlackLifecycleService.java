@@ -0,0 +1,173 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.graylog.events.notifications.DBNotificationService;
+import org.graylog.events.notifications.NotificationDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.joschi.jadconfig.util.Duration;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.audit.DeliveryAuditLog;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+import com.sportalliance.graylog.plugins.slacknotification.digest.SlackDigestBuffer;
+import com.sportalliance.graylog.plugins.slacknotification.live.SlackLiveMessages;
+
+/**
+ * Owns the background threads of the plugin and ties them to the lifecycle of the Graylog node.
+ * <p>
+ * On startup the digest entries spooled by the previous run are recovered and the connections to the
+ * webhooks of all Slack notifications are optionally warmed up in the background. On shutdown, the
+ * digest entries in memory are spooled, as are entries added afterwards. Then the pending live message
+ * updates are sent, new sends are rejected and sends which are in flight or waiting for a permit are
+ * given until the shutdown timeout to complete. Finally the delivery audit log is flushed and the
+ * connections of the transport are closed.
+ */
+@Singleton
+public class SlackLifecycleService extends AbstractIdleService {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SlackLifecycleService.class);
+
+	private static final int WARM_UP_TIMEOUT_MILLIS = 5000;
+	private static final long DRAIN_POLL_MILLIS = 50;
+
+	private final SlackSendGuard sendGuard;
+	private final SlackRuntimeCache runtimeCache;
+	private final SlackDigestBuffer digestBuffer;
+	private final SlackLiveMessages liveMessages;
+	private final DeliveryAuditLog auditLog;
+	private final SlackTransport transport;
+	private final DBNotificationService notificationService;
+	private final long shutdownTimeoutMillis;
+	private final boolean warmUpOnStartup;
+	private final ExecutorService executor;
+
+	@Inject
+	public SlackLifecycleService(SlackSendGuard sendGuard,
+								 SlackRuntimeCache runtimeCache,
+								 SlackDigestBuffer digestBuffer,
+								 SlackLiveMessages liveMessages,
+								 DeliveryAuditLog auditLog,
+								 SlackTransport transport,
+								 DBNotificationService notificationService,
+								 @Named(SlackNotificationPluginConfiguration.SHUTDOWN_TIMEOUT) Duration shutdownTimeout,
+								 @Named(SlackNotificationPluginConfiguration.WARM_UP_ON_STARTUP) boolean warmUpOnStartup) {
+		this.sendGuard = sendGuard;
+		this.runtimeCache = runtimeCache;
+		this.digestBuffer = digestBuffer;
+		this.liveMessages = liveMessages;
+		this.auditLog = auditLog;
+		this.transport = transport;
+		this.notificationService = notificationService;
+		this.shutdownTimeoutMillis = shutdownTimeout.toMilliseconds();
+		this.warmUpOnStartup = warmUpOnStartup;
+		this.executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+				.setNameFormat("slack-notification-%d")
+				.setDaemon(true)
+				.build());
+	}
+
+	@Override
+	protected void startUp() {
+		// Before the first event, so recovered and new entries end up in the same digest
+		try {
+			digestBuffer.recover(this::notificationConfig);
+		} catch (RuntimeException e) {
+			LOG.warn("Could not recover spooled digest entries.", e);
+		}
+
+		if (warmUpOnStartup) {
+			// Must not delay the node startup, the first events may still find cold connections
+			executor.execute(this::warmUp);
+		}
+	}
+
+	@Override
+	protected void shutDown() throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+		digestBuffer.close();
+		final Future<?> liveUpdates = executor.submit(liveMessages::flushPending);
+		try {
+			liveUpdates.get(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			LOG.warn("Could not update live messages on shutdown.", e.getCause());
+		} catch (TimeoutException e) {
+			LOG.warn("Shutting down before all live messages were updated after {} ms.", shutdownTimeoutMillis);
+		}
+		// Only the sends accepted so far are drained, events arriving from now on fail like other sends
+		sendGuard.stop();
+		while (sendGuard.inFlight() + sendGuard.waiting() > 0 && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(DRAIN_POLL_MILLIS);
+		}
+		final int pending = sendGuard.inFlight() + sendGuard.waiting();
+		if (pending > 0) {
+			LOG.warn("Shutting down with {} Slack messages still being sent after {} ms.", pending, shutdownTimeoutMillis);
+		}
+		auditLog.close();
+
+		executor.shutdownNow();
+		executor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+		transport.shutdown();
+	}
+
+	private SlackEventNotificationConfig notificationConfig(String notificationId) {
+		return notificationService.get(notificationId)
+				.map(NotificationDto::config)
+				.filter(SlackEventNotificationConfig.class::isInstance)
+				.map(SlackEventNotificationConfig.class::cast)
+				.orElse(null);
+	}
+
+	private void warmUp() {
+		// One connection per host and proxy is enough, it is shared by all URLs of a host
+		final Map<String, SlackClient> clients = new LinkedHashMap<>();
+		try (Stream<NotificationDto> notifications = notificationService.streamAll()) {
+			notifications
+					.filter(notification -> notification.config() instanceof SlackEventNotificationConfig)
+					.forEach(notification -> {
+						final SlackEventNotificationConfig config = (SlackEventNotificationConfig) notification.config();
+						// Also compiles the templates before the first event
+						final SlackRuntimeState state = runtimeCache.get(notification.id(), config);
+						for (DeliveryTarget target : state.targets()) {
+							clients.putIfAbsent(hostKey(target, config), target.client());
+						}
+						if (state.postMessageTarget() != null) {
+							clients.putIfAbsent(hostKey(state.postMessageTarget(), config), state.postMessageTarget().client());
+						}
+					});
+		} catch (RuntimeException e) {
+			LOG.warn("Could not load Slack notifications to warm up connections.", e);
+			return;
+		}
+
+		for (Map.Entry<String, SlackClient> client : clients.entrySet()) {
+			try {
+				client.getValue().warmUp(WARM_UP_TIMEOUT_MILLIS);
+			} catch (SlackClientException e) {
+				LOG.info("Could not warm up connection for Slack notifications: {} ({})", e.getMessage(), e.getCause());
+			}
+		}
+		LOG.debug("Warmed up {} connections for Slack notifications.", clients.size());
+	}
+
+	private static String hostKey(DeliveryTarget target, SlackEventNotificationConfig config) {
+		final String url = target.webhookUrl();
+		final int pathStart = url.indexOf('/', url.indexOf("//") + 2);
+		return (pathStart < 0 ? url : url.substring(0, pathStart)) + " " + config.proxy();
+	}
+}
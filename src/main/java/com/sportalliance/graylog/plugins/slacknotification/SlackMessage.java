@@ -2,6 +2,7 @@ package com.sportalliance.graylog.plugins.slacknotification;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -13,66 +14,177 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableMap;
+import com.sportalliance.graylog.plugins.slacknotification.format.Mrkdwn;
 
 public class SlackMessage {
 
-	private final String color;
-	private final String iconEmoji;
-	private final String iconUrl;
-	private final String userName;
-	private final String channel;
-	private final boolean linkNames;
+	// Slack rejects section texts longer than this and messages with more blocks
+	private static final int MAX_SECTION_TEXT_LENGTH = 3000;
+	private static final int MAX_BLOCKS = 50;
+	private static final int MAX_SECTION_FIELDS = 10;
+	private static final int MAX_SECTION_FIELD_LENGTH = 2000;
+	private static final Map<String, Object> DIVIDER = ImmutableMap.of("type", "divider");
+
+	private final SlackPayloadTemplate template;
 	private final String message;
 	private String customMessage;
 	private List<String> backlogItemMessages;
+	private final List<List<AttachmentField>> backlogItemFields;
+	private final String backlogSearchUrl;
+	private final int backlogSize;
+	// Timestamp of the message to update, only set for Web API updates
+	private final String ts;
 
 	public SlackMessage(
-			String color,
-			String iconEmoji,
-			String iconUrl,
-			String userName,
-			String channel,
-			boolean linkNames,
+			SlackPayloadTemplate template,
 			String message,
 			String customMessage,
 			List<String> backlogItemMessages
 	) {
-		this.color = color;
-		this.iconEmoji = iconEmoji;
-		this.iconUrl = iconUrl;
-		this.userName = userName;
-		this.channel = channel;
-		this.linkNames = linkNames;
+		this(template, message, customMessage, backlogItemMessages, Collections.emptyList(), null, backlogItemMessages.size());
+	}
+
+	/**
+	 * @param backlogItemFields fields of each backlog item which is shown as fields instead of a rendered message
+	 * @param backlogSearchUrl  Graylog search showing the whole backlog, or {@code null} if the backlog
+	 *                          item messages are the whole backlog
+	 * @param backlogSize       number of messages in the whole backlog
+	 */
+	public SlackMessage(
+			SlackPayloadTemplate template,
+			String message,
+			String customMessage,
+			List<String> backlogItemMessages,
+			List<List<AttachmentField>> backlogItemFields,
+			String backlogSearchUrl,
+			int backlogSize
+	) {
+		this(template, message, customMessage, backlogItemMessages, backlogItemFields, backlogSearchUrl, backlogSize, null);
+	}
+
+	private SlackMessage(
+			SlackPayloadTemplate template,
+			String message,
+			String customMessage,
+			List<String> backlogItemMessages,
+			List<List<AttachmentField>> backlogItemFields,
+			String backlogSearchUrl,
+			int backlogSize,
+			String ts
+	) {
+		this.template = template;
 		this.message = message;
 		this.customMessage = customMessage;
 		this.backlogItemMessages = backlogItemMessages;
+		this.backlogItemFields = backlogItemFields;
+		this.backlogSearchUrl = backlogSearchUrl;
+		this.backlogSize = backlogSize;
+		this.ts = ts;
+	}
+
+	/**
+	 * Copy of this message replacing the posted message with the given timestamp, see
+	 * https://api.slack.com/methods/chat.update.
+	 */
+	public SlackMessage forUpdate(SlackPayloadTemplate template, String message, String ts) {
+		return new SlackMessage(template, message, customMessage, backlogItemMessages, backlogItemFields,
+				backlogSearchUrl, backlogSize, ts);
+	}
+
+	/**
+	 * Copy of this message with the given default message, e.g. to add a line to it.
+	 */
+	public SlackMessage withMessage(String message) {
+		return new SlackMessage(template, message, customMessage, backlogItemMessages, backlogItemFields,
+				backlogSearchUrl, backlogSize, ts);
 	}
 
 	public String getJsonString() {
-		// See https://api.slack.com/methods/chat.postMessage for valid parameters
-		final Map<String, Object> params = new HashMap<>();
-		params.put("channel", channel);
-		params.put("text", message);
-		params.put("link_names", linkNames);
+		return new String(getJsonBytes(), StandardCharsets.UTF_8);
+	}
+
+	public byte[] getJsonBytes() {
+		return getJsonBytes(template.blockKit());
+	}
 
-		if (!isNullOrEmpty(userName)) {
-			params.put("username", userName);
+	/**
+	 * Encodes the message for Slack, with Block Kit blocks or with legacy attachments which are
+	 * also understood by Slack compatible receivers.
+	 */
+	public byte[] getJsonBytes(boolean blockKit) {
+		final Map<String, Object> params = blockKit ? buildBlocks() : buildAttachments();
+		params.put("text", message);
+		if (ts != null) {
+			params.put("ts", ts);
 		}
 
-		if (!isNullOrEmpty(iconUrl)) {
-			params.put("icon_url", iconUrl);
+		final byte[] staticFields = template.staticFields();
+		final byte[] dynamicFields;
+		try {
+			dynamicFields = SlackPayloadTemplate.MAPPER.writeValueAsBytes(params);
+		} catch (JsonProcessingException e) {
+			throw new RuntimeException("Could not build payload JSON.", e);
 		}
 
-		if (!isNullOrEmpty(iconEmoji)) {
-			params.put("icon_emoji", ensureEmojiSyntax(iconEmoji));
+		// Join both objects: {"channel":..."link_names":false + , + "text":...}
+		final byte[] json = new byte[staticFields.length + dynamicFields.length];
+		System.arraycopy(staticFields, 0, json, 0, staticFields.length);
+		json[staticFields.length] = ',';
+		System.arraycopy(dynamicFields, 1, json, staticFields.length + 1, dynamicFields.length - 1);
+		return json;
+	}
+
+	public String message() {
+		return message;
+	}
+
+	/**
+	 * @return the rendered custom message or {@code null} if there is none
+	 */
+	public String customMessage() {
+		return customMessage;
+	}
+
+	public List<String> backlogItemMessages() {
+		return backlogItemMessages;
+	}
+
+	public List<List<AttachmentField>> backlogItemFields() {
+		return backlogItemFields;
+	}
+
+	/**
+	 * @return the Graylog search showing the whole backlog or {@code null} if there is none
+	 */
+	public String backlogSearchUrl() {
+		return backlogSearchUrl;
+	}
+
+	public int backlogSize() {
+		return backlogSize;
+	}
+
+	/**
+	 * @return a Slack link to the whole backlog or {@code null} if there is no search URL
+	 */
+	public String backlogLink() {
+		if (backlogSearchUrl == null) {
+			return null;
 		}
+		return Mrkdwn.link(backlogSearchUrl, "Show all " + backlogSize + " backlog messages in Graylog");
+	}
 
+	public String color() {
+		return template.color();
+	}
+
+	private Map<String, Object> buildAttachments() {
+		final Map<String, Object> params = new HashMap<>();
 		final List<Attachment> attachments = new ArrayList<>();
 		if (!isNullOrEmpty(customMessage)) {
 			final Attachment attachment = new Attachment(
-					color,
+					template.color(),
 					customMessage,
 					"Custom Message",
 					"Custom Message:",
@@ -84,7 +196,7 @@ public class SlackMessage {
 		for (String backlogItemMessage : backlogItemMessages) {
 			if(!isNullOrEmpty(backlogItemMessage)) {
 				final Attachment attachment = new Attachment(
-						color,
+						template.color(),
 						backlogItemMessage,
 						"Backlog Item Message",
 						null,
@@ -94,29 +206,131 @@ public class SlackMessage {
 			}
 		}
 
+		for (List<AttachmentField> fields : backlogItemFields) {
+			if (!fields.isEmpty()) {
+				attachments.add(new Attachment(template.color(), null, "Backlog Item", null, escape(fields)));
+			}
+		}
+
+		final String backlogLink = backlogLink();
+		if (backlogLink != null) {
+			attachments.add(new Attachment(template.color(), backlogLink, "Backlog", null, null));
+		}
+
 		if (!attachments.isEmpty()) {
 			params.put("attachments", attachments);
 		}
+		return params;
+	}
 
-		try {
-			return new ObjectMapper().writeValueAsString(params);
-		} catch (JsonProcessingException e) {
-			throw new RuntimeException("Could not build payload JSON.", e);
+	private Map<String, Object> buildBlocks() {
+		// See https://api.slack.com/reference/block-kit/blocks for the block layout
+		final Map<String, Object> params = new HashMap<>();
+		params.put("blocks", Collections.singletonList(section(message)));
+
+		final List<Object> blocks = new ArrayList<>();
+		if (!isNullOrEmpty(customMessage)) {
+			blocks.add(section(customMessage));
+		}
+
+		int skipped = 0;
+		for (String backlogItemMessage : backlogItemMessages) {
+			if (isNullOrEmpty(backlogItemMessage)) {
+				continue;
+			}
+			// Keep blocks free for the hint about skipped items and the backlog link
+			if (blocks.size() + 3 > MAX_BLOCKS) {
+				skipped++;
+				continue;
+			}
+			if (!blocks.isEmpty()) {
+				blocks.add(DIVIDER);
+			}
+			blocks.add(section(backlogItemMessage));
 		}
+
+		for (List<AttachmentField> fields : backlogItemFields) {
+			if (fields.isEmpty()) {
+				continue;
+			}
+			if (blocks.size() + 3 > MAX_BLOCKS) {
+				skipped++;
+				continue;
+			}
+			if (!blocks.isEmpty()) {
+				blocks.add(DIVIDER);
+			}
+			blocks.add(fieldsSection(fields));
+		}
+
+		if (skipped > 0) {
+			blocks.add(context("_" + skipped + " more backlog items not shown_"));
+		}
+
+		final String backlogLink = backlogLink();
+		if (backlogLink != null) {
+			blocks.add(context(backlogLink));
+		}
+
+		if (!blocks.isEmpty()) {
+			final Map<String, Object> attachment = new HashMap<>();
+			attachment.put("color", template.encodedColor());
+			attachment.put("blocks", blocks);
+			params.put("attachments", Collections.singletonList(attachment));
+		}
+		return params;
+	}
+
+	private static Map<String, Object> context(String text) {
+		return ImmutableMap.of("type", "context", "elements", Collections.singletonList(
+				ImmutableMap.of("type", "mrkdwn", "text", text)));
 	}
 
-	private String ensureEmojiSyntax(final String x) {
-		String emoji = x.trim();
+	/**
+	 * Field titles and values are message fields, escaped only when the message is encoded for Slack,
+	 * other formats get them as they are.
+	 */
+	private static List<AttachmentField> escape(List<AttachmentField> fields) {
+		final List<AttachmentField> escaped = new ArrayList<>(fields.size());
+		for (AttachmentField field : fields) {
+			escaped.add(new AttachmentField(Mrkdwn.escape(field.title), Mrkdwn.escape(field.value), field.isShort));
+		}
+		return escaped;
+	}
 
-		if (!emoji.isEmpty() && !emoji.startsWith(":")) {
-			emoji = ":" + emoji;
+	private static Map<String, Object> fieldsSection(List<AttachmentField> fields) {
+		// Section fields are always shown in two columns, long fields become lines of the section text
+		final List<Object> shortFields = new ArrayList<>();
+		final StringBuilder text = new StringBuilder();
+		for (AttachmentField field : fields) {
+			if (field.isShort && shortFields.size() < MAX_SECTION_FIELDS) {
+				final StringBuilder fieldText = new StringBuilder(field.title.length() + field.value.length() + 8);
+				Mrkdwn.appendEscaped(fieldText.append('*'), field.title).append("*\n");
+				Mrkdwn.appendEscaped(fieldText, field.value);
+				shortFields.add(ImmutableMap.of("type", "mrkdwn", "text", truncate(fieldText.toString(), MAX_SECTION_FIELD_LENGTH)));
+			} else {
+				Mrkdwn.appendEscaped(text.append('*'), field.title).append("*\n");
+				Mrkdwn.appendEscaped(text, field.value).append('\n');
+			}
 		}
 
-		if (!emoji.isEmpty() && !emoji.endsWith(":")) {
-			emoji = emoji + ":";
+		final Map<String, Object> section = new HashMap<>();
+		section.put("type", "section");
+		if (!shortFields.isEmpty()) {
+			section.put("fields", shortFields);
+		}
+		if (text.length() > 0 || shortFields.isEmpty()) {
+			section.put("text", ImmutableMap.of("type", "mrkdwn", "text", truncate(text.toString(), MAX_SECTION_TEXT_LENGTH)));
 		}
+		return section;
+	}
+
+	private static String truncate(String text, int maxLength) {
+		return text.length() > maxLength ? text.substring(0, maxLength - 1) + "\u2026" : text;
+	}
 
-		return emoji;
+	private static Map<String, Object> section(String text) {
+		return ImmutableMap.of("type", "section", "text", ImmutableMap.of("type", "mrkdwn", "text", truncate(text, MAX_SECTION_TEXT_LENGTH)));
 	}
 
 	@JsonInclude(JsonInclude.Include.NON_NULL)
@@ -1,17 +1,61 @@
 package com.sportalliance.graylog.plugins.slacknotification;
 
+import java.util.Collections;
+import java.util.Set;
+
+import org.graylog2.plugin.PluginConfigBean;
 import org.graylog2.plugin.PluginModule;
 
+import com.google.inject.Scopes;
+import com.google.inject.multibindings.Multibinder;
+import com.sportalliance.graylog.plugins.slacknotification.audit.DeliveryAuditLog;
+import com.sportalliance.graylog.plugins.slacknotification.audit.DeliveryAuditPeriodical;
+import com.sportalliance.graylog.plugins.slacknotification.config.ApiTokenCipher;
 import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotification;
 import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+import com.sportalliance.graylog.plugins.slacknotification.digest.SlackDigestBuffer;
+import com.sportalliance.graylog.plugins.slacknotification.digest.SlackDigestPeriodical;
+import com.sportalliance.graylog.plugins.slacknotification.live.SlackLiveMessagePeriodical;
+import com.sportalliance.graylog.plugins.slacknotification.live.SlackLiveMessages;
+import com.sportalliance.graylog.plugins.slacknotification.rest.DeliveryAuditResource;
+import com.sportalliance.graylog.plugins.slacknotification.rest.SlackTestResource;
+import com.sportalliance.graylog.plugins.slacknotification.suppression.SlackSuppressor;
+import com.sportalliance.graylog.plugins.slacknotification.template.TemplateRenderer;
+import com.sportalliance.graylog.plugins.slacknotification.upload.SlackBacklogUploader;
 
 /**
  * Extend the PluginModule abstract class here to add you plugin to the system.
  */
 public class SlackNotificationModule extends PluginModule {
 
+	@Override
+	public Set<? extends PluginConfigBean> getConfigBeans() {
+		return Collections.singleton(new SlackNotificationPluginConfiguration());
+	}
+
 	@Override
 	protected void configure() {
+		requestStaticInjection(ApiTokenCipher.class);
+		bind(SlackTransport.class).toProvider(SlackTransportProvider.class).in(Scopes.SINGLETON);
+		bind(SlackSendGuard.class).asEagerSingleton();
+		bind(SlackRuntimeCache.class).asEagerSingleton();
+		final Multibinder<SlackRuntimeCache.RemovalListener> removalListeners =
+				Multibinder.newSetBinder(binder(), SlackRuntimeCache.RemovalListener.class);
+		removalListeners.addBinding().to(SlackSendGuard.class);
+		removalListeners.addBinding().to(TemplateRenderer.class);
+		removalListeners.addBinding().to(SlackDigestBuffer.class);
+		bind(SlackDigestBuffer.class).asEagerSingleton();
+		bind(DeliveryAuditLog.class).asEagerSingleton();
+		bind(SlackLiveMessages.class).asEagerSingleton();
+		bind(SlackSuppressor.class).asEagerSingleton();
+		bind(SlackBacklogUploader.class).asEagerSingleton();
+		serviceBinder().addBinding().to(SlackLifecycleService.class).in(Scopes.SINGLETON);
+		addPeriodical(SlackDigestPeriodical.class);
+		addPeriodical(SlackLiveMessagePeriodical.class);
+		addPeriodical(DeliveryAuditPeriodical.class);
+		addRestResource(DeliveryAuditResource.class);
+		addRestResource(SlackTestResource.class);
+
 		addNotificationType(SlackEventNotificationConfig.TYPE_NAME,
 				SlackEventNotificationConfig.class,
 				SlackEventNotification.class,
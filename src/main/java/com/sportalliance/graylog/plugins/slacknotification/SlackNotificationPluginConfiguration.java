@@ -0,0 +1,221 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.graylog2.plugin.PluginConfigBean;
+
+import com.github.joschi.jadconfig.Parameter;
+import com.github.joschi.jadconfig.ValidationException;
+import com.github.joschi.jadconfig.Validator;
+import com.github.joschi.jadconfig.ValidatorMethod;
+import com.github.joschi.jadconfig.util.Duration;
+import com.github.joschi.jadconfig.util.Size;
+import com.github.joschi.jadconfig.validators.PositiveDurationValidator;
+import com.github.joschi.jadconfig.validators.PositiveIntegerValidator;
+import com.github.joschi.jadconfig.validators.PositiveSizeValidator;
+
+/**
+ * Node-wide settings of the plugin, read from the Graylog server configuration file.
+ */
+public class SlackNotificationPluginConfiguration implements PluginConfigBean {
+
+	public static final String MAX_CONCURRENT_SENDS = "slack_notification_max_concurrent_sends";
+	public static final String MAX_CONCURRENT_SENDS_PER_WEBHOOK = "slack_notification_max_concurrent_sends_per_webhook";
+	public static final String SEND_WAIT_TIMEOUT = "slack_notification_send_wait_timeout";
+	public static final String CONNECT_TIMEOUT = "slack_notification_connect_timeout";
+	public static final String READ_TIMEOUT = "slack_notification_read_timeout";
+	public static final String PRIORITY_AGING_INTERVAL = "slack_notification_priority_aging_interval";
+	public static final String MAX_SENDS_PER_SECOND = "slack_notification_max_sends_per_second";
+	public static final String RATE_SHARE_LOW = "slack_notification_rate_share_low";
+	public static final String RATE_SHARE_NORMAL = "slack_notification_rate_share_normal";
+	public static final String RATE_SHARE_HIGH = "slack_notification_rate_share_high";
+	public static final String SPOOL_DIR = "slack_notification_spool_dir";
+	public static final String DIGEST_BUFFER_SIZE = "slack_notification_digest_buffer_size";
+	public static final String AUDIT_BUFFER_SIZE = "slack_notification_audit_buffer_size";
+	public static final String AUDIT_MAX_FILE_SIZE = "slack_notification_audit_max_file_size";
+	public static final String AUDIT_MAX_FILES = "slack_notification_audit_max_files";
+	public static final String LIVE_MESSAGE_MAX_ENTRIES = "slack_notification_live_message_max_entries";
+	public static final String SHUTDOWN_TIMEOUT = "slack_notification_shutdown_timeout";
+	public static final String WARM_UP_ON_STARTUP = "slack_notification_warm_up_on_startup";
+	public static final String TRANSPORT = "slack_notification_transport";
+	public static final String TEMPLATE_MAX_OUTPUT_LENGTH = "slack_notification_template_max_output_length";
+	public static final String TEMPLATE_MAX_ITERATIONS = "slack_notification_template_max_iterations";
+	public static final String TEMPLATE_RENDER_TIMEOUT = "slack_notification_template_render_timeout";
+
+	@Parameter(value = MAX_CONCURRENT_SENDS, validators = PositiveIntegerValidator.class)
+	private int maxConcurrentSends = 8;
+
+	@Parameter(value = MAX_CONCURRENT_SENDS_PER_WEBHOOK, validators = PositiveIntegerValidator.class)
+	private int maxConcurrentSendsPerWebhook = 2;
+
+	@Parameter(value = SEND_WAIT_TIMEOUT, validators = PositiveDurationValidator.class)
+	private Duration sendWaitTimeout = Duration.seconds(10);
+
+	@Parameter(value = CONNECT_TIMEOUT, validators = PositiveDurationValidator.class)
+	private Duration connectTimeout = Duration.milliseconds(SlackTransport.DEFAULT_CONNECT_TIMEOUT_MILLIS);
+
+	@Parameter(value = READ_TIMEOUT, validators = PositiveDurationValidator.class)
+	private Duration readTimeout = Duration.milliseconds(SlackTransport.DEFAULT_READ_TIMEOUT_MILLIS);
+
+	@Parameter(value = PRIORITY_AGING_INTERVAL, validators = PositiveDurationValidator.class)
+	private Duration priorityAgingInterval = Duration.seconds(5);
+
+	@Parameter(value = MAX_SENDS_PER_SECOND)
+	private double maxSendsPerSecond = 0;
+
+	@Parameter(value = RATE_SHARE_LOW, validators = PositiveIntegerValidator.class)
+	private int rateShareLow = 10;
+
+	@Parameter(value = RATE_SHARE_NORMAL, validators = PositiveIntegerValidator.class)
+	private int rateShareNormal = 30;
+
+	@Parameter(value = RATE_SHARE_HIGH, validators = PositiveIntegerValidator.class)
+	private int rateShareHigh = 60;
+
+	@Parameter(value = SPOOL_DIR)
+	private Path spoolDir = Paths.get("data", "slack-notification");
+
+	@Parameter(value = DIGEST_BUFFER_SIZE, validators = PositiveIntegerValidator.class)
+	private int digestBufferSize = 500;
+
+	@Parameter(value = AUDIT_BUFFER_SIZE, validators = PositiveIntegerValidator.class)
+	private int auditBufferSize = 1000;
+
+	@Parameter(value = AUDIT_MAX_FILE_SIZE, validators = PositiveSizeValidator.class)
+	private Size auditMaxFileSize = Size.megabytes(10);
+
+	@Parameter(value = AUDIT_MAX_FILES, validators = PositiveIntegerValidator.class)
+	private int auditMaxFiles = 5;
+
+	@Parameter(value = LIVE_MESSAGE_MAX_ENTRIES, validators = PositiveIntegerValidator.class)
+	private int liveMessageMaxEntries = 1000;
+
+	@Parameter(value = SHUTDOWN_TIMEOUT, validators = PositiveDurationValidator.class)
+	private Duration shutdownTimeout = Duration.seconds(10);
+
+	@Parameter(value = WARM_UP_ON_STARTUP)
+	private boolean warmUpOnStartup = true;
+
+	@Parameter(value = TRANSPORT, validators = TransportValidator.class)
+	private String transport = SlackTransport.HTTP1;
+
+	@Parameter(value = TEMPLATE_MAX_OUTPUT_LENGTH, validators = PositiveIntegerValidator.class)
+	private int templateMaxOutputLength = 20000;
+
+	@Parameter(value = TEMPLATE_MAX_ITERATIONS, validators = PositiveIntegerValidator.class)
+	private int templateMaxIterations = 10000;
+
+	@Parameter(value = TEMPLATE_RENDER_TIMEOUT, validators = PositiveDurationValidator.class)
+	private Duration templateRenderTimeout = Duration.milliseconds(500);
+
+	public int getMaxConcurrentSends() {
+		return maxConcurrentSends;
+	}
+
+	public int getMaxConcurrentSendsPerWebhook() {
+		return maxConcurrentSendsPerWebhook;
+	}
+
+	public Duration getSendWaitTimeout() {
+		return sendWaitTimeout;
+	}
+
+	public Duration getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public Duration getReadTimeout() {
+		return readTimeout;
+	}
+
+	public Duration getPriorityAgingInterval() {
+		return priorityAgingInterval;
+	}
+
+	public double getMaxSendsPerSecond() {
+		return maxSendsPerSecond;
+	}
+
+	public int getRateShareLow() {
+		return rateShareLow;
+	}
+
+	public int getRateShareNormal() {
+		return rateShareNormal;
+	}
+
+	public int getRateShareHigh() {
+		return rateShareHigh;
+	}
+
+	public Path getSpoolDir() {
+		return spoolDir;
+	}
+
+	public int getDigestBufferSize() {
+		return digestBufferSize;
+	}
+
+	public int getAuditBufferSize() {
+		return auditBufferSize;
+	}
+
+	public Size getAuditMaxFileSize() {
+		return auditMaxFileSize;
+	}
+
+	public int getAuditMaxFiles() {
+		return auditMaxFiles;
+	}
+
+	public int getLiveMessageMaxEntries() {
+		return liveMessageMaxEntries;
+	}
+
+	public Duration getShutdownTimeout() {
+		return shutdownTimeout;
+	}
+
+	public boolean isWarmUpOnStartup() {
+		return warmUpOnStartup;
+	}
+
+	public String getTransport() {
+		return transport;
+	}
+
+	public int getTemplateMaxOutputLength() {
+		return templateMaxOutputLength;
+	}
+
+	public int getTemplateMaxIterations() {
+		return templateMaxIterations;
+	}
+
+	public Duration getTemplateRenderTimeout() {
+		return templateRenderTimeout;
+	}
+
+	@ValidatorMethod
+	@SuppressWarnings("unused")
+	public void validateSendTimeouts() throws ValidationException {
+		// Otherwise a stalled webhook holds its permits until every waiting send is rejected
+		if (connectTimeout.toMilliseconds() >= sendWaitTimeout.toMilliseconds()
+				|| readTimeout.toMilliseconds() >= sendWaitTimeout.toMilliseconds()) {
+			throw new ValidationException("Parameters " + CONNECT_TIMEOUT + " and " + READ_TIMEOUT
+					+ " must be shorter than " + SEND_WAIT_TIMEOUT + " (found " + connectTimeout + ", " + readTimeout
+					+ " and " + sendWaitTimeout + ")");
+		}
+	}
+
+	public static class TransportValidator implements Validator<String> {
+		@Override
+		public void validate(String name, String value) throws ValidationException {
+			if (!SlackTransport.HTTP1.equals(value) && !SlackTransport.HTTP2.equals(value)) {
+				throw new ValidationException("Parameter " + name + " must be \"" + SlackTransport.HTTP1
+						+ "\" or \"" + SlackTransport.HTTP2 + "\" (found " + value + ")");
+			}
+		}
+	}
+}
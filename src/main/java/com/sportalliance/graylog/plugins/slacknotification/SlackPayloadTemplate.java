@@ -0,0 +1,123 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+
+/**
+ * The parts of a Slack payload that only depend on the notification config, encoded to JSON once
+ * and kept in the {@link SlackRuntimeState} of the notification.
+ */
+public class SlackPayloadTemplate {
+
+	static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final byte[] staticFields;
+	private final String color;
+	private final RawValue encodedColor;
+	private final boolean blockKit;
+
+	private SlackPayloadTemplate(byte[] staticFields, String color, RawValue encodedColor, boolean blockKit) {
+		this.staticFields = staticFields;
+		this.color = color;
+		this.encodedColor = encodedColor;
+		this.blockKit = blockKit;
+	}
+
+	static SlackPayloadTemplate create(SlackEventNotificationConfig config) {
+		return create(config, config.channel());
+	}
+
+	/**
+	 * Builds the template for another channel than the configured one, e.g. for the channel ID
+	 * returned by the Slack Web API.
+	 */
+	public static SlackPayloadTemplate create(SlackEventNotificationConfig config, String channel) {
+		return create(
+				config.color(),
+				config.iconEmoji(),
+				config.iconUrl(),
+				config.userName(),
+				channel,
+				//Note: Link names if notify channel or else the channel tag will be plain text.
+				config.linkNames() || config.notifyChannel(),
+				config.blockKit());
+	}
+
+	static SlackPayloadTemplate create(String color,
+									   String iconEmoji,
+									   String iconUrl,
+									   String userName,
+									   String channel,
+									   boolean linkNames,
+									   boolean blockKit) {
+		// See https://api.slack.com/methods/chat.postMessage for valid parameters
+		final Map<String, Object> params = new LinkedHashMap<>();
+		params.put("channel", channel);
+		params.put("link_names", linkNames);
+
+		if (!isNullOrEmpty(userName)) {
+			params.put("username", userName);
+		}
+
+		if (!isNullOrEmpty(iconUrl)) {
+			params.put("icon_url", iconUrl);
+		}
+
+		if (!isNullOrEmpty(iconEmoji)) {
+			params.put("icon_emoji", ensureEmojiSyntax(iconEmoji));
+		}
+
+		try {
+			final byte[] json = MAPPER.writeValueAsBytes(params);
+			// Strip the closing brace, the dynamic fields are appended to this object
+			final byte[] staticFields = new byte[json.length - 1];
+			System.arraycopy(json, 0, staticFields, 0, staticFields.length);
+			return new SlackPayloadTemplate(staticFields, color, new RawValue(MAPPER.writeValueAsString(color)), blockKit);
+		} catch (JsonProcessingException e) {
+			throw new RuntimeException("Could not build static payload JSON.", e);
+		}
+	}
+
+	private static String ensureEmojiSyntax(final String x) {
+		String emoji = x.trim();
+
+		if (!emoji.isEmpty() && !emoji.startsWith(":")) {
+			emoji = ":" + emoji;
+		}
+
+		if (!emoji.isEmpty() && !emoji.endsWith(":")) {
+			emoji = emoji + ":";
+		}
+
+		return emoji;
+	}
+
+	/**
+	 * The encoded static fields as an unterminated JSON object, e.g. <code>{"channel":"#alerts","link_names":false</code>.
+	 */
+	byte[] staticFields() {
+		return staticFields;
+	}
+
+	String color() {
+		return color;
+	}
+
+	/**
+	 * The color as pre-encoded JSON string, for use in Block Kit attachments.
+	 */
+	RawValue encodedColor() {
+		return encodedColor;
+	}
+
+	boolean blockKit() {
+		return blockKit;
+	}
+}
@@ -0,0 +1,91 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.floreysoft.jmte.Engine;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+
+/**
+ * Caches the {@link SlackRuntimeState} of each notification by notification ID.
+ * <p>
+ * The config itself is the version of a cached state: when a notification is updated through the
+ * Graylog API, the scheduler passes the new config and the state is rebuilt on its next use.
+ * Graylog does not report deleted notifications, so states which were not used for a day are
+ * dropped. The {@link RemovalListener}s drop what they keep per notification or webhook along with them.
+ */
+@Singleton
+public class SlackRuntimeCache {
+
+	private static final long EXPIRE_AFTER_ACCESS_HOURS = 24;
+
+	private final Cache<String, SlackRuntimeState> states;
+	private final Engine templateEngine;
+	private final SlackTransport transport;
+	private final Set<RemovalListener> removalListeners;
+
+	@Inject
+	public SlackRuntimeCache(Engine templateEngine, SlackTransport transport, Set<RemovalListener> removalListeners) {
+		this.templateEngine = templateEngine;
+		this.transport = transport;
+		this.removalListeners = removalListeners;
+		this.states = CacheBuilder.newBuilder()
+				.expireAfterAccess(EXPIRE_AFTER_ACCESS_HOURS, TimeUnit.HOURS)
+				.removalListener((RemovalNotification<String, SlackRuntimeState> removal) ->
+						discard(removal.getKey(), removal.getValue()))
+				.build();
+	}
+
+	public SlackRuntimeState get(String notificationId, SlackEventNotificationConfig config) {
+		final SlackRuntimeState state = states.getIfPresent(notificationId);
+		if (state != null && state.config().equals(config)) {
+			return state;
+		}
+		return states.asMap().compute(notificationId, (id, current) -> current != null && current.config().equals(config)
+				? current
+				: create(config));
+	}
+
+	/**
+	 * Builds a state which is not cached, e.g. for configs which are not saved yet. It has to be
+	 * {@link #discard discarded} after use.
+	 */
+	public SlackRuntimeState create(SlackEventNotificationConfig config) {
+		return new SlackRuntimeState(config, templateEngine, transport);
+	}
+
+	/**
+	 * Notifies the removal listeners that the given state is no longer used, unless it is the cached
+	 * state of the notification.
+	 */
+	public void discard(String notificationId, SlackRuntimeState state) {
+		if (state == null || states.asMap().get(notificationId) == state) {
+			return;
+		}
+		final Collection<SlackRuntimeState> cached = states.asMap().values();
+		for (RemovalListener listener : removalListeners) {
+			listener.removed(notificationId, state, cached);
+		}
+	}
+
+	/**
+	 * Drops what is kept per notification or webhook outside of the {@link SlackRuntimeState}.
+	 */
+	@FunctionalInterface
+	public interface RemovalListener {
+		/**
+		 * Called when the state of a notification expired, was replaced by the state of a changed
+		 * config or an uncached state was discarded.
+		 *
+		 * @param cached the states which are still cached, e.g. to find webhooks which are still in use
+		 */
+		void removed(String notificationId, SlackRuntimeState removed, Collection<SlackRuntimeState> cached);
+	}
+}
@@ -0,0 +1,264 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.floreysoft.jmte.Engine;
+import com.floreysoft.jmte.template.Template;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.sportalliance.graylog.plugins.slacknotification.config.OutputTargetConfig;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+import com.sportalliance.graylog.plugins.slacknotification.format.PayloadFormat;
+import com.sportalliance.graylog.plugins.slacknotification.sampling.SamplingStrategy;
+import com.sportalliance.graylog.plugins.slacknotification.suppression.SuppressionSchedule;
+
+/**
+ * Everything derived from a notification config that can be reused by all events of the notification.
+ */
+public class SlackRuntimeState {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SlackRuntimeState.class);
+
+	private static final String WEB_API_URL = "https://slack.com/api/";
+	private static final Splitter FIELD_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+	private static final int MAX_DEFAULT_MESSAGES = 256;
+	private static final int MAX_CHANNEL_TEMPLATES = 16;
+
+	private final SlackEventNotificationConfig config;
+	private final List<DeliveryTarget> targets;
+	private final DeliveryTarget postMessageTarget;
+	private final DeliveryTarget updateMessageTarget;
+	private final DeliveryTarget uploadTarget;
+	private final Set<String> webhookUrls;
+	private final boolean escapeMrkdwn;
+	private final SlackPayloadTemplate payloadTemplate;
+	private final Template customMessageTemplate;
+	private final Template backlogItemTemplate;
+	private final List<String> backlogFields;
+	private final SuppressionSchedule suppressionSchedule;
+	private final SamplingStrategy samplingStrategy;
+	// Default message text per event definition, see #defaultMessage
+	private final Cache<String, DefaultMessage> defaultMessages = CacheBuilder.newBuilder()
+			.maximumSize(MAX_DEFAULT_MESSAGES)
+			.build();
+	// Templates for the channel IDs returned by the Slack Web API, see #payloadTemplate(String)
+	private final Cache<String, SlackPayloadTemplate> channelTemplates = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CHANNEL_TEMPLATES)
+			.build();
+
+	SlackRuntimeState(SlackEventNotificationConfig config, Engine templateEngine, SlackTransport transport) {
+		this.config = config;
+		this.targets = buildTargets(config, transport);
+		this.postMessageTarget = config.liveMessage() ? webApiTarget(config, "chat.postMessage", transport) : null;
+		this.updateMessageTarget = config.liveMessage() ? webApiTarget(config, "chat.update", transport) : null;
+		this.uploadTarget = isNullOrEmpty(config.backlogUpload()) ? null : webApiTarget(config, "files.upload", transport);
+		this.webhookUrls = buildWebhookUrls();
+		// The message is rendered once for all targets, Slack needs the escapes however others show them
+		this.escapeMrkdwn = targets.stream().anyMatch(target -> target.format().isMrkdwn()) || postMessageTarget != null;
+		this.payloadTemplate = SlackPayloadTemplate.create(config);
+		this.customMessageTemplate = compile(templateEngine, config.customMessage());
+		this.backlogItemTemplate = compile(templateEngine, config.backlogItemMessage());
+		this.backlogFields = FIELD_SPLITTER.splitToList(config.backlogFields());
+		this.suppressionSchedule = buildSuppressionSchedule(config);
+		this.samplingStrategy = buildSamplingStrategy(config);
+	}
+
+	private static List<DeliveryTarget> buildTargets(SlackEventNotificationConfig config, SlackTransport transport) {
+		final ImmutableList.Builder<DeliveryTarget> targets = ImmutableList.builder();
+		targets.add(new DeliveryTarget(config.webhookUrl(), PayloadFormat.forName(config.messageFormat()),
+				new SlackClient(config.webhookUrl(), config.proxy(), config.compressionThreshold(), null, transport)));
+		for (OutputTargetConfig target : config.additionalTargets()) {
+			targets.add(new DeliveryTarget(target.webhookUrl(), PayloadFormat.forName(target.format()),
+					new SlackClient(target.webhookUrl(), config.proxy(), config.compressionThreshold(), null, transport)));
+		}
+		return targets.build();
+	}
+
+	private Set<String> buildWebhookUrls() {
+		final ImmutableSet.Builder<String> urls = ImmutableSet.builder();
+		targets.forEach(target -> urls.add(target.webhookUrl()));
+		for (DeliveryTarget target : new DeliveryTarget[]{postMessageTarget, updateMessageTarget, uploadTarget}) {
+			if (target != null) {
+				urls.add(target.webhookUrl());
+			}
+		}
+		return urls.build();
+	}
+
+	private static DeliveryTarget webApiTarget(SlackEventNotificationConfig config, String method, SlackTransport transport) {
+		final String url = WEB_API_URL + method;
+		return new DeliveryTarget(url, PayloadFormat.slackWebApi(), new SlackClient(url, config.proxy(), 0, config.apiToken(), transport));
+	}
+
+	private static SuppressionSchedule buildSuppressionSchedule(SlackEventNotificationConfig config) {
+		try {
+			return SuppressionSchedule.create(config);
+		} catch (IllegalArgumentException e) {
+			// Configs are validated when they are saved, this only affects configs from older versions
+			LOG.warn("Ignoring invalid quiet hours or maintenance windows: {}", e.getMessage());
+			return SuppressionSchedule.NONE;
+		}
+	}
+
+	private static SamplingStrategy buildSamplingStrategy(SlackEventNotificationConfig config) {
+		if (isNullOrEmpty(config.backlogSampling())) {
+			return null;
+		}
+		try {
+			return SamplingStrategy.forName(config.backlogSampling());
+		} catch (IllegalArgumentException e) {
+			LOG.warn("Ignoring invalid backlog sampling: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	private static Template compile(Engine templateEngine, String template) {
+		return isNullOrEmpty(template) ? null : templateEngine.getTemplate(template);
+	}
+
+	public SlackEventNotificationConfig config() {
+		return config;
+	}
+
+	/**
+	 * @return the target of the configured webhook URL
+	 */
+	public DeliveryTarget primaryTarget() {
+		return targets.get(0);
+	}
+
+	/**
+	 * @return the primary target followed by the additional targets, all receiving the same rendered message
+	 */
+	public List<DeliveryTarget> targets() {
+		return targets;
+	}
+
+	/**
+	 * @return the URLs of all targets, including the Web API methods
+	 */
+	public Set<String> webhookUrls() {
+		return webhookUrls;
+	}
+
+	/**
+	 * @return whether template values are escaped for Slack mrkdwn, because a target renders it
+	 */
+	public boolean escapeMrkdwn() {
+		return escapeMrkdwn;
+	}
+
+	public SlackPayloadTemplate payloadTemplate() {
+		return payloadTemplate;
+	}
+
+	/**
+	 * @return the payload template for another channel than the configured one, e.g. the channel ID of a
+	 * posted live message, built once per channel
+	 */
+	public SlackPayloadTemplate payloadTemplate(String channel) {
+		if (channel.equals(config.channel())) {
+			return payloadTemplate;
+		}
+		final SlackPayloadTemplate cached = channelTemplates.getIfPresent(channel);
+		if (cached != null) {
+			return cached;
+		}
+		final SlackPayloadTemplate template = SlackPayloadTemplate.create(config, channel);
+		channelTemplates.put(channel, template);
+		return template;
+	}
+
+	/**
+	 * @return the Web API target posting live messages or {@code null} if live messages are disabled
+	 */
+	public DeliveryTarget postMessageTarget() {
+		return postMessageTarget;
+	}
+
+	/**
+	 * @return the Web API target updating live messages or {@code null} if live messages are disabled
+	 */
+	public DeliveryTarget updateMessageTarget() {
+		return updateMessageTarget;
+	}
+
+	/**
+	 * @return the Web API target uploading backlog files or {@code null} if backlog uploads are disabled
+	 */
+	public DeliveryTarget uploadTarget() {
+		return uploadTarget;
+	}
+
+	/**
+	 * @return the compiled custom message template or {@code null} if none is configured
+	 */
+	public Template customMessageTemplate() {
+		return customMessageTemplate;
+	}
+
+	/**
+	 * @return the compiled backlog item template or {@code null} if none is configured
+	 */
+	public Template backlogItemTemplate() {
+		return backlogItemTemplate;
+	}
+
+	/**
+	 * @return the message fields shown as attachment fields of backlog items, empty if the backlog
+	 * item template is used
+	 */
+	public List<String> backlogFields() {
+		return backlogFields;
+	}
+
+	/**
+	 * @return the quiet hours and maintenance windows of the notification
+	 */
+	public SuppressionSchedule suppressionSchedule() {
+		return suppressionSchedule;
+	}
+
+	/**
+	 * @return the sampling of large backlogs or {@code null} if the first backlog items are rendered
+	 */
+	public SamplingStrategy samplingStrategy() {
+		return samplingStrategy;
+	}
+
+	/**
+	 * Returns the default message text of an event definition, built with the given builder only if the
+	 * definition is new or its title or description changed since the text was built.
+	 */
+	public String defaultMessage(String eventDefinitionId, String title, String description, Supplier<String> builder) {
+		final DefaultMessage cached = defaultMessages.getIfPresent(eventDefinitionId);
+		if (cached != null && cached.title.equals(title) && cached.description.equals(description)) {
+			return cached.text;
+		}
+		final String text = builder.get();
+		defaultMessages.put(eventDefinitionId, new DefaultMessage(title, description, text));
+		return text;
+	}
+
+	private static class DefaultMessage {
+		private final String title;
+		private final String description;
+		private final String text;
+
+		DefaultMessage(String title, String description, String text) {
+			this.title = title;
+			this.description = description;
+			this.text = text;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.github.joschi.jadconfig.util.Duration;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+
+/**
+ * Limits the number of concurrent Slack HTTP calls of this Graylog node, globally and per webhook.
+ * <p>
+ * Waiting sends are served by event priority (with aging) instead of arrival order, and each
+ * priority gets its own share of the optional node-wide send rate. The permits of a webhook are
+ * dropped once no cached notification sends to it anymore.
+ */
+@Singleton
+public class SlackSendGuard implements SlackRuntimeCache.RemovalListener {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SlackSendGuard.class);
+
+	private final PriorityPermits globalPermits;
+	private final ConcurrentMap<String, WebhookPermits> webhookPermits = new ConcurrentHashMap<>();
+	private final PriorityRateLimiter rateLimiter;
+	private final int permitsPerWebhook;
+	private final long agingNanos;
+	private final long waitTimeoutMillis;
+
+	private volatile boolean stopping;
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final Meter queuedMeter;
+	private final Meter rejectedMeter;
+	private final Meter rateLimitedMeter;
+	private final Timer[] waitTimers;
+
+	@Inject
+	public SlackSendGuard(@Named(SlackNotificationPluginConfiguration.MAX_CONCURRENT_SENDS) int maxConcurrentSends,
+						  @Named(SlackNotificationPluginConfiguration.MAX_CONCURRENT_SENDS_PER_WEBHOOK) int maxConcurrentSendsPerWebhook,
+						  @Named(SlackNotificationPluginConfiguration.SEND_WAIT_TIMEOUT) Duration sendWaitTimeout,
+						  @Named(SlackNotificationPluginConfiguration.PRIORITY_AGING_INTERVAL) Duration priorityAgingInterval,
+						  @Named(SlackNotificationPluginConfiguration.MAX_SENDS_PER_SECOND) double maxSendsPerSecond,
+						  @Named(SlackNotificationPluginConfiguration.RATE_SHARE_LOW) int rateShareLow,
+						  @Named(SlackNotificationPluginConfiguration.RATE_SHARE_NORMAL) int rateShareNormal,
+						  @Named(SlackNotificationPluginConfiguration.RATE_SHARE_HIGH) int rateShareHigh,
+						  MetricRegistry metricRegistry) {
+		this.agingNanos = priorityAgingInterval.toNanoseconds();
+		this.globalPermits = new PriorityPermits(maxConcurrentSends, agingNanos);
+		this.permitsPerWebhook = maxConcurrentSendsPerWebhook;
+		this.rateLimiter = new PriorityRateLimiter(maxSendsPerSecond, rateShareLow, rateShareNormal, rateShareHigh);
+		this.waitTimeoutMillis = sendWaitTimeout.toMilliseconds();
+
+		this.queuedMeter = metricRegistry.meter(name(SlackSendGuard.class, "queued"));
+		this.rejectedMeter = metricRegistry.meter(name(SlackSendGuard.class, "rejected"));
+		this.rateLimitedMeter = metricRegistry.meter(name(SlackSendGuard.class, "rate-limited"));
+		this.waitTimers = new Timer[]{
+				null,
+				metricRegistry.timer(name(SlackSendGuard.class, "wait-time", "low")),
+				metricRegistry.timer(name(SlackSendGuard.class, "wait-time", "normal")),
+				metricRegistry.timer(name(SlackSendGuard.class, "wait-time", "high"))
+		};
+		metricRegistry.register(name(SlackSendGuard.class, "waiting"), (Gauge<Integer>) waiting::get);
+		metricRegistry.register(name(SlackSendGuard.class, "in-flight"), (Gauge<Integer>) inFlight::get);
+		metricRegistry.register(name(SlackSendGuard.class, "webhooks"), (Gauge<Integer>) webhookPermits::size);
+	}
+
+	/**
+	 * Runs the given send once a permit for the webhook, a node-wide permit and the rate share of its
+	 * priority are available.
+	 *
+	 * @param eventPriority the {@link org.graylog.events.event.EventDto#priority()} of the event
+	 * @throws SlackClientException if no permits could be acquired within the configured wait timeout or
+	 *                              the guard was {@link #stop stopped}
+	 */
+	public <T> T execute(String webhookUrl, long eventPriority, GuardedSend<T> send) throws SlackClientException {
+		if (stopping) {
+			rejectedMeter.mark();
+			throw new SlackClientException("Graylog node is shutting down, not sending to Slack");
+		}
+		final int priority = PriorityRateLimiter.normalize(eventPriority);
+		final PriorityPermits webhookSemaphore = register(webhookUrl);
+		try {
+			final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMillis);
+			final Timer.Context waitTime = waitTimers[priority].time();
+			try {
+				acquire(webhookSemaphore, priority, deadline);
+			} finally {
+				waitTime.stop();
+			}
+
+			inFlight.incrementAndGet();
+			try {
+				return send.send();
+			} finally {
+				inFlight.decrementAndGet();
+				globalPermits.release();
+				webhookSemaphore.release();
+			}
+		} finally {
+			unregister(webhookUrl);
+		}
+	}
+
+	/**
+	 * Returns the permits of the webhook, counting the caller as a user so the permits are not dropped
+	 * before it {@link #unregister unregisters}.
+	 */
+	private PriorityPermits register(String webhookUrl) {
+		return webhookPermits.compute(webhookUrl, (url, permits) -> {
+			final WebhookPermits registered = permits != null
+					? permits
+					: new WebhookPermits(new PriorityPermits(permitsPerWebhook, agingNanos));
+			registered.users++;
+			return registered;
+		}).permits;
+	}
+
+	private void unregister(String webhookUrl) {
+		webhookPermits.computeIfPresent(webhookUrl, (url, permits) -> --permits.users == 0 && permits.retired ? null : permits);
+	}
+
+	/**
+	 * Acquires the webhook permit, the node-wide permit and the rate share, or none of them. The rate
+	 * share is taken last, so sends which are rejected for lack of permits do not use up the rate.
+	 */
+	private void acquire(PriorityPermits webhookSemaphore, int priority, long deadline) throws SlackClientException {
+		acquirePermit(webhookSemaphore, priority, deadline);
+		try {
+			acquirePermit(globalPermits, priority, deadline);
+		} catch (SlackClientException e) {
+			webhookSemaphore.release();
+			throw e;
+		}
+
+		if (!rateLimiter.tryAcquire(priority, Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+			globalPermits.release();
+			webhookSemaphore.release();
+			rateLimitedMeter.mark();
+			rejectedMeter.mark();
+			throw new SlackClientException("Slack send rate for priority " + priority + " exceeded, no slot within " + waitTimeoutMillis + " ms");
+		}
+	}
+
+	private void acquirePermit(PriorityPermits permits, int priority, long deadline) throws SlackClientException {
+		if (permits.tryAcquire()) {
+			return;
+		}
+
+		queuedMeter.mark();
+		waiting.incrementAndGet();
+		try {
+			final long remaining = deadline - System.nanoTime();
+			if (remaining <= 0 || !permits.tryAcquire(priority, remaining, TimeUnit.NANOSECONDS)) {
+				rejectedMeter.mark();
+				LOG.debug("No permit for sending to Slack within {} ms, rejecting message.", waitTimeoutMillis);
+				throw new SlackClientException("Too many concurrent Slack messages, no permit within " + waitTimeoutMillis + " ms");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SlackClientException("Interrupted while waiting for a permit to send to Slack", e);
+		} finally {
+			waiting.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Drops the permits of the webhooks of the removed state which no cached state sends to. Permits
+	 * which are still used by a send are dropped when the last of these sends completes.
+	 */
+	@Override
+	public void removed(String notificationId, SlackRuntimeState removed, Collection<SlackRuntimeState> cached) {
+		for (String webhookUrl : removed.webhookUrls()) {
+			if (cached.stream().noneMatch(state -> state.webhookUrls().contains(webhookUrl))) {
+				webhookPermits.computeIfPresent(webhookUrl, (url, permits) -> {
+					permits.retired = true;
+					return permits.users == 0 ? null : permits;
+				});
+			}
+		}
+	}
+
+	/**
+	 * Rejects all sends from now on, called on shutdown so the sends in flight and waiting for a permit
+	 * can be drained. Rejected sends fail like sends which got no permit.
+	 */
+	public void stop() {
+		stopping = true;
+	}
+
+	public int inFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return the number of sends waiting for a permit
+	 */
+	public int waiting() {
+		return waiting.get();
+	}
+
+	@FunctionalInterface
+	public interface GuardedSend<T> {
+		T send() throws SlackClientException;
+	}
+
+	/**
+	 * The permits of a webhook with the number of sends using them. Both fields are only changed
+	 * within {@link ConcurrentMap#compute}, so a webhook never has two sets of permits.
+	 */
+	private static class WebhookPermits {
+		private final PriorityPermits permits;
+		private int users;
+		// Whether no cached state sends to the webhook anymore, so the permits are dropped once unused
+		private boolean retired;
+
+		private WebhookPermits(PriorityPermits permits) {
+			this.permits = permits;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+/**
+ * Accumulates the time spent in the steps of building and sending one Slack message.
+ */
+public class SlackTimings {
+
+	private long modelBuildNanos;
+	private long templateRenderNanos;
+	private long serializeNanos;
+	private long connectNanos;
+	private long responseNanos;
+
+	public void addModelBuild(long startNanos) {
+		modelBuildNanos += System.nanoTime() - startNanos;
+	}
+
+	public void addTemplateRender(long startNanos) {
+		templateRenderNanos += System.nanoTime() - startNanos;
+	}
+
+	public void addSerialize(long startNanos) {
+		serializeNanos += System.nanoTime() - startNanos;
+	}
+
+	public void addConnect(long startNanos) {
+		connectNanos += System.nanoTime() - startNanos;
+	}
+
+	public void addResponse(long startNanos) {
+		responseNanos += System.nanoTime() - startNanos;
+	}
+
+	public long modelBuildNanos() {
+		return modelBuildNanos;
+	}
+
+	public long templateRenderNanos() {
+		return templateRenderNanos;
+	}
+
+	public long serializeNanos() {
+		return serializeNanos;
+	}
+
+	public long connectNanos() {
+		return connectNanos;
+	}
+
+	public long responseNanos() {
+		return responseNanos;
+	}
+}
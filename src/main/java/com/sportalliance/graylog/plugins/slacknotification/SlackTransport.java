@@ -0,0 +1,66 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.Map;
+
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackResponse;
+
+/**
+ * Carries the requests of a {@link SlackClient}, shared by all clients of the node.
+ */
+public interface SlackTransport {
+
+	/**
+	 * One HTTP/1.1 connection per request in flight, using {@link java.net.HttpURLConnection}.
+	 */
+	String HTTP1 = "http1";
+
+	/**
+	 * Concurrent requests multiplexed over one HTTP/2 connection per host where the host supports it.
+	 */
+	String HTTP2 = "http2";
+
+	int DEFAULT_CONNECT_TIMEOUT_MILLIS = 3000;
+	int DEFAULT_READ_TIMEOUT_MILLIS = 5000;
+
+	/**
+	 * POSTs the payload and returns the response of a 2xx status.
+	 *
+	 * @param headers  request headers besides the content and transfer encoding
+	 * @param compress whether the payload is sent gzip compressed
+	 * @throws SlackClientException if the request fails or the response status is not 2xx
+	 */
+	SlackResponse post(URL url, Proxy proxy, Map<String, String> headers, byte[] payload, boolean compress,
+					   SlackTimings timings) throws SlackClientException;
+
+	/**
+	 * POSTs a body which is written while it is sent, e.g. to upload a file without holding it in memory.
+	 *
+	 * @throws SlackClientException if the request fails or the response status is not 2xx
+	 */
+	SlackResponse post(URL url, Proxy proxy, Map<String, String> headers, BodyWriter body,
+					   SlackTimings timings) throws SlackClientException;
+
+	/**
+	 * Sets up a connection to the host of the given URL which is reused by the next requests.
+	 */
+	void warmUp(URL url, Proxy proxy, int timeoutMillis) throws SlackClientException;
+
+	/**
+	 * Closes idle connections and stops background threads, called when the node shuts down.
+	 */
+	default void shutdown() {
+	}
+
+	/**
+	 * Writes a request body of unknown length.
+	 */
+	@FunctionalInterface
+	interface BodyWriter {
+		void writeTo(OutputStream out) throws IOException;
+	}
+}
@@ -0,0 +1,52 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.joschi.jadconfig.util.Duration;
+
+/**
+ * Provides the {@link SlackTransport} configured for the node. HTTP/2 needs OkHttp from the Graylog
+ * server, if it is missing the HTTP/1.1 transport is used.
+ */
+public class SlackTransportProvider implements Provider<SlackTransport> {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SlackTransportProvider.class);
+
+	private final String transport;
+	private final int connectTimeoutMillis;
+	private final int readTimeoutMillis;
+
+	@Inject
+	public SlackTransportProvider(@Named(SlackNotificationPluginConfiguration.TRANSPORT) String transport,
+								  @Named(SlackNotificationPluginConfiguration.CONNECT_TIMEOUT) Duration connectTimeout,
+								  @Named(SlackNotificationPluginConfiguration.READ_TIMEOUT) Duration readTimeout) {
+		this.transport = transport;
+		this.connectTimeoutMillis = Math.toIntExact(connectTimeout.toMilliseconds());
+		this.readTimeoutMillis = Math.toIntExact(readTimeout.toMilliseconds());
+	}
+
+	/**
+	 * Provides the given transport with the default timeouts.
+	 */
+	public SlackTransportProvider(String transport) {
+		this(transport, Duration.milliseconds(SlackTransport.DEFAULT_CONNECT_TIMEOUT_MILLIS),
+				Duration.milliseconds(SlackTransport.DEFAULT_READ_TIMEOUT_MILLIS));
+	}
+
+	@Override
+	public SlackTransport get() {
+		if (SlackTransport.HTTP2.equals(transport)) {
+			try {
+				return new Http2Transport(connectTimeoutMillis, readTimeoutMillis);
+			} catch (LinkageError e) {
+				LOG.warn("HTTP/2 transport for Slack notifications is not available, falling back to HTTP/1.1: {}", e.toString());
+			}
+		}
+		return new UrlConnectionTransport(connectTimeoutMillis, readTimeoutMillis);
+	}
+}
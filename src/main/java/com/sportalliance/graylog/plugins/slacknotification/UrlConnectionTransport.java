@@ -0,0 +1,160 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackResponse;
+
+/**
+ * The {@link SlackTransport#HTTP1} transport. Connections are kept alive by the JDK, but each request
+ * in flight needs a connection of its own.
+ */
+public class UrlConnectionTransport implements SlackTransport {
+
+	public static final UrlConnectionTransport INSTANCE = new UrlConnectionTransport(
+			DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+
+	private static final Logger LOG = LoggerFactory.getLogger(UrlConnectionTransport.class);
+
+	private final int connectTimeoutMillis;
+	private final int readTimeoutMillis;
+
+	/**
+	 * @param connectTimeoutMillis time to set up the connection of a request
+	 * @param readTimeoutMillis    time the host may stay silent while the response is read
+	 */
+	public UrlConnectionTransport(int connectTimeoutMillis, int readTimeoutMillis) {
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+	@Override
+	public SlackResponse post(URL url, Proxy proxy, Map<String, String> headers, byte[] payload, boolean compress,
+							  SlackTimings timings) throws SlackClientException {
+		// The compressed size is unknown up front, stream it instead of buffering it
+		return exchange(url, proxy, headers, compress ? -1 : payload.length, compress, out -> out.write(payload), timings);
+	}
+
+	@Override
+	public SlackResponse post(URL url, Proxy proxy, Map<String, String> headers, BodyWriter body,
+							  SlackTimings timings) throws SlackClientException {
+		return exchange(url, proxy, headers, -1, false, body, timings);
+	}
+
+	/**
+	 * @param length the length of the body or {@code -1} to send it in chunks
+	 */
+	private SlackResponse exchange(URL url, Proxy proxy, Map<String, String> headers, int length, boolean compress,
+								   BodyWriter body, SlackTimings timings) throws SlackClientException {
+		final long connectStart = System.nanoTime();
+		final HttpURLConnection conn;
+		try {
+			conn = (HttpURLConnection) url.openConnection(proxy);
+			// A stalled host must not hold the permits of the send guard for longer than its wait timeout
+			conn.setConnectTimeout(connectTimeoutMillis);
+			conn.setReadTimeout(readTimeoutMillis);
+			conn.setDoOutput(true);
+			conn.setRequestMethod("POST");
+			headers.forEach(conn::setRequestProperty);
+			if (compress) {
+				conn.setRequestProperty("Content-Encoding", "gzip");
+			}
+			if (length < 0) {
+				conn.setChunkedStreamingMode(0);
+			} else {
+				conn.setFixedLengthStreamingMode(length);
+			}
+			conn.connect();
+		} catch (IOException e) {
+			throw new SlackClientException("Could not open connection to Slack API", e);
+		} finally {
+			timings.addConnect(connectStart);
+		}
+
+		final long responseStart = System.nanoTime();
+		final int responseCode;
+		try (final OutputStream outputStream = compress ? new GZIPOutputStream(conn.getOutputStream()) : conn.getOutputStream()) {
+			body.writeTo(outputStream);
+			outputStream.flush();
+			if (outputStream instanceof GZIPOutputStream) {
+				((GZIPOutputStream) outputStream).finish();
+			}
+
+			responseCode = conn.getResponseCode();
+			if (responseCode < 200 || responseCode >= 300) {
+				String response = "";
+				final InputStream errorStream = conn.getErrorStream();
+				if (errorStream != null) {
+					try (final InputStream responseStream = decode(conn, errorStream)) {
+						response = new String(IOUtils.toByteArray(responseStream), Charsets.UTF_8);
+					}
+				}
+				LOG.debug("Received HTTP response body:\n{}", response);
+				timings.addResponse(responseStart);
+				throw new SlackClientException("Unexpected HTTP response status " + responseCode, responseCode, response);
+			}
+		} catch (IOException e) {
+			throw new SlackClientException("Could not POST to Slack API", e);
+		}
+
+		try (final InputStream responseStream = decode(conn, conn.getInputStream())) {
+			final byte[] responseBytes = IOUtils.toByteArray(responseStream);
+
+			final String response = new String(responseBytes, Charsets.UTF_8);
+			LOG.debug("Received HTTP response body:\n{}", response);
+			return new SlackResponse(responseCode, response);
+		} catch (IOException e) {
+			throw new SlackClientException("Could not read response body from Slack API", e);
+		} finally {
+			timings.addResponse(responseStart);
+		}
+	}
+
+	/**
+	 * Requests the root of the host with HEAD, so DNS, TCP and TLS are set up and the connection is
+	 * in the keep-alive cache of the JDK before the first message is sent.
+	 */
+	@Override
+	public void warmUp(URL url, Proxy proxy, int timeoutMillis) throws SlackClientException {
+		try {
+			final HttpURLConnection conn = (HttpURLConnection) new URL(url, "/").openConnection(proxy);
+			conn.setRequestMethod("HEAD");
+			conn.setConnectTimeout(timeoutMillis);
+			conn.setReadTimeout(timeoutMillis);
+			final int responseCode = conn.getResponseCode();
+			// Closing the consumed stream returns the connection to the keep-alive cache
+			final InputStream responseStream = responseCode < 400 ? conn.getInputStream() : conn.getErrorStream();
+			if (responseStream != null) {
+				IOUtils.toByteArray(responseStream);
+				responseStream.close();
+			}
+			LOG.debug("Warmed up connection to <{}> with HTTP status {}.", url.getHost(), responseCode);
+		} catch (IOException e) {
+			throw new SlackClientException("Could not warm up connection to " + url.getHost(), e);
+		}
+	}
+
+	private static InputStream decode(HttpURLConnection conn, InputStream inputStream) throws IOException {
+		final String contentEncoding = conn.getContentEncoding();
+		if ("gzip".equalsIgnoreCase(contentEncoding)) {
+			return new GZIPInputStream(inputStream);
+		} else if ("deflate".equalsIgnoreCase(contentEncoding)) {
+			return new InflaterInputStream(inputStream);
+		}
+		return inputStream;
+	}
+}
@@ -0,0 +1,437 @@
+package com.sportalliance.graylog.plugins.slacknotification.audit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.joschi.jadconfig.util.Size;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.primitives.Ints;
+import com.sportalliance.graylog.plugins.slacknotification.DeliveryTarget;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackResponse;
+import com.sportalliance.graylog.plugins.slacknotification.SlackMessage;
+import com.sportalliance.graylog.plugins.slacknotification.SlackNotificationPluginConfiguration;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTimings;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTransport;
+
+/**
+ * Keeps a trail of all Slack deliveries of this node.
+ * <p>
+ * Records are appended to a rotating local file as length-prefixed binary records, the latest ones
+ * are additionally kept in memory to answer most queries without reading the files:
+ * <pre>
+ * file   := MAGIC VERSION record*
+ * record := length:int DeliveryRecord
+ * </pre>
+ * Records are flushed once per second by the {@link DeliveryAuditPeriodical} and before the files are
+ * read, so sends do not wait for the disk. Queries read the files outside of the lock appends take.
+ * <p>
+ * Failed attempts are counted per notification, event and webhook until the delivery succeeds, so each
+ * record holds the number of attempts before it.
+ */
+@Singleton
+public class DeliveryAuditLog {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DeliveryAuditLog.class);
+
+	private static final int MAGIC = 0x534e4441;
+	private static final byte VERSION = 3;
+	private static final String FILE_PREFIX = "deliveries.";
+	// Far above the size of a record, whose response is truncated, a larger length means the file is corrupt
+	private static final int MAX_RECORD_LENGTH = 64 * 1024;
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+	private static final long FAILED_ATTEMPTS_EXPIRY_HOURS = 24;
+
+	private final Path auditDir;
+	private final int bufferSize;
+	private final long maxFileSize;
+	private final int maxFiles;
+	// Failed attempts by delivery, see #attemptKey
+	private final Cache<String, Integer> failedAttempts;
+
+	// Guarded by its own monitor, the output fields below by this
+	private final ArrayDeque<DeliveryRecord> latest;
+	private DataOutputStream out;
+	private long currentFileSize;
+	private boolean unflushed;
+
+	@Inject
+	public DeliveryAuditLog(@Named(SlackNotificationPluginConfiguration.SPOOL_DIR) Path spoolDir,
+							@Named(SlackNotificationPluginConfiguration.AUDIT_BUFFER_SIZE) int bufferSize,
+							@Named(SlackNotificationPluginConfiguration.AUDIT_MAX_FILE_SIZE) Size maxFileSize,
+							@Named(SlackNotificationPluginConfiguration.AUDIT_MAX_FILES) int maxFiles) {
+		this.auditDir = spoolDir.resolve("audit");
+		this.bufferSize = bufferSize;
+		this.maxFileSize = maxFileSize.toBytes();
+		this.maxFiles = maxFiles;
+		this.latest = new ArrayDeque<>(bufferSize);
+		this.failedAttempts = CacheBuilder.newBuilder()
+				.maximumSize(bufferSize)
+				.expireAfterWrite(FAILED_ATTEMPTS_EXPIRY_HOURS, TimeUnit.HOURS)
+				.build();
+	}
+
+	/**
+	 * Sends the message to the given target and records the outcome.
+	 */
+	public SlackResponse send(String notificationId, String eventId,
+							  DeliveryTarget target, SlackMessage message) throws SlackClientException {
+		return send(notificationId, eventId, target, target.encode(message), new SlackTimings());
+	}
+
+	/**
+	 * Sends the payload encoded for the given target and records the outcome, the time spent is added to the timings.
+	 */
+	public SlackResponse send(String notificationId, String eventId, DeliveryTarget target,
+							  byte[] payload, SlackTimings timings) throws SlackClientException {
+		final long webhookHash = hashWebhook(target.webhookUrl());
+		final String attemptKey = attemptKey(notificationId, eventId, webhookHash);
+		final DeliveryRecord.Builder record = DeliveryRecord.builder()
+				.notificationId(notificationId)
+				.eventId(eventId)
+				.webhookHash(webhookHash)
+				.retries(retries(attemptKey))
+				.payloadSize(payload.length);
+
+		final long start = System.nanoTime();
+		try {
+			final SlackResponse response = target.send(payload, timings);
+			succeeded(attemptKey, record, response);
+			return response;
+		} catch (SlackClientException e) {
+			failed(attemptKey, record, e);
+			throw e;
+		} finally {
+			record.latencyMillis((int) ((System.nanoTime() - start) / 1_000_000L))
+					.timestamp(System.currentTimeMillis());
+			append(record.build());
+		}
+	}
+
+	/**
+	 * Streams the body to the given target and records the outcome with the number of bytes written.
+	 */
+	public SlackResponse upload(String notificationId, String eventId, DeliveryTarget target,
+								String contentType, SlackTransport.BodyWriter body) throws SlackClientException {
+		final long webhookHash = hashWebhook(target.webhookUrl());
+		final String attemptKey = attemptKey(notificationId, eventId, webhookHash);
+		final DeliveryRecord.Builder record = DeliveryRecord.builder()
+				.notificationId(notificationId)
+				.eventId(eventId)
+				.webhookHash(webhookHash)
+				.retries(retries(attemptKey));
+		final AtomicLong written = new AtomicLong();
+
+		final long start = System.nanoTime();
+		try {
+			final SlackResponse response = target.client().send(contentType, out -> {
+				final CountingOutputStream counting = new CountingOutputStream(out);
+				try {
+					body.writeTo(counting);
+				} finally {
+					written.set(counting.getCount());
+				}
+			}, new SlackTimings());
+			succeeded(attemptKey, record, response);
+			return response;
+		} catch (SlackClientException e) {
+			failed(attemptKey, record, e);
+			throw e;
+		} finally {
+			record.payloadSize(Ints.saturatedCast(written.get()))
+					.latencyMillis((int) ((System.nanoTime() - start) / 1_000_000L))
+					.timestamp(System.currentTimeMillis());
+			append(record.build());
+		}
+	}
+
+	private static String attemptKey(String notificationId, String eventId, long webhookHash) {
+		return notificationId + '\0' + eventId + '\0' + webhookHash;
+	}
+
+	private int retries(String attemptKey) {
+		final Integer failed = failedAttempts.getIfPresent(attemptKey);
+		return failed == null ? 0 : failed;
+	}
+
+	private void succeeded(String attemptKey, DeliveryRecord.Builder record, SlackResponse response) {
+		failedAttempts.invalidate(attemptKey);
+		record.httpStatus(response.statusCode()).response(response.body());
+	}
+
+	private void failed(String attemptKey, DeliveryRecord.Builder record, SlackClientException e) {
+		failedAttempts.asMap().merge(attemptKey, 1, Integer::sum);
+		record.httpStatus(e.statusCode())
+				.response(e.responseBody() != null ? e.responseBody() : String.valueOf(e.getCause() != null ? e.getCause() : e.getMessage()));
+	}
+
+	static long hashWebhook(String webhookUrl) {
+		// Webhook URLs are secrets, only their hash is stored
+		return Hashing.murmur3_128().hashString(webhookUrl, StandardCharsets.UTF_8).asLong();
+	}
+
+	public void append(DeliveryRecord record) {
+		synchronized (latest) {
+			if (latest.size() == bufferSize) {
+				latest.removeFirst();
+			}
+			latest.addLast(record);
+		}
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+		try {
+			record.writeTo(new DataOutputStream(bytes));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		write(bytes);
+	}
+
+	private synchronized void write(ByteArrayOutputStream bytes) {
+		try {
+			final DataOutputStream output = output();
+			output.writeInt(bytes.size());
+			bytes.writeTo(output);
+			currentFileSize += Integer.BYTES + bytes.size();
+			unflushed = true;
+		} catch (IOException e) {
+			LOG.warn("Could not write delivery audit record to <{}>.", auditDir, e);
+			closeQuietly();
+		}
+	}
+
+	/**
+	 * Writes the buffered records to the current file, called periodically and before the files are read.
+	 */
+	public synchronized void flush() {
+		if (out == null || !unflushed) {
+			return;
+		}
+		try {
+			out.flush();
+			unflushed = false;
+		} catch (IOException e) {
+			LOG.warn("Could not write delivery audit records to <{}>.", auditDir, e);
+			closeQuietly();
+		}
+	}
+
+	/**
+	 * Finds the latest records, newest first.
+	 *
+	 * @param eventId only return records of this event, or all if {@code null}
+	 * @param from    lower bound of the record timestamp in milliseconds, inclusive
+	 * @param to      upper bound of the record timestamp in milliseconds, exclusive
+	 */
+	public List<DeliveryRecord> find(@Nullable String eventId, long from, long to, int limit) {
+		final Predicate<DeliveryRecord> filter = record -> record.timestamp() >= from && record.timestamp() < to
+				&& (eventId == null || eventId.equals(record.eventId()));
+
+		final List<DeliveryRecord> result = new ArrayList<>();
+		final boolean bufferCoversRange;
+		synchronized (latest) {
+			for (Iterator<DeliveryRecord> it = latest.descendingIterator(); it.hasNext() && result.size() < limit; ) {
+				final DeliveryRecord record = it.next();
+				if (filter.test(record)) {
+					result.add(record);
+				}
+			}
+			bufferCoversRange = !latest.isEmpty() && latest.peekFirst().timestamp() <= from;
+		}
+
+		// The files contain everything the in-memory buffer contains, so only one of both is searched
+		if (result.size() >= limit || bufferCoversRange || (eventId != null && !result.isEmpty())) {
+			return result;
+		}
+
+		result.clear();
+		final List<InputStream> files = openFiles();
+		try {
+			for (int i = 0; i < files.size() && result.size() < limit; i++) {
+				final List<DeliveryRecord> fileRecords = readFile(auditFile(i), files.get(i), filter);
+				for (int j = fileRecords.size() - 1; j >= 0 && result.size() < limit; j--) {
+					result.add(fileRecords.get(j));
+				}
+			}
+		} finally {
+			files.forEach(DeliveryAuditLog::closeQuietly);
+		}
+		return result;
+	}
+
+	/**
+	 * Opens the files, newest first, limited to what was written when they were opened. Open files are
+	 * not affected by a rotation while they are read.
+	 */
+	private synchronized List<InputStream> openFiles() {
+		final List<InputStream> files = new ArrayList<>();
+		flush();
+
+		for (int i = 0; i < maxFiles; i++) {
+			final Path file = auditFile(i);
+			try {
+				final InputStream in = Files.newInputStream(file);
+				try {
+					files.add(ByteStreams.limit(in, Files.size(file)));
+				} catch (IOException e) {
+					closeQuietly(in);
+					throw e;
+				}
+			} catch (NoSuchFileException e) {
+				break;
+			} catch (IOException e) {
+				LOG.warn("Could not open delivery audit file <{}>.", file, e);
+				break;
+			}
+		}
+		return files;
+	}
+
+	private static List<DeliveryRecord> readFile(Path file, InputStream input, Predicate<DeliveryRecord> filter) {
+		final List<DeliveryRecord> records = new ArrayList<>();
+		int skipped = 0;
+		try {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+			final byte version = in.readInt() == MAGIC ? in.readByte() : 0;
+			if (version != VERSION) {
+				LOG.warn("Ignoring delivery audit file <{}> with unknown format.", file);
+				return records;
+			}
+			final byte[] buffer = new byte[MAX_RECORD_LENGTH];
+			while (true) {
+				final int length = in.readInt();
+				if (length <= 0 || length > MAX_RECORD_LENGTH) {
+					// The start of the next record is unknown
+					LOG.warn("Stopping to read delivery audit file <{}> at a record with invalid length {}.", file, length);
+					break;
+				}
+				in.readFully(buffer, 0, length);
+				final DeliveryRecord record;
+				try {
+					record = DeliveryRecord.readFrom(new DataInputStream(new ByteArrayInputStream(buffer, 0, length)));
+				} catch (IOException | RuntimeException e) {
+					skipped++;
+					continue;
+				}
+				if (filter.test(record)) {
+					records.add(record);
+				}
+			}
+		} catch (EOFException e) {
+			// End of file or a record which was only partially written
+		} catch (IOException e) {
+			LOG.warn("Could not read delivery audit file <{}>.", file, e);
+		}
+		if (skipped > 0) {
+			LOG.warn("Skipped {} corrupt records of delivery audit file <{}>.", skipped, file);
+		}
+		return records;
+	}
+
+	/**
+	 * Flushes and closes the current file, called on shutdown.
+	 */
+	public synchronized void close() {
+		closeQuietly();
+	}
+
+	private DataOutputStream output() throws IOException {
+		if (out != null && currentFileSize >= maxFileSize) {
+			closeQuietly();
+			rotate();
+		}
+
+		if (out == null) {
+			Files.createDirectories(auditDir);
+			final Path file = auditFile(0);
+			if (Files.exists(file) && Files.size(file) > 0 && !hasCurrentVersion(file)) {
+				// Records are not appended to a file of an older format
+				rotate();
+			}
+			final boolean isNew = !Files.exists(file) || Files.size(file) == 0;
+			out = new DataOutputStream(new BufferedOutputStream(
+					Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), WRITE_BUFFER_SIZE));
+			currentFileSize = Files.size(file);
+			if (isNew) {
+				out.writeInt(MAGIC);
+				out.writeByte(VERSION);
+				currentFileSize += Integer.BYTES + 1;
+			}
+		}
+		return out;
+	}
+
+	private static boolean hasCurrentVersion(Path file) {
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+			return in.readInt() == MAGIC && in.readByte() == VERSION;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void rotate() throws IOException {
+		Files.deleteIfExists(auditFile(maxFiles - 1));
+		for (int i = maxFiles - 2; i >= 0; i--) {
+			final Path file = auditFile(i);
+			if (Files.exists(file)) {
+				Files.move(file, auditFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+
+	private Path auditFile(int index) {
+		return auditDir.resolve(FILE_PREFIX + index);
+	}
+
+	private void closeQuietly() {
+		if (out != null) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				LOG.debug("Could not close delivery audit file.", e);
+			}
+			out = null;
+			unflushed = false;
+		}
+	}
+
+	private static void closeQuietly(InputStream in) {
+		try {
+			in.close();
+		} catch (IOException e) {
+			LOG.debug("Could not close delivery audit file.", e);
+		}
+	}
+}
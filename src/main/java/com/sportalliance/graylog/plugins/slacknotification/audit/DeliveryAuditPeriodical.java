@@ -0,0 +1,68 @@
+package com.sportalliance.graylog.plugins.slacknotification.audit;
+
+import javax.inject.Inject;
+
+import org.graylog2.plugin.periodical.Periodical;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Flushes the buffered records of the {@link DeliveryAuditLog}, so the last deliveries of a quiet node
+ * are on disk within a second.
+ */
+public class DeliveryAuditPeriodical extends Periodical {
+
+	private static final Logger LOG = LoggerFactory.getLogger(DeliveryAuditPeriodical.class);
+
+	private final DeliveryAuditLog auditLog;
+
+	@Inject
+	public DeliveryAuditPeriodical(DeliveryAuditLog auditLog) {
+		this.auditLog = auditLog;
+	}
+
+	@Override
+	public void doRun() {
+		auditLog.flush();
+	}
+
+	@Override
+	public boolean runsForever() {
+		return false;
+	}
+
+	@Override
+	public boolean stopOnGracefulShutdown() {
+		return true;
+	}
+
+	@Override
+	public boolean masterOnly() {
+		return false;
+	}
+
+	@Override
+	public boolean startOnThisNode() {
+		return true;
+	}
+
+	@Override
+	public boolean isDaemon() {
+		return true;
+	}
+
+	@Override
+	public int getInitialDelaySeconds() {
+		return 1;
+	}
+
+	@Override
+	public int getPeriodSeconds() {
+		return 1;
+	}
+
+	@Override
+	protected Logger getLogger() {
+		return LOG;
+	}
+}
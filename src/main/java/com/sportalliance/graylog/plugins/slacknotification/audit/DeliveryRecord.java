@@ -0,0 +1,135 @@
+package com.sportalliance.graylog.plugins.slacknotification.audit;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+/**
+ * One delivery attempt of a Slack message.
+ */
+@AutoValue
+public abstract class DeliveryRecord {
+
+	// Slack responses are short, everything beyond this is not worth keeping
+	static final int MAX_RESPONSE_LENGTH = 256;
+
+	@JsonIgnore
+	public abstract long timestamp();
+
+	@JsonProperty("notification_id")
+	public abstract String notificationId();
+
+	@JsonProperty("event_id")
+	public abstract String eventId();
+
+	@JsonIgnore
+	public abstract long webhookHash();
+
+	@JsonProperty("latency_ms")
+	public abstract int latencyMillis();
+
+	/**
+	 * The HTTP status of the response or {@code -1} if no response was received.
+	 */
+	@JsonProperty("http_status")
+	public abstract int httpStatus();
+
+	/**
+	 * The number of failed attempts of this node to deliver the event to the same webhook before this one.
+	 */
+	@JsonProperty("retries")
+	public abstract int retries();
+
+	@JsonProperty("response")
+	public abstract String response();
+
+	@JsonProperty("payload_size")
+	public abstract int payloadSize();
+
+	@JsonProperty("timestamp")
+	public DateTime timestampAsDateTime() {
+		return new DateTime(timestamp(), DateTimeZone.UTC);
+	}
+
+	@JsonProperty("webhook_hash")
+	public String webhookHashAsHex() {
+		return String.format("%016x", webhookHash());
+	}
+
+	public static Builder builder() {
+		return new AutoValue_DeliveryRecord.Builder()
+				.retries(0)
+				.response("");
+	}
+
+	public abstract Builder toBuilder();
+
+	/**
+	 * Writes the record without its length prefix, see {@link DeliveryAuditLog}.
+	 */
+	void writeTo(DataOutput out) throws IOException {
+		out.writeLong(timestamp());
+		out.writeUTF(notificationId());
+		out.writeUTF(eventId());
+		out.writeLong(webhookHash());
+		out.writeInt(latencyMillis());
+		out.writeShort(httpStatus());
+		out.writeShort(Math.min(retries(), Short.MAX_VALUE));
+		out.writeInt(payloadSize());
+		out.writeUTF(response());
+	}
+
+	static DeliveryRecord readFrom(DataInput in) throws IOException {
+		return builder()
+				.timestamp(in.readLong())
+				.notificationId(in.readUTF())
+				.eventId(in.readUTF())
+				.webhookHash(in.readLong())
+				.latencyMillis(in.readInt())
+				.httpStatus(in.readShort())
+				.retries(in.readShort())
+				.payloadSize(in.readInt())
+				.response(in.readUTF())
+				.build();
+	}
+
+	@AutoValue.Builder
+	public static abstract class Builder {
+		public abstract Builder timestamp(long timestamp);
+
+		public abstract Builder notificationId(String notificationId);
+
+		public abstract Builder eventId(String eventId);
+
+		public abstract Builder webhookHash(long webhookHash);
+
+		public abstract Builder latencyMillis(int latencyMillis);
+
+		public abstract Builder httpStatus(int httpStatus);
+
+		public abstract Builder retries(int retries);
+
+		public abstract Builder response(String response);
+
+		public abstract Builder payloadSize(int payloadSize);
+
+		abstract String response();
+
+		abstract DeliveryRecord autoBuild();
+
+		public DeliveryRecord build() {
+			final String response = response();
+			if (response.length() > MAX_RESPONSE_LENGTH) {
+				response(response.substring(0, MAX_RESPONSE_LENGTH));
+			}
+			return autoBuild();
+		}
+	}
+}
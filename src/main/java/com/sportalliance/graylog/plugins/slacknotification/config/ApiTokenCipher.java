@@ -0,0 +1,113 @@
+package com.sportalliance.graylog.plugins.slacknotification.config;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Encrypts the Slack Web API token of a notification config with the <code>password_secret</code> of the
+ * Graylog cluster, so it is neither stored in MongoDB nor returned by the notifications REST API in plain text.
+ * <p>
+ * Tokens without the {@value #PREFIX} prefix are taken as plain text, e.g. when entered in the form or
+ * stored by an older version.
+ */
+public final class ApiTokenCipher {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ApiTokenCipher.class);
+
+	static final String PREFIX = "encrypted:";
+	private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+	private static final int IV_LENGTH = 12;
+	private static final int TAG_BITS = 128;
+	private static final SecureRandom RANDOM = new SecureRandom();
+
+	private static volatile SecretKeySpec key;
+
+	private ApiTokenCipher() {
+	}
+
+	/**
+	 * Derives the key from the password secret, called by Guice on startup.
+	 */
+	@Inject
+	static void init(@Named("password_secret") String passwordSecret) {
+		key = keyOf(passwordSecret);
+	}
+
+	static SecretKeySpec keyOf(String passwordSecret) {
+		final byte[] hash = Hashing.sha256().hashString(passwordSecret, StandardCharsets.UTF_8).asBytes();
+		return new SecretKeySpec(Arrays.copyOf(hash, 16), "AES");
+	}
+
+	/**
+	 * @return the encrypted token with a new random IV, or an empty string for an empty token
+	 * @throws IllegalStateException if the cipher was not initialized
+	 */
+	static String encrypt(String token) {
+		if (isNullOrEmpty(token)) {
+			return "";
+		}
+		try {
+			final byte[] iv = new byte[IV_LENGTH];
+			RANDOM.nextBytes(iv);
+			final Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+			cipher.init(Cipher.ENCRYPT_MODE, key(), new GCMParameterSpec(TAG_BITS, iv));
+			final byte[] encrypted = cipher.doFinal(token.getBytes(StandardCharsets.UTF_8));
+			return PREFIX + Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + encrypted.length)
+					.put(iv)
+					.put(encrypted)
+					.array());
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Could not encrypt Slack API token", e);
+		}
+	}
+
+	/**
+	 * @return the plain token, or an empty string if it cannot be decrypted, e.g. after the password
+	 * secret was changed
+	 */
+	static String decrypt(String value) {
+		if (isNullOrEmpty(value)) {
+			return "";
+		}
+		if (!value.startsWith(PREFIX)) {
+			return value;
+		}
+		try {
+			final byte[] data = Base64.getDecoder().decode(value.substring(PREFIX.length()));
+			if (data.length <= IV_LENGTH) {
+				throw new GeneralSecurityException("Encrypted token too short");
+			}
+			final Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+			cipher.init(Cipher.DECRYPT_MODE, key(), new GCMParameterSpec(TAG_BITS, data, 0, IV_LENGTH));
+			return new String(cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH), StandardCharsets.UTF_8);
+		} catch (GeneralSecurityException | IllegalArgumentException e) {
+			LOG.warn("Could not decrypt Slack API token, the notification has to be saved with the token again: {}", e.getMessage());
+			return "";
+		}
+	}
+
+	private static SecretKeySpec key() {
+		final SecretKeySpec current = key;
+		if (current == null) {
+			throw new IllegalStateException("Slack API token cipher is not initialized");
+		}
+		return current;
+	}
+}
@@ -0,0 +1,34 @@
+package com.sportalliance.graylog.plugins.slacknotification.config;
+
+import javax.validation.constraints.NotBlank;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+/**
+ * An additional receiver of the messages of a notification.
+ */
+@AutoValue
+public abstract class OutputTargetConfig {
+
+	static final String FIELD_FORMAT = "format";
+	static final String FIELD_WEBHOOK_URL = "webhook_url";
+
+	/**
+	 * @see com.sportalliance.graylog.plugins.slacknotification.format.PayloadFormat#forName(String)
+	 */
+	@JsonProperty(FIELD_FORMAT)
+	@NotBlank
+	public abstract String format();
+
+	@JsonProperty(FIELD_WEBHOOK_URL)
+	@NotBlank
+	public abstract String webhookUrl();
+
+	@JsonCreator
+	public static OutputTargetConfig create(@JsonProperty(FIELD_FORMAT) String format,
+											@JsonProperty(FIELD_WEBHOOK_URL) String webhookUrl) {
+		return new AutoValue_OutputTargetConfig(format, webhookUrl);
+	}
+}
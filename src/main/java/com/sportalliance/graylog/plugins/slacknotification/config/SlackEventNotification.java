@@ -17,16 +17,20 @@
 package com.sportalliance.graylog.plugins.slacknotification.config;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
+import static com.google.common.base.Strings.nullToEmpty;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
 import org.apache.commons.lang3.StringUtils;
+import org.graylog.events.event.EventDto;
 import org.graylog.events.notifications.EventNotification;
 import org.graylog.events.notifications.EventNotificationContext;
 import org.graylog.events.notifications.EventNotificationService;
@@ -37,24 +41,46 @@ import org.graylog.scheduler.JobTriggerDto;
 import org.graylog2.jackson.TypeReferences;
 import org.graylog2.notifications.Notification;
 import org.graylog2.notifications.NotificationService;
+import org.graylog2.plugin.Message;
 import org.graylog2.plugin.MessageSummary;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.plugin.system.NodeId;
 import org.graylog2.streams.StreamService;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Period;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.floreysoft.jmte.Engine;
-import com.sportalliance.graylog.plugins.slacknotification.SlackClient;
+import com.floreysoft.jmte.template.Template;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.SlackDispatcher;
 import com.sportalliance.graylog.plugins.slacknotification.SlackMessage;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeCache;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeState;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTimings;
 import com.sportalliance.graylog.plugins.slacknotification.config.modeldata.BacklogItemModelData;
 import com.sportalliance.graylog.plugins.slacknotification.config.modeldata.CustomMessageModelData;
 import com.sportalliance.graylog.plugins.slacknotification.config.modeldata.StreamModelData;
+import com.sportalliance.graylog.plugins.slacknotification.digest.DigestEntry;
+import com.sportalliance.graylog.plugins.slacknotification.digest.SlackDigestBuffer;
+import com.sportalliance.graylog.plugins.slacknotification.format.Mrkdwn;
+import com.sportalliance.graylog.plugins.slacknotification.live.SlackLiveMessages;
+import com.sportalliance.graylog.plugins.slacknotification.sampling.BacklogSample;
+import com.sportalliance.graylog.plugins.slacknotification.sampling.BacklogSampler;
+import com.sportalliance.graylog.plugins.slacknotification.suppression.SlackSuppressor;
+import com.sportalliance.graylog.plugins.slacknotification.template.TemplateRenderer;
+import com.sportalliance.graylog.plugins.slacknotification.upload.SlackBacklogUploader;
 
 public class SlackEventNotification implements EventNotification {
 
 	private static final String UNKNOWN_VALUE = "<unknown>";
+	// Searched before the event if it has no time range, e.g. for filter events
+	private static final Period DEFAULT_SEARCH_RANGE = Period.minutes(5);
+	private static final Escaper QUERY_ESCAPER = UrlEscapers.urlFormParameterEscaper();
 
 	public interface Factory extends EventNotification.Factory {
 		@Override
@@ -65,35 +91,87 @@ public class SlackEventNotification implements EventNotification {
 
 	private final EventNotificationService notificationCallbackService;
 	private final StreamService streamService;
-	private final Engine templateEngine;
 	private final NotificationService notificationService;
 	private final ObjectMapper objectMapper;
 	private final NodeId nodeId;
+	private final SlackDispatcher dispatcher;
+	private final SlackDigestBuffer digestBuffer;
+	private final SlackRuntimeCache runtimeCache;
+	private final SlackLiveMessages liveMessages;
+	private final SlackSuppressor suppressor;
+	private final TemplateRenderer templateRenderer;
+	private final SlackBacklogUploader backlogUploader;
 
 	@Inject
 	public SlackEventNotification(EventNotificationService notificationCallbackService,
 								  StreamService streamService,
-								  Engine templateEngine,
 								  NotificationService notificationService,
 								  ObjectMapper objectMapper,
-								  NodeId nodeId) {
+								  NodeId nodeId,
+								  SlackDispatcher dispatcher,
+								  SlackDigestBuffer digestBuffer,
+								  SlackRuntimeCache runtimeCache,
+								  SlackLiveMessages liveMessages,
+								  SlackSuppressor suppressor,
+								  TemplateRenderer templateRenderer,
+								  SlackBacklogUploader backlogUploader) {
 		this.notificationCallbackService = notificationCallbackService;
 		this.streamService = streamService;
-		this.templateEngine = templateEngine;
 		this.notificationService = notificationService;
 		this.objectMapper = objectMapper;
 		this.nodeId = nodeId;
+		this.dispatcher = dispatcher;
+		this.digestBuffer = digestBuffer;
+		this.runtimeCache = runtimeCache;
+		this.liveMessages = liveMessages;
+		this.suppressor = suppressor;
+		this.templateRenderer = templateRenderer;
+		this.backlogUploader = backlogUploader;
 	}
 
 	@Override
 	public void execute(EventNotificationContext ctx) throws PermanentEventNotificationException {
 		final SlackEventNotificationConfig config = (SlackEventNotificationConfig) ctx.notificationConfig();
-		SlackClient slackClient = new SlackClient(config);
-
+		final long now = System.currentTimeMillis();
+		SlackSuppressor.Report suppressionReport = null;
 		try {
-			SlackMessage slackMessage = createSlackMessage(ctx, config);
-			slackClient.send(slackMessage);
+			// Building the state parses the targets and compiles the templates, which fails like a send
+			final SlackRuntimeState state = runtimeCache.get(ctx.notificationId(), config);
+			if (suppressor.suppress(ctx, state.suppressionSchedule(), now)) {
+				// Only counted, the count is part of the next message of the notification
+				return;
+			}
+
+			if (config.digestMode()) {
+				// Sent later as part of a summary by the SlackDigestPeriodical
+				digestBuffer.add(ctx.notificationId(), config, DigestEntry.of(ctx));
+				return;
+			}
+
+			if (config.liveMessage() && liveMessages.refire(ctx, config)) {
+				// Shown in the next coalesced update of the live message, nothing to render
+				return;
+			}
+
+			final List<MessageSummary> backlog = getAlarmBacklog(ctx);
+			final String backlogFileUrl = uploadBacklog(ctx, state, backlog);
+			SlackMessage slackMessage = createSlackMessage(ctx, state, backlog, backlogFileUrl, new SlackTimings());
+			suppressionReport = suppressor.takeReport(ctx.notificationId());
+			if (suppressionReport != null) {
+				slackMessage = slackMessage.withMessage(slackMessage.message() + suppressionReport.text() + "\n");
+			}
+			if (config.liveMessage()) {
+				liveMessages.post(ctx, state, slackMessage);
+			} else {
+				dispatcher.dispatch(ctx.notificationId(), ctx.event().id(), ctx.event().priority(), state, slackMessage);
+			}
 		} catch (Exception e) {
+			// Neither a repetition of the event nor the events suppressed before it should go unnoticed
+			suppressor.sendFailed(ctx, now);
+			if (suppressionReport != null) {
+				suppressor.restoreReport(ctx.notificationId(), suppressionReport);
+			}
+
 			String exceptionDetail = e.toString();
 			if (e.getCause() != null) {
 				exceptionDetail += " (" + e.getCause() + ")";
@@ -110,85 +188,213 @@ public class SlackEventNotification implements EventNotification {
 		}
 	}
 
-	private SlackMessage createSlackMessage(EventNotificationContext ctx, SlackEventNotificationConfig config) {
-		//Note: Link names if notify channel or else the channel tag will be plain text.
-		boolean linkNames = config.linkNames() || config.notifyChannel();
-		String message = buildDefaultMessage(ctx, config);
+	/**
+	 * Uploads the backlog as file if it is larger than the configured threshold.
+	 *
+	 * @return the permalink of the file or {@code null} if the backlog is part of the message
+	 */
+	private String uploadBacklog(EventNotificationContext ctx, SlackRuntimeState state, List<MessageSummary> backlog) {
+		if (state.uploadTarget() == null || backlog.size() <= state.config().backlogUploadThreshold()) {
+			return null;
+		}
+		try {
+			return backlogUploader.upload(ctx, state, backlog);
+		} catch (SlackClientException e) {
+			LOG.warn("Could not upload backlog of notification <{}>, listing it in the message instead.", ctx.notificationId(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Renders the message for the given event and backlog, adding the time spent to the given timings.
+	 */
+	public SlackMessage createSlackMessage(EventNotificationContext ctx, SlackRuntimeState state,
+										   List<MessageSummary> backlog, SlackTimings timings) {
+		return createSlackMessage(ctx, state, backlog, null, timings);
+	}
+
+	private SlackMessage createSlackMessage(EventNotificationContext ctx, SlackRuntimeState state,
+											List<MessageSummary> backlog, String backlogFileUrl, SlackTimings timings) {
+		final SlackEventNotificationConfig config = state.config();
+		String message = buildDefaultMessage(ctx, state);
+
+		// In backlog link mode only the first items are rendered, the rest is one click away. Configs saved
+		// before the Graylog URL was required fall back to the normal backlog.
+		List<MessageSummary> renderedBacklog = backlog;
+		String backlogSearchUrl = null;
+		if (config.backlogLink() && !isNullOrEmpty(config.graylogUrl()) && !backlog.isEmpty()) {
+			// Configs saved before the range was validated may hold a negative count
+			renderedBacklog = backlog.subList(0, Math.max(0, Math.min(config.backlogLinkItems(), backlog.size())));
+			backlogSearchUrl = buildBacklogSearchUrl(ctx, config);
+		}
+		// An uploaded backlog is only referenced, templates still see its size
+		if (backlogFileUrl != null) {
+			renderedBacklog = Collections.emptyList();
+			message += "Backlog: " + backlog.size() + " messages in " + Mrkdwn.link(backlogFileUrl, "the uploaded file") + "\n";
+		}
+		// Large backlogs are represented by a sample instead of their first items, drawn from the whole
+		// backlog but in link mode not larger than the link items
+		BacklogSample sample = null;
+		final int sampleSize = backlogSearchUrl != null
+				? Math.min(config.backlogSampleSize(), config.backlogLinkItems())
+				: config.backlogSampleSize();
+		if (!renderedBacklog.isEmpty() && state.samplingStrategy() != null && backlog.size() > sampleSize) {
+			final long sampleStart = System.nanoTime();
+			sample = BacklogSampler.sample(backlog, state.samplingStrategy(), sampleSize, config.backlogSampleField());
+			timings.addModelBuild(sampleStart);
+			renderedBacklog = sample.items();
+			message += sample.summary();
+		}
 
 		String customMessage = null;
-		String template = config.customMessage();
-		boolean hasTemplate = !isNullOrEmpty(template);
+		Template template = state.customMessageTemplate();
+		boolean hasTemplate = template != null;
 		if (hasTemplate) {
-			customMessage = buildCustomMessage(ctx, config, template);
+			customMessage = buildCustomMessage(ctx, config, template, renderedBacklog, backlog.size(), state.escapeMrkdwn(), timings);
 		}
 
 		List<String> backlogItemMessages = Collections.emptyList();
-		String backlogItemTemplate = config.backlogItemMessage();
-		boolean hasBacklogItemTemplate = !isNullOrEmpty(backlogItemTemplate);
-		if(hasBacklogItemTemplate) {
-			backlogItemMessages = buildBacklogItemMessages(ctx, config, backlogItemTemplate);
+		List<List<SlackMessage.AttachmentField>> backlogItemFields = Collections.emptyList();
+		Template backlogItemTemplate = state.backlogItemTemplate();
+		boolean hasBacklogItemTemplate = backlogItemTemplate != null;
+		if (!state.backlogFields().isEmpty()) {
+			// Taken from the messages as they are, without a template pass
+			backlogItemFields = buildBacklogItemFields(state.backlogFields(), config.backlogFieldsShort(), renderedBacklog, sample, timings);
+		} else if(hasBacklogItemTemplate) {
+			backlogItemMessages = buildBacklogItemMessages(ctx, config, backlogItemTemplate, renderedBacklog, sample, state.escapeMrkdwn(), timings);
 		}
 
 		return new SlackMessage(
-				config.color(),
-				config.iconEmoji(),
-				config.iconUrl(),
-				config.userName(),
-				config.channel(),
-				linkNames,
+				state.payloadTemplate(),
 				message,
 				customMessage,
-				backlogItemMessages);
+				backlogItemMessages,
+				backlogItemFields,
+				backlogSearchUrl,
+				backlog.size());
 	}
 
-	private String buildDefaultMessage(EventNotificationContext ctx, SlackEventNotificationConfig config) {
-		String title = buildMessageTitle(ctx, config);
+	private static String buildDefaultMessage(EventNotificationContext ctx, SlackRuntimeState state) {
+		final EventDefinitionDto definition = ctx.eventDefinition().orElse(null);
+		if (definition == null) {
+			return buildDefaultMessage(state.config(), "Unnamed", "");
+		}
+		// Only depends on the event definition, so it is escaped and built once per definition
+		final String title = definition.title();
+		final String description = nullToEmpty(definition.description());
+		return state.defaultMessage(definition.id(), title, description,
+				() -> buildDefaultMessage(state.config(), title, description));
+	}
 
-		// Build custom message
-		String audience = config.notifyChannel() ? "@channel " : "";
-		String description = ctx.eventDefinition().map(EventDefinitionDto::description).orElse("");
-		return String.format("%s*Alert %s* triggered:\n> %s \n", audience, title, description);
+	private static String buildDefaultMessage(SlackEventNotificationConfig config, String title, String description) {
+		final StringBuilder message = new StringBuilder(48 + title.length() + description.length());
+		if (config.notifyChannel()) {
+			message.append("@channel ");
+		}
+		message.append("*Alert ");
+		appendMessageTitle(message, config, title);
+		message.append("* triggered:\n> ");
+		Mrkdwn.appendEscaped(message, description);
+		return message.append(" \n").toString();
 	}
 
-	private String buildMessageTitle(EventNotificationContext ctx, SlackEventNotificationConfig config) {
+	private static void appendMessageTitle(StringBuilder message, SlackEventNotificationConfig config, String title) {
 		String graylogUrl = config.graylogUrl();
-		String eventDefinitionName = ctx.eventDefinition().map(EventDefinitionDto::title).orElse("Unnamed");
 		if(!isNullOrEmpty(graylogUrl)) {
-			return "<" + graylogUrl + "|" + eventDefinitionName + ">";
+			Mrkdwn.appendLink(message, graylogUrl, title);
 		} else {
-			return "_" + eventDefinitionName + "_";
+			Mrkdwn.appendEscaped(message.append('_'), title).append('_');
 		}
 	}
 
-	private String buildCustomMessage(EventNotificationContext ctx, SlackEventNotificationConfig config, String template) {
-		List<MessageSummary> backlog = getAlarmBacklog(ctx);
-		Map<String, Object> model = getCustomMessageModel(ctx, config, backlog);
+	private String buildCustomMessage(EventNotificationContext ctx, SlackEventNotificationConfig config, Template template,
+									  List<MessageSummary> backlog, int backlogSize, boolean escapeMrkdwn, SlackTimings timings) {
+		final long modelStart = System.nanoTime();
+		Map<String, Object> model = getCustomMessageModel(ctx, config, backlog, backlogSize);
+		timings.addModelBuild(modelStart);
+
+		final long renderStart = System.nanoTime();
 		try {
-			return templateEngine.transform(template, model);
-		} catch (Exception e) {
-			LOG.error("Exception during templating", e);
-			return e.toString();
+			return templateRenderer.render(template, model, ctx.notificationId(), SlackEventNotificationConfig.FIELD_CUSTOM_MESSAGE, escapeMrkdwn);
+		} finally {
+			timings.addTemplateRender(renderStart);
+		}
+	}
+
+	/**
+	 * @param sample the sample the backlog was taken from, its notes are prepended to the items, or {@code null}
+	 */
+	private List<String> buildBacklogItemMessages(EventNotificationContext ctx, SlackEventNotificationConfig config, Template template,
+												  List<MessageSummary> backlog, BacklogSample sample, boolean escapeMrkdwn,
+												  SlackTimings timings) {
+		final List<String> backlogItemMessages = new ArrayList<>(backlog.size());
+		for (int i = 0; i < backlog.size(); i++) {
+			final long modelStart = System.nanoTime();
+			Map<String, Object> model = getBacklogItemModel(ctx, config, backlog.get(i));
+			timings.addModelBuild(modelStart);
+
+			final long renderStart = System.nanoTime();
+			String backlogItemMessage;
+			try {
+				backlogItemMessage = templateRenderer.render(template, model, ctx.notificationId(),
+						SlackEventNotificationConfig.FIELD_BACKLOG_ITEM_MESSAGE, escapeMrkdwn);
+			} finally {
+				timings.addTemplateRender(renderStart);
+			}
+			final String note = sample == null ? null : sample.note(i);
+			backlogItemMessages.add(note == null ? backlogItemMessage : "_" + note + "_\n" + backlogItemMessage);
 		}
+		return backlogItemMessages;
 	}
 
-	private List<String> buildBacklogItemMessages(EventNotificationContext ctx, SlackEventNotificationConfig config, String template) {
-		return getAlarmBacklog(ctx).stream()
-				.map(backlogItem -> {
-					Map<String, Object> model = getBacklogItemModel(ctx, config, backlogItem);
-					try {
-						return templateEngine.transform(template, model);
-					} catch (Exception e) {
-						LOG.error("Exception during templating", e);
-						return e.toString();
-					}
-				}).collect(Collectors.toList());
+	private static List<List<SlackMessage.AttachmentField>> buildBacklogItemFields(List<String> fieldNames, boolean isShort,
+																			List<MessageSummary> backlog, BacklogSample sample,
+																			SlackTimings timings) {
+		final long modelStart = System.nanoTime();
+		final List<List<SlackMessage.AttachmentField>> backlogItemFields = new ArrayList<>(backlog.size());
+		for (int i = 0; i < backlog.size(); i++) {
+			final MessageSummary backlogItem = backlog.get(i);
+			final Map<String, Object> fields = backlogItem.getFields();
+			final List<SlackMessage.AttachmentField> attachmentFields = new ArrayList<>(fieldNames.size() + 1);
+			final String note = sample == null ? null : sample.note(i);
+			if (note != null) {
+				attachmentFields.add(new SlackMessage.AttachmentField("Messages", note, false));
+			}
+			for (String fieldName : fieldNames) {
+				final Object value = fieldValue(backlogItem, fields, fieldName);
+				if (value != null) {
+					attachmentFields.add(new SlackMessage.AttachmentField(fieldName, String.valueOf(value), isShort));
+				}
+			}
+			backlogItemFields.add(attachmentFields);
+		}
+		timings.addModelBuild(modelStart);
+		return backlogItemFields;
+	}
+
+	/**
+	 * @return the value of the given field of a backlog item, including the reserved fields
+	 */
+	public static Object fieldValue(MessageSummary backlogItem, Map<String, Object> fields, String fieldName) {
+		// Reserved fields are not part of MessageSummary#getFields()
+		switch (fieldName) {
+			case Message.FIELD_MESSAGE:
+				return backlogItem.getMessage();
+			case Message.FIELD_SOURCE:
+				return backlogItem.getSource();
+			case Message.FIELD_TIMESTAMP:
+				return backlogItem.getTimestamp();
+			default:
+				return fields.get(fieldName);
+		}
 	}
 
 	private List<MessageSummary> getAlarmBacklog(EventNotificationContext ctx) {
 		return notificationCallbackService.getBacklogForEvent(ctx);
 	}
 
-	private Map<String, Object> getCustomMessageModel(EventNotificationContext ctx, SlackEventNotificationConfig config, List<MessageSummary> backlog) {
+	private Map<String, Object> getCustomMessageModel(EventNotificationContext ctx, SlackEventNotificationConfig config,
+													  List<MessageSummary> backlog, int backlogSize) {
 		Optional<EventDefinitionDto> definitionDto = ctx.eventDefinition();
 
 		List<StreamModelData> streams = streamService.loadByIds(ctx.event().sourceStreams())
@@ -206,7 +412,7 @@ public class SlackEventNotification implements EventNotification {
 				.jobTriggerId(ctx.jobTrigger().map(JobTriggerDto::id).orElse(UNKNOWN_VALUE))
 				.event(ctx.event())
 				.backlog(backlog)
-				.backlogSize(backlog.size())
+				.backlogSize(backlogSize)
 				.graylogUrl(isNullOrEmpty(config.graylogUrl()) ? UNKNOWN_VALUE : config.graylogUrl())
 				.streams(streams)
 				.build();
@@ -245,12 +451,9 @@ public class SlackEventNotification implements EventNotification {
 		if(!isNullOrEmpty(graylogUrl)) {
 			streamUrl = StringUtils.appendIfMissing(graylogUrl, "/") + "streams/" + stream.getId() + "/search";
 
-			if(ctx.eventDefinition().isPresent()) {
-				EventDefinitionDto eventDefinitionDto = ctx.eventDefinition().get();
-				if(eventDefinitionDto.config() instanceof AggregationEventProcessorConfig) {
-					String query = ((AggregationEventProcessorConfig) eventDefinitionDto.config()).query();
-					streamUrl += "?q=" + query;
-				}
+			Optional<String> query = searchQuery(ctx);
+			if(query.isPresent()) {
+				streamUrl += "?q=" + QUERY_ESCAPER.escape(query.get());
 			}
 		}
 
@@ -261,4 +464,39 @@ public class SlackEventNotification implements EventNotification {
 				.url(Optional.ofNullable(streamUrl).orElse(UNKNOWN_VALUE))
 				.build();
 	}
+
+	/**
+	 * Builds a search for the time range of the event in its source streams.
+	 */
+	private String buildBacklogSearchUrl(EventNotificationContext ctx, SlackEventNotificationConfig config) {
+		final EventDto event = ctx.event();
+		final DateTime to = event.timerangeEnd().orElse(event.eventTimestamp());
+		final DateTime from = event.timerangeStart().orElse(to.minus(DEFAULT_SEARCH_RANGE));
+
+		String query = searchQuery(ctx).orElse("*");
+		String url = StringUtils.appendIfMissing(config.graylogUrl(), "/");
+		final Set<String> streams = event.sourceStreams();
+		if (streams.size() == 1) {
+			url += "streams/" + streams.iterator().next() + "/search";
+		} else {
+			url += "search";
+			if (!streams.isEmpty()) {
+				query = "(" + query + ") AND (" + streams.stream()
+						.map(stream -> "streams:" + stream)
+						.collect(Collectors.joining(" OR ")) + ")";
+			}
+		}
+
+		return url + "?rangetype=absolute"
+				+ "&from=" + QUERY_ESCAPER.escape(from.withZone(DateTimeZone.UTC).toString())
+				+ "&to=" + QUERY_ESCAPER.escape(to.withZone(DateTimeZone.UTC).toString())
+				+ "&q=" + QUERY_ESCAPER.escape(query);
+	}
+
+	private static Optional<String> searchQuery(EventNotificationContext ctx) {
+		return ctx.eventDefinition()
+				.map(EventDefinitionDto::config)
+				.filter(AggregationEventProcessorConfig.class::isInstance)
+				.map(config -> ((AggregationEventProcessorConfig) config).query());
+	}
 }
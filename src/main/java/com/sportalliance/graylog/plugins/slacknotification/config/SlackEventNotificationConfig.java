@@ -1,5 +1,14 @@
 package com.sportalliance.graylog.plugins.slacknotification.config;
 
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 
 import org.graylog.events.contentpack.entities.EventNotificationConfigEntity;
@@ -17,6 +26,11 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.google.auto.value.AutoValue;
+import com.sportalliance.graylog.plugins.slacknotification.format.PayloadFormat;
+import com.sportalliance.graylog.plugins.slacknotification.sampling.BacklogSampler;
+import com.sportalliance.graylog.plugins.slacknotification.sampling.SamplingStrategy;
+import com.sportalliance.graylog.plugins.slacknotification.suppression.SuppressionSchedule;
+import com.sportalliance.graylog.plugins.slacknotification.upload.BacklogFileFormat;
 
 @AutoValue
 @JsonTypeName(SlackEventNotificationConfig.TYPE_NAME)
@@ -36,6 +50,29 @@ public abstract class SlackEventNotificationConfig implements EventNotificationC
 	static final String FIELD_ICON_EMOJI = "icon_emoji";
 	static final String FIELD_GRAYLOG_URL = "graylog_url";
 	static final String FIELD_PROXY = "proxy";
+	static final String FIELD_DIGEST_MODE = "digest_mode";
+	static final String FIELD_DIGEST_INTERVAL_MINUTES = "digest_interval_minutes";
+	static final String FIELD_BLOCK_KIT = "block_kit";
+	static final String FIELD_COMPRESSION_THRESHOLD = "compression_threshold";
+	static final String FIELD_MESSAGE_FORMAT = "message_format";
+	static final String FIELD_ADDITIONAL_TARGETS = "additional_targets";
+	static final String FIELD_BACKLOG_LINK = "backlog_link";
+	static final String FIELD_BACKLOG_LINK_ITEMS = "backlog_link_items";
+	static final String FIELD_LIVE_MESSAGE = "live_message";
+	static final String FIELD_API_TOKEN = "api_token";
+	static final String FIELD_LIVE_MESSAGE_UPDATE_INTERVAL_SECONDS = "live_message_update_interval_seconds";
+	static final String FIELD_LIVE_MESSAGE_WINDOW_MINUTES = "live_message_window_minutes";
+	static final String FIELD_BACKLOG_FIELDS = "backlog_fields";
+	static final String FIELD_BACKLOG_FIELDS_SHORT = "backlog_fields_short";
+	static final String FIELD_QUIET_HOURS = "quiet_hours";
+	static final String FIELD_TIME_ZONE = "time_zone";
+	static final String FIELD_MAINTENANCE_WINDOWS = "maintenance_windows";
+	static final String FIELD_REPEAT_SUPPRESSION_MINUTES = "repeat_suppression_minutes";
+	static final String FIELD_BACKLOG_UPLOAD = "backlog_upload";
+	static final String FIELD_BACKLOG_UPLOAD_THRESHOLD = "backlog_upload_threshold";
+	static final String FIELD_BACKLOG_SAMPLING = "backlog_sampling";
+	static final String FIELD_BACKLOG_SAMPLE_SIZE = "backlog_sample_size";
+	static final String FIELD_BACKLOG_SAMPLE_FIELD = "backlog_sample_field";
 
 	@JsonProperty(FIELD_COLOR)
 	@NotBlank
@@ -76,6 +113,142 @@ public abstract class SlackEventNotificationConfig implements EventNotificationC
 	@JsonProperty(FIELD_PROXY)
 	public abstract String proxy();
 
+	@JsonProperty(FIELD_DIGEST_MODE)
+	public abstract boolean digestMode();
+
+	@JsonProperty(FIELD_DIGEST_INTERVAL_MINUTES)
+	@Min(1)
+	public abstract int digestIntervalMinutes();
+
+	@JsonProperty(FIELD_BLOCK_KIT)
+	public abstract boolean blockKit();
+
+	@JsonProperty(FIELD_COMPRESSION_THRESHOLD)
+	@Min(0)
+	public abstract int compressionThreshold();
+
+	/**
+	 * Payload format of the webhook URL, see {@link PayloadFormat#forName(String)}.
+	 */
+	@JsonProperty(FIELD_MESSAGE_FORMAT)
+	@NotBlank
+	public abstract String messageFormat();
+
+	/**
+	 * Further receivers of the same rendered message, each with its own payload format.
+	 */
+	@JsonProperty(FIELD_ADDITIONAL_TARGETS)
+	public abstract List<OutputTargetConfig> additionalTargets();
+
+	/**
+	 * Whether only the first backlog items are rendered, followed by a link to a Graylog search with the whole backlog.
+	 */
+	@JsonProperty(FIELD_BACKLOG_LINK)
+	public abstract boolean backlogLink();
+
+	@JsonProperty(FIELD_BACKLOG_LINK_ITEMS)
+	@Min(0)
+	public abstract int backlogLinkItems();
+
+	/**
+	 * Whether one message per alert is posted via the Slack Web API and updated when the alert fires again.
+	 */
+	@JsonProperty(FIELD_LIVE_MESSAGE)
+	public abstract boolean liveMessage();
+
+	/**
+	 * Slack Web API token with the chat:write scope, required for live messages, and files:write for backlog uploads.
+	 * Serialized {@link #encryptedApiToken encrypted}.
+	 */
+	public abstract String apiToken();
+
+	/**
+	 * The API token as stored in MongoDB and returned by the REST API, see {@link ApiTokenCipher}.
+	 */
+	@JsonProperty(FIELD_API_TOKEN)
+	String encryptedApiToken() {
+		return ApiTokenCipher.encrypt(apiToken());
+	}
+
+	@JsonProperty(FIELD_LIVE_MESSAGE_UPDATE_INTERVAL_SECONDS)
+	@Min(1)
+	public abstract int liveMessageUpdateIntervalSeconds();
+
+	/**
+	 * Time without fires after which the next fire posts a new live message instead of updating the last one.
+	 */
+	@JsonProperty(FIELD_LIVE_MESSAGE_WINDOW_MINUTES)
+	@Min(1)
+	public abstract int liveMessageWindowMinutes();
+
+	/**
+	 * Comma separated message fields shown as attachment fields of each backlog item instead of rendering the backlog item template.
+	 */
+	@JsonProperty(FIELD_BACKLOG_FIELDS)
+	public abstract String backlogFields();
+
+	@JsonProperty(FIELD_BACKLOG_FIELDS_SHORT)
+	public abstract boolean backlogFieldsShort();
+
+	/**
+	 * Recurring windows like "Mon-Fri 22:00-07:00; Sat,Sun 00:00-24:00" in which events are counted instead of sent.
+	 */
+	@JsonProperty(FIELD_QUIET_HOURS)
+	public abstract String quietHours();
+
+	/**
+	 * Time zone of the quiet hours.
+	 */
+	@JsonProperty(FIELD_TIME_ZONE)
+	public abstract String timeZone();
+
+	/**
+	 * One-off windows like "2019-11-02T20:00:00Z/2019-11-02T23:00:00Z" in which events are counted instead of sent.
+	 */
+	@JsonProperty(FIELD_MAINTENANCE_WINDOWS)
+	public abstract String maintenanceWindows();
+
+	/**
+	 * Minutes in which further events with the same key are counted instead of sent, 0 to send all of them.
+	 */
+	@JsonProperty(FIELD_REPEAT_SUPPRESSION_MINUTES)
+	@Min(0)
+	public abstract int repeatSuppressionMinutes();
+
+	/**
+	 * Uploads the backlog as "csv" or "ndjson" file via the Slack Web API instead of listing it in the message, empty to always list it.
+	 */
+	@JsonProperty(FIELD_BACKLOG_UPLOAD)
+	public abstract String backlogUpload();
+
+	/**
+	 * Backlog size above which the backlog is uploaded as file.
+	 */
+	@JsonProperty(FIELD_BACKLOG_UPLOAD_THRESHOLD)
+	@Min(0)
+	public abstract int backlogUploadThreshold();
+
+	/**
+	 * Chooses the rendered backlog items of large backlogs: "reservoir", "group" or "top_k", empty to render the first items.
+	 */
+	@JsonProperty(FIELD_BACKLOG_SAMPLING)
+	public abstract String backlogSampling();
+
+	/**
+	 * Number of backlog items rendered if sampling is enabled and the backlog is larger, at most the
+	 * backlog link items in backlog link mode.
+	 */
+	@JsonProperty(FIELD_BACKLOG_SAMPLE_SIZE)
+	@Min(1)
+	@Max(BacklogSampler.MAX_SIZE)
+	public abstract int backlogSampleSize();
+
+	/**
+	 * Message field grouped or counted by the "group" and "top_k" sampling.
+	 */
+	@JsonProperty(FIELD_BACKLOG_SAMPLE_FIELD)
+	public abstract String backlogSampleField();
+
 	@Override
 	@JsonIgnore
 	public JobTriggerData toJobTriggerData(EventDto dto) {
@@ -89,7 +262,86 @@ public abstract class SlackEventNotificationConfig implements EventNotificationC
 	@Override
 	@JsonIgnore
 	public ValidationResult validate() {
-		return new ValidationResult();
+		final ValidationResult validation = new ValidationResult();
+		// The @Min annotations only document the ranges, Graylog does not check them
+		checkMin(validation, FIELD_DIGEST_INTERVAL_MINUTES, digestIntervalMinutes(), 1);
+		checkMin(validation, FIELD_COMPRESSION_THRESHOLD, compressionThreshold(), 0);
+		checkMin(validation, FIELD_BACKLOG_LINK_ITEMS, backlogLinkItems(), 0);
+		checkMin(validation, FIELD_LIVE_MESSAGE_UPDATE_INTERVAL_SECONDS, liveMessageUpdateIntervalSeconds(), 1);
+		checkMin(validation, FIELD_LIVE_MESSAGE_WINDOW_MINUTES, liveMessageWindowMinutes(), 1);
+		checkMin(validation, FIELD_REPEAT_SUPPRESSION_MINUTES, repeatSuppressionMinutes(), 0);
+		checkMin(validation, FIELD_BACKLOG_UPLOAD_THRESHOLD, backlogUploadThreshold(), 0);
+		checkMin(validation, FIELD_BACKLOG_SAMPLE_SIZE, backlogSampleSize(), 1);
+		if (backlogSampleSize() > BacklogSampler.MAX_SIZE) {
+			validation.addError(FIELD_BACKLOG_SAMPLE_SIZE, "Must be at most " + BacklogSampler.MAX_SIZE + ", was " + backlogSampleSize());
+		}
+		if (!isKnownFormat(messageFormat())) {
+			validation.addError(FIELD_MESSAGE_FORMAT, "Unknown message format <" + messageFormat() + ">");
+		}
+		for (OutputTargetConfig target : additionalTargets()) {
+			if (!isKnownFormat(target.format())) {
+				validation.addError(FIELD_ADDITIONAL_TARGETS, "Unknown message format <" + target.format() + ">");
+			}
+			if (isNullOrEmpty(target.webhookUrl())) {
+				validation.addError(FIELD_ADDITIONAL_TARGETS, "Webhook URL of additional target must not be empty");
+			}
+		}
+		if (backlogLink() && isNullOrEmpty(graylogUrl())) {
+			validation.addError(FIELD_BACKLOG_LINK, "Backlog links require the Graylog URL");
+		}
+		if (liveMessage() && isNullOrEmpty(apiToken())) {
+			validation.addError(FIELD_API_TOKEN, "Live messages require a Slack Web API token");
+		}
+		if (!isNullOrEmpty(backlogUpload())) {
+			try {
+				BacklogFileFormat.forName(backlogUpload());
+			} catch (IllegalArgumentException e) {
+				validation.addError(FIELD_BACKLOG_UPLOAD, e.getMessage());
+			}
+			if (isNullOrEmpty(apiToken())) {
+				validation.addError(FIELD_API_TOKEN, "Backlog uploads require a Slack Web API token");
+			}
+		}
+		if (!isNullOrEmpty(backlogSampling())) {
+			try {
+				if (SamplingStrategy.forName(backlogSampling()) != SamplingStrategy.RESERVOIR && isNullOrEmpty(backlogSampleField())) {
+					validation.addError(FIELD_BACKLOG_SAMPLE_FIELD, "Grouping and counting need a message field");
+				}
+			} catch (IllegalArgumentException e) {
+				validation.addError(FIELD_BACKLOG_SAMPLING, e.getMessage());
+			}
+		}
+		try {
+			ZoneId.of(timeZone());
+		} catch (DateTimeException | NullPointerException e) {
+			validation.addError(FIELD_TIME_ZONE, "Unknown time zone <" + timeZone() + ">");
+		}
+		try {
+			SuppressionSchedule.checkQuietHours(quietHours());
+		} catch (IllegalArgumentException e) {
+			validation.addError(FIELD_QUIET_HOURS, e.getMessage());
+		}
+		try {
+			SuppressionSchedule.checkMaintenanceWindows(maintenanceWindows());
+		} catch (IllegalArgumentException e) {
+			validation.addError(FIELD_MAINTENANCE_WINDOWS, e.getMessage());
+		}
+		return validation;
+	}
+
+	private static void checkMin(ValidationResult validation, String field, int value, int min) {
+		if (value < min) {
+			validation.addError(field, "Must be at least " + min + ", was " + value);
+		}
+	}
+
+	private static boolean isKnownFormat(String format) {
+		try {
+			PayloadFormat.forName(format);
+			return true;
+		} catch (IllegalArgumentException | NullPointerException e) {
+			return false;
+		}
 	}
 
 	@AutoValue.Builder
@@ -97,7 +349,30 @@ public abstract class SlackEventNotificationConfig implements EventNotificationC
 		@JsonCreator
 		public static SlackEventNotificationConfig.Builder create() {
 			return new AutoValue_SlackEventNotificationConfig.Builder()
-					.type(TYPE_NAME);
+					.type(TYPE_NAME)
+					.digestMode(false)
+					.digestIntervalMinutes(10)
+					.blockKit(false)
+					.compressionThreshold(0)
+					.messageFormat(PayloadFormat.SLACK)
+					.additionalTargets(Collections.emptyList())
+					.backlogLink(false)
+					.backlogLinkItems(3)
+					.liveMessage(false)
+					.apiToken("")
+					.liveMessageUpdateIntervalSeconds(30)
+					.liveMessageWindowMinutes(60)
+					.backlogFields("")
+					.backlogFieldsShort(true)
+					.quietHours("")
+					.timeZone("UTC")
+					.maintenanceWindows("")
+					.repeatSuppressionMinutes(0)
+					.backlogUpload("")
+					.backlogUploadThreshold(50)
+					.backlogSampling("")
+					.backlogSampleSize(5)
+					.backlogSampleField("source");
 		}
 
 		@JsonProperty(FIELD_COLOR)
@@ -136,6 +411,82 @@ public abstract class SlackEventNotificationConfig implements EventNotificationC
 		@JsonProperty(FIELD_PROXY)
 		public abstract SlackEventNotificationConfig.Builder proxy(String proxy);
 
+		@JsonProperty(FIELD_DIGEST_MODE)
+		public abstract SlackEventNotificationConfig.Builder digestMode(boolean digestMode);
+
+		@JsonProperty(FIELD_DIGEST_INTERVAL_MINUTES)
+		public abstract SlackEventNotificationConfig.Builder digestIntervalMinutes(int digestIntervalMinutes);
+
+		@JsonProperty(FIELD_BLOCK_KIT)
+		public abstract SlackEventNotificationConfig.Builder blockKit(boolean blockKit);
+
+		@JsonProperty(FIELD_COMPRESSION_THRESHOLD)
+		public abstract SlackEventNotificationConfig.Builder compressionThreshold(int compressionThreshold);
+
+		@JsonProperty(FIELD_MESSAGE_FORMAT)
+		public abstract SlackEventNotificationConfig.Builder messageFormat(String messageFormat);
+
+		@JsonProperty(FIELD_ADDITIONAL_TARGETS)
+		public abstract SlackEventNotificationConfig.Builder additionalTargets(List<OutputTargetConfig> additionalTargets);
+
+		@JsonProperty(FIELD_BACKLOG_LINK)
+		public abstract SlackEventNotificationConfig.Builder backlogLink(boolean backlogLink);
+
+		@JsonProperty(FIELD_BACKLOG_LINK_ITEMS)
+		public abstract SlackEventNotificationConfig.Builder backlogLinkItems(int backlogLinkItems);
+
+		@JsonProperty(FIELD_LIVE_MESSAGE)
+		public abstract SlackEventNotificationConfig.Builder liveMessage(boolean liveMessage);
+
+		public abstract SlackEventNotificationConfig.Builder apiToken(String apiToken);
+
+		/**
+		 * Sets the API token from its encrypted form or, e.g. when entered in the form, from plain text.
+		 */
+		@JsonProperty(FIELD_API_TOKEN)
+		public SlackEventNotificationConfig.Builder encryptedApiToken(String apiToken) {
+			return apiToken(ApiTokenCipher.decrypt(apiToken));
+		}
+
+		@JsonProperty(FIELD_LIVE_MESSAGE_UPDATE_INTERVAL_SECONDS)
+		public abstract SlackEventNotificationConfig.Builder liveMessageUpdateIntervalSeconds(int liveMessageUpdateIntervalSeconds);
+
+		@JsonProperty(FIELD_LIVE_MESSAGE_WINDOW_MINUTES)
+		public abstract SlackEventNotificationConfig.Builder liveMessageWindowMinutes(int liveMessageWindowMinutes);
+
+		@JsonProperty(FIELD_BACKLOG_FIELDS)
+		public abstract SlackEventNotificationConfig.Builder backlogFields(String backlogFields);
+
+		@JsonProperty(FIELD_BACKLOG_FIELDS_SHORT)
+		public abstract SlackEventNotificationConfig.Builder backlogFieldsShort(boolean backlogFieldsShort);
+
+		@JsonProperty(FIELD_QUIET_HOURS)
+		public abstract SlackEventNotificationConfig.Builder quietHours(String quietHours);
+
+		@JsonProperty(FIELD_TIME_ZONE)
+		public abstract SlackEventNotificationConfig.Builder timeZone(String timeZone);
+
+		@JsonProperty(FIELD_MAINTENANCE_WINDOWS)
+		public abstract SlackEventNotificationConfig.Builder maintenanceWindows(String maintenanceWindows);
+
+		@JsonProperty(FIELD_REPEAT_SUPPRESSION_MINUTES)
+		public abstract SlackEventNotificationConfig.Builder repeatSuppressionMinutes(int repeatSuppressionMinutes);
+
+		@JsonProperty(FIELD_BACKLOG_UPLOAD)
+		public abstract SlackEventNotificationConfig.Builder backlogUpload(String backlogUpload);
+
+		@JsonProperty(FIELD_BACKLOG_UPLOAD_THRESHOLD)
+		public abstract SlackEventNotificationConfig.Builder backlogUploadThreshold(int backlogUploadThreshold);
+
+		@JsonProperty(FIELD_BACKLOG_SAMPLING)
+		public abstract SlackEventNotificationConfig.Builder backlogSampling(String backlogSampling);
+
+		@JsonProperty(FIELD_BACKLOG_SAMPLE_SIZE)
+		public abstract SlackEventNotificationConfig.Builder backlogSampleSize(int backlogSampleSize);
+
+		@JsonProperty(FIELD_BACKLOG_SAMPLE_FIELD)
+		public abstract SlackEventNotificationConfig.Builder backlogSampleField(String backlogSampleField);
+
 		public abstract SlackEventNotificationConfig build();
 	}
 
@@ -154,6 +505,30 @@ public abstract class SlackEventNotificationConfig implements EventNotificationC
 				.iconEmoji(ValueReference.of(iconEmoji()))
 				.graylogUrl(ValueReference.of(graylogUrl()))
 				.proxy(ValueReference.of(proxy()))
+				.digestMode(ValueReference.of(digestMode()))
+				.digestIntervalMinutes(ValueReference.of(digestIntervalMinutes()))
+				.blockKit(ValueReference.of(blockKit()))
+				.compressionThreshold(ValueReference.of(compressionThreshold()))
+				.messageFormat(ValueReference.of(messageFormat()))
+				.additionalTargets(additionalTargets())
+				.backlogLink(ValueReference.of(backlogLink()))
+				.backlogLinkItems(ValueReference.of(backlogLinkItems()))
+				.liveMessage(ValueReference.of(liveMessage()))
+				// A secret granting access to the workspace, it has to be entered again after installing the pack
+				.apiToken(ValueReference.of(""))
+				.liveMessageUpdateIntervalSeconds(ValueReference.of(liveMessageUpdateIntervalSeconds()))
+				.liveMessageWindowMinutes(ValueReference.of(liveMessageWindowMinutes()))
+				.backlogFields(ValueReference.of(backlogFields()))
+				.backlogFieldsShort(ValueReference.of(backlogFieldsShort()))
+				.quietHours(ValueReference.of(quietHours()))
+				.timeZone(ValueReference.of(timeZone()))
+				.maintenanceWindows(ValueReference.of(maintenanceWindows()))
+				.repeatSuppressionMinutes(ValueReference.of(repeatSuppressionMinutes()))
+				.backlogUpload(ValueReference.of(backlogUpload()))
+				.backlogUploadThreshold(ValueReference.of(backlogUploadThreshold()))
+				.backlogSampling(ValueReference.of(backlogSampling()))
+				.backlogSampleSize(ValueReference.of(backlogSampleSize()))
+				.backlogSampleField(ValueReference.of(backlogSampleField()))
 				.build();
 	}
 }
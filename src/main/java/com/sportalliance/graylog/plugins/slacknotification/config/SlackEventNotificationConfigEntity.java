@@ -16,6 +16,8 @@
  */
 package com.sportalliance.graylog.plugins.slacknotification.config;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.graylog.events.contentpack.entities.EventNotificationConfigEntity;
@@ -28,6 +30,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.google.auto.value.AutoValue;
+import com.sportalliance.graylog.plugins.slacknotification.format.PayloadFormat;
 
 @AutoValue
 @JsonTypeName(SlackEventNotificationConfigEntity.TYPE_NAME)
@@ -72,6 +75,78 @@ public abstract class SlackEventNotificationConfigEntity implements EventNotific
 	@JsonProperty(SlackEventNotificationConfig.FIELD_PROXY)
 	public abstract ValueReference proxy();
 
+	@JsonProperty(SlackEventNotificationConfig.FIELD_DIGEST_MODE)
+	public abstract ValueReference digestMode();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_DIGEST_INTERVAL_MINUTES)
+	public abstract ValueReference digestIntervalMinutes();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_BLOCK_KIT)
+	public abstract ValueReference blockKit();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_COMPRESSION_THRESHOLD)
+	public abstract ValueReference compressionThreshold();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_MESSAGE_FORMAT)
+	public abstract ValueReference messageFormat();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_ADDITIONAL_TARGETS)
+	public abstract List<OutputTargetConfig> additionalTargets();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_LINK)
+	public abstract ValueReference backlogLink();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_LINK_ITEMS)
+	public abstract ValueReference backlogLinkItems();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_LIVE_MESSAGE)
+	public abstract ValueReference liveMessage();
+
+	/**
+	 * Exported empty, a pack may turn it into a parameter to ask for the token on install.
+	 */
+	@JsonProperty(SlackEventNotificationConfig.FIELD_API_TOKEN)
+	public abstract ValueReference apiToken();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_LIVE_MESSAGE_UPDATE_INTERVAL_SECONDS)
+	public abstract ValueReference liveMessageUpdateIntervalSeconds();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_LIVE_MESSAGE_WINDOW_MINUTES)
+	public abstract ValueReference liveMessageWindowMinutes();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_FIELDS)
+	public abstract ValueReference backlogFields();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_FIELDS_SHORT)
+	public abstract ValueReference backlogFieldsShort();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_QUIET_HOURS)
+	public abstract ValueReference quietHours();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_TIME_ZONE)
+	public abstract ValueReference timeZone();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_MAINTENANCE_WINDOWS)
+	public abstract ValueReference maintenanceWindows();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_REPEAT_SUPPRESSION_MINUTES)
+	public abstract ValueReference repeatSuppressionMinutes();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_UPLOAD)
+	public abstract ValueReference backlogUpload();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_UPLOAD_THRESHOLD)
+	public abstract ValueReference backlogUploadThreshold();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_SAMPLING)
+	public abstract ValueReference backlogSampling();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_SAMPLE_SIZE)
+	public abstract ValueReference backlogSampleSize();
+
+	@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_SAMPLE_FIELD)
+	public abstract ValueReference backlogSampleField();
+
 	public static Builder builder() {
 		return Builder.create();
 	}
@@ -84,7 +159,30 @@ public abstract class SlackEventNotificationConfigEntity implements EventNotific
 		@JsonCreator
 		public static Builder create() {
 			return new AutoValue_SlackEventNotificationConfigEntity.Builder()
-					.type(TYPE_NAME);
+					.type(TYPE_NAME)
+					.digestMode(ValueReference.of(false))
+					.digestIntervalMinutes(ValueReference.of(10))
+					.blockKit(ValueReference.of(false))
+					.compressionThreshold(ValueReference.of(0))
+					.messageFormat(ValueReference.of(PayloadFormat.SLACK))
+					.additionalTargets(Collections.emptyList())
+					.backlogLink(ValueReference.of(false))
+					.backlogLinkItems(ValueReference.of(3))
+					.liveMessage(ValueReference.of(false))
+					.apiToken(ValueReference.of(""))
+					.liveMessageUpdateIntervalSeconds(ValueReference.of(30))
+					.liveMessageWindowMinutes(ValueReference.of(60))
+					.backlogFields(ValueReference.of(""))
+					.backlogFieldsShort(ValueReference.of(true))
+					.quietHours(ValueReference.of(""))
+					.timeZone(ValueReference.of("UTC"))
+					.maintenanceWindows(ValueReference.of(""))
+					.repeatSuppressionMinutes(ValueReference.of(0))
+					.backlogUpload(ValueReference.of(""))
+					.backlogUploadThreshold(ValueReference.of(50))
+					.backlogSampling(ValueReference.of(""))
+					.backlogSampleSize(ValueReference.of(5))
+					.backlogSampleField(ValueReference.of("source"));
 		}
 
 		@JsonProperty(SlackEventNotificationConfig.FIELD_COLOR)
@@ -123,6 +221,75 @@ public abstract class SlackEventNotificationConfigEntity implements EventNotific
 		@JsonProperty(SlackEventNotificationConfig.FIELD_PROXY)
 		public abstract Builder proxy(ValueReference proxy);
 
+		@JsonProperty(SlackEventNotificationConfig.FIELD_DIGEST_MODE)
+		public abstract Builder digestMode(ValueReference digestMode);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_DIGEST_INTERVAL_MINUTES)
+		public abstract Builder digestIntervalMinutes(ValueReference digestIntervalMinutes);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_BLOCK_KIT)
+		public abstract Builder blockKit(ValueReference blockKit);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_COMPRESSION_THRESHOLD)
+		public abstract Builder compressionThreshold(ValueReference compressionThreshold);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_MESSAGE_FORMAT)
+		public abstract Builder messageFormat(ValueReference messageFormat);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_ADDITIONAL_TARGETS)
+		public abstract Builder additionalTargets(List<OutputTargetConfig> additionalTargets);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_LINK)
+		public abstract Builder backlogLink(ValueReference backlogLink);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_LINK_ITEMS)
+		public abstract Builder backlogLinkItems(ValueReference backlogLinkItems);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_LIVE_MESSAGE)
+		public abstract Builder liveMessage(ValueReference liveMessage);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_API_TOKEN)
+		public abstract Builder apiToken(ValueReference apiToken);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_LIVE_MESSAGE_UPDATE_INTERVAL_SECONDS)
+		public abstract Builder liveMessageUpdateIntervalSeconds(ValueReference liveMessageUpdateIntervalSeconds);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_LIVE_MESSAGE_WINDOW_MINUTES)
+		public abstract Builder liveMessageWindowMinutes(ValueReference liveMessageWindowMinutes);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_FIELDS)
+		public abstract Builder backlogFields(ValueReference backlogFields);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_FIELDS_SHORT)
+		public abstract Builder backlogFieldsShort(ValueReference backlogFieldsShort);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_QUIET_HOURS)
+		public abstract Builder quietHours(ValueReference quietHours);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_TIME_ZONE)
+		public abstract Builder timeZone(ValueReference timeZone);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_MAINTENANCE_WINDOWS)
+		public abstract Builder maintenanceWindows(ValueReference maintenanceWindows);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_REPEAT_SUPPRESSION_MINUTES)
+		public abstract Builder repeatSuppressionMinutes(ValueReference repeatSuppressionMinutes);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_UPLOAD)
+		public abstract Builder backlogUpload(ValueReference backlogUpload);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_UPLOAD_THRESHOLD)
+		public abstract Builder backlogUploadThreshold(ValueReference backlogUploadThreshold);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_SAMPLING)
+		public abstract Builder backlogSampling(ValueReference backlogSampling);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_SAMPLE_SIZE)
+		public abstract Builder backlogSampleSize(ValueReference backlogSampleSize);
+
+		@JsonProperty(SlackEventNotificationConfig.FIELD_BACKLOG_SAMPLE_FIELD)
+		public abstract Builder backlogSampleField(ValueReference backlogSampleField);
+
 		public abstract SlackEventNotificationConfigEntity build();
 	}
 
@@ -141,6 +308,29 @@ public abstract class SlackEventNotificationConfigEntity implements EventNotific
 				.iconEmoji(iconEmoji().asString(parameters))
 				.graylogUrl(graylogUrl().asString(parameters))
 				.proxy(proxy().asString(parameters))
+				.digestMode(digestMode().asBoolean(parameters))
+				.digestIntervalMinutes(digestIntervalMinutes().asInteger(parameters))
+				.blockKit(blockKit().asBoolean(parameters))
+				.compressionThreshold(compressionThreshold().asInteger(parameters))
+				.messageFormat(messageFormat().asString(parameters))
+				.additionalTargets(additionalTargets())
+				.backlogLink(backlogLink().asBoolean(parameters))
+				.backlogLinkItems(backlogLinkItems().asInteger(parameters))
+				.liveMessage(liveMessage().asBoolean(parameters))
+				.apiToken(apiToken().asString(parameters))
+				.liveMessageUpdateIntervalSeconds(liveMessageUpdateIntervalSeconds().asInteger(parameters))
+				.liveMessageWindowMinutes(liveMessageWindowMinutes().asInteger(parameters))
+				.backlogFields(backlogFields().asString(parameters))
+				.backlogFieldsShort(backlogFieldsShort().asBoolean(parameters))
+				.quietHours(quietHours().asString(parameters))
+				.timeZone(timeZone().asString(parameters))
+				.maintenanceWindows(maintenanceWindows().asString(parameters))
+				.repeatSuppressionMinutes(repeatSuppressionMinutes().asInteger(parameters))
+				.backlogUpload(backlogUpload().asString(parameters))
+				.backlogUploadThreshold(backlogUploadThreshold().asInteger(parameters))
+				.backlogSampling(backlogSampling().asString(parameters))
+				.backlogSampleSize(backlogSampleSize().asInteger(parameters))
+				.backlogSampleField(backlogSampleField().asString(parameters))
 				.build();
 	}
 }
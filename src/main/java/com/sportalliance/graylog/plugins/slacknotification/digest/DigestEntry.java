@@ -0,0 +1,61 @@
+package com.sportalliance.graylog.plugins.slacknotification.digest;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.graylog.events.notifications.EventNotificationContext;
+import org.graylog.events.processor.EventDefinitionDto;
+
+/**
+ * The few fields of an event a digest needs, small enough to buffer many of them.
+ */
+public class DigestEntry {
+
+	private final String eventDefinitionId;
+	private final String eventDefinitionTitle;
+	private final String source;
+	private final long timestamp;
+
+	public DigestEntry(String eventDefinitionId, String eventDefinitionTitle, String source, long timestamp) {
+		this.eventDefinitionId = eventDefinitionId;
+		this.eventDefinitionTitle = eventDefinitionTitle;
+		this.source = source;
+		this.timestamp = timestamp;
+	}
+
+	public static DigestEntry of(EventNotificationContext ctx) {
+		return new DigestEntry(
+				ctx.event().eventDefinitionId(),
+				ctx.eventDefinition().map(EventDefinitionDto::title).orElse("Unnamed"),
+				ctx.event().source(),
+				ctx.event().eventTimestamp().getMillis());
+	}
+
+	public String eventDefinitionId() {
+		return eventDefinitionId;
+	}
+
+	public String eventDefinitionTitle() {
+		return eventDefinitionTitle;
+	}
+
+	public String source() {
+		return source;
+	}
+
+	public long timestamp() {
+		return timestamp;
+	}
+
+	void writeTo(DataOutput out) throws IOException {
+		SpoolStrings.write(out, eventDefinitionId);
+		SpoolStrings.write(out, eventDefinitionTitle);
+		SpoolStrings.write(out, source == null ? "" : source);
+		out.writeLong(timestamp);
+	}
+
+	static DigestEntry readFrom(DataInput in) throws IOException {
+		return new DigestEntry(SpoolStrings.read(in), SpoolStrings.read(in), SpoolStrings.read(in), in.readLong());
+	}
+}
@@ -0,0 +1,118 @@
+package com.sportalliance.graylog.plugins.slacknotification.digest;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.sportalliance.graylog.plugins.slacknotification.format.Mrkdwn;
+
+/**
+ * Aggregates the entries of one digest period in a single pass.
+ */
+public class DigestSummary {
+
+	private static final int TOP_SOURCES = 5;
+
+	private final Map<String, String> titles = new HashMap<>();
+	private final Map<String, Long> countPerDefinition = new LinkedHashMap<>();
+	private final Map<String, Long> countPerSource = new HashMap<>();
+	private long total = 0;
+	private long first = Long.MAX_VALUE;
+	private long last = Long.MIN_VALUE;
+
+	void add(DigestEntry entry) {
+		total++;
+		titles.putIfAbsent(entry.eventDefinitionId(), entry.eventDefinitionTitle());
+		countPerDefinition.merge(entry.eventDefinitionId(), 1L, Long::sum);
+		if (!entry.source().isEmpty()) {
+			countPerSource.merge(entry.source(), 1L, Long::sum);
+		}
+		first = Math.min(first, entry.timestamp());
+		last = Math.max(last, entry.timestamp());
+	}
+
+	/**
+	 * Adds the counts of another summary, e.g. of a digest which could not be sent.
+	 */
+	void addAll(DigestSummary other) {
+		total += other.total;
+		other.titles.forEach(titles::putIfAbsent);
+		other.countPerDefinition.forEach((id, count) -> countPerDefinition.merge(id, count, Long::sum));
+		other.countPerSource.forEach((source, count) -> countPerSource.merge(source, count, Long::sum));
+		first = Math.min(first, other.first);
+		last = Math.max(last, other.last);
+	}
+
+	public long total() {
+		return total;
+	}
+
+	public boolean isEmpty() {
+		return total == 0;
+	}
+
+	public String render() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("*Digest:* ").append(total).append(total == 1 ? " event" : " events")
+				.append(" between ").append(format(first))
+				.append(" and ").append(format(last)).append('\n');
+
+		countPerDefinition.forEach((id, count) ->
+				Mrkdwn.appendEscaped(sb.append("> "), titles.get(id)).append(": ").append(count).append('\n'));
+
+		if (!countPerSource.isEmpty()) {
+			sb.append("Top sources: ");
+			sb.append(countPerSource.entrySet().stream()
+					.sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+					.limit(TOP_SOURCES)
+					.map(e -> Mrkdwn.escape(e.getKey()) + " (" + e.getValue() + ")")
+					.collect(Collectors.joining(", ")));
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	void writeTo(DataOutput out) throws IOException {
+		out.writeLong(total);
+		out.writeLong(first);
+		out.writeLong(last);
+		out.writeInt(countPerDefinition.size());
+		for (Map.Entry<String, Long> definition : countPerDefinition.entrySet()) {
+			SpoolStrings.write(out, definition.getKey());
+			SpoolStrings.write(out, titles.get(definition.getKey()));
+			out.writeLong(definition.getValue());
+		}
+		out.writeInt(countPerSource.size());
+		for (Map.Entry<String, Long> source : countPerSource.entrySet()) {
+			SpoolStrings.write(out, source.getKey());
+			out.writeLong(source.getValue());
+		}
+	}
+
+	static DigestSummary readFrom(DataInput in) throws IOException {
+		final DigestSummary summary = new DigestSummary();
+		summary.total = in.readLong();
+		summary.first = in.readLong();
+		summary.last = in.readLong();
+		for (int i = in.readInt(); i > 0; i--) {
+			final String id = SpoolStrings.read(in);
+			summary.titles.put(id, SpoolStrings.read(in));
+			summary.countPerDefinition.put(id, in.readLong());
+		}
+		for (int i = in.readInt(); i > 0; i--) {
+			summary.countPerSource.put(SpoolStrings.read(in), in.readLong());
+		}
+		return summary;
+	}
+
+	private static String format(long timestamp) {
+		return new DateTime(timestamp, DateTimeZone.UTC).toString();
+	}
+}
@@ -0,0 +1,411 @@
+package com.sportalliance.graylog.plugins.slacknotification.digest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sportalliance.graylog.plugins.slacknotification.SlackNotificationPluginConfiguration;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeCache;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeState;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+
+/**
+ * Collects the events of notifications in digest mode until their digest period is over.
+ * <p>
+ * Each notification keeps a bounded number of entries in memory. Entries beyond that are
+ * appended to a spool file and read back when the digest is built. On shutdown the entries in
+ * memory are spooled as well, and the spool files are {@link #recover recovered} on the next start:
+ * <pre>
+ * file   := MAGIC periodStart:long record*
+ * record := ENTRY DigestEntry | SUMMARY DigestSummary
+ * </pre>
+ * The digest of a notification is dropped along with its cached state, right away if it has no
+ * period in progress, otherwise once that period was drained.
+ */
+@Singleton
+public class SlackDigestBuffer implements SlackRuntimeCache.RemovalListener {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SlackDigestBuffer.class);
+
+	private static final int MAGIC = 0x534e4448;
+	private static final String SPOOL_SUFFIX = ".bin";
+	private static final byte ENTRY = 1;
+	private static final byte SUMMARY = 2;
+
+	private final Map<String, Digest> digests = new ConcurrentHashMap<>();
+	private final Path spoolDir;
+	private final int bufferSize;
+	// Set on shutdown, entries and summaries added afterwards are spooled right away
+	private volatile boolean stopping;
+
+	@Inject
+	public SlackDigestBuffer(@Named(SlackNotificationPluginConfiguration.SPOOL_DIR) Path spoolDir,
+							 @Named(SlackNotificationPluginConfiguration.DIGEST_BUFFER_SIZE) int bufferSize) {
+		this.spoolDir = spoolDir.resolve("digest");
+		this.bufferSize = bufferSize;
+	}
+
+	public void add(String notificationId, SlackEventNotificationConfig config, DigestEntry entry) {
+		Digest digest = digest(notificationId);
+		while (!digest.add(config, entry, bufferSize)) {
+			digest = replace(notificationId, digest);
+		}
+		// Checked after the entry was added, so either this or close() spools it
+		if (stopping) {
+			digest.close();
+		}
+	}
+
+	private Digest digest(String notificationId) {
+		return digests.computeIfAbsent(notificationId, id -> new Digest(spoolDir.resolve(id + SPOOL_SUFFIX)));
+	}
+
+	/**
+	 * Returns a new digest for one which was dropped after it was looked up.
+	 */
+	private Digest replace(String notificationId, Digest removed) {
+		digests.remove(notificationId, removed);
+		return digest(notificationId);
+	}
+
+	/**
+	 * Takes over the spool files of the previous run, called on startup before the first event.
+	 * Files of notifications which are gone or no longer in digest mode, and files of an unknown
+	 * format, are deleted.
+	 *
+	 * @param configs the config of a notification by notification ID, or {@code null} if there is none
+	 */
+	public void recover(Function<String, SlackEventNotificationConfig> configs) {
+		if (!Files.isDirectory(spoolDir)) {
+			return;
+		}
+
+		final List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> spoolFiles = Files.newDirectoryStream(spoolDir, "*" + SPOOL_SUFFIX)) {
+			spoolFiles.forEach(files::add);
+		} catch (IOException e) {
+			LOG.warn("Could not list digest spool files in <{}>.", spoolDir, e);
+			return;
+		}
+
+		for (Path file : files) {
+			final String fileName = file.getFileName().toString();
+			final String notificationId = fileName.substring(0, fileName.length() - SPOOL_SUFFIX.length());
+			final SlackEventNotificationConfig config = configs.apply(notificationId);
+			final long periodStart = config != null && config.digestMode() ? readPeriodStart(file) : -1;
+			if (periodStart < 0) {
+				LOG.info("Deleting digest spool file <{}> of a previous run which cannot be recovered.", file);
+				deleteQuietly(file);
+			} else {
+				Digest digest = digest(notificationId);
+				while (!digest.recovered(config, periodStart)) {
+					digest = replace(notificationId, digest);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes and summarizes all digests whose period is over.
+	 */
+	public List<DueDigest> drainDue(long nowMillis) {
+		final List<DueDigest> due = new ArrayList<>();
+		digests.forEach((notificationId, digest) -> {
+			final DueDigest dueDigest = digest.drainIfDue(notificationId, nowMillis);
+			if (dueDigest != null) {
+				due.add(dueDigest);
+			}
+		});
+		digests.values().removeIf(Digest::isRemoved);
+		return due;
+	}
+
+	/**
+	 * Adds the summary of a digest which could not be sent to the next digest of its notification.
+	 */
+	public void requeue(DueDigest dueDigest) {
+		Digest digest = digest(dueDigest.notificationId());
+		while (!digest.requeue(dueDigest.config(), dueDigest.summary())) {
+			digest = replace(dueDigest.notificationId(), digest);
+		}
+		if (stopping) {
+			digest.close();
+		}
+	}
+
+	/**
+	 * Drops the digest of the notification, e.g. because it was deleted or its digest mode switched off.
+	 * A period in progress is still sent when it is over.
+	 */
+	@Override
+	public void removed(String notificationId, SlackRuntimeState removed, Collection<SlackRuntimeState> cached) {
+		digests.computeIfPresent(notificationId, (id, digest) -> digest.retire() ? null : digest);
+	}
+
+	/**
+	 * Spools the entries and re-queued summaries kept in memory and closes the spool files, called on
+	 * shutdown. Entries and summaries added afterwards are spooled right away.
+	 */
+	public void close() {
+		stopping = true;
+		digests.values().forEach(Digest::close);
+	}
+
+	private static long readPeriodStart(Path file) {
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+			return in.readInt() == MAGIC ? in.readLong() : -1;
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			LOG.warn("Could not delete digest spool file <{}>.", file, e);
+		}
+	}
+
+	public static class DueDigest {
+		private final String notificationId;
+		private final SlackEventNotificationConfig config;
+		private final DigestSummary summary;
+
+		DueDigest(String notificationId, SlackEventNotificationConfig config, DigestSummary summary) {
+			this.notificationId = notificationId;
+			this.config = config;
+			this.summary = summary;
+		}
+
+		public String notificationId() {
+			return notificationId;
+		}
+
+		public SlackEventNotificationConfig config() {
+			return config;
+		}
+
+		public DigestSummary summary() {
+			return summary;
+		}
+	}
+
+	private static class Digest {
+		private final Path spoolFile;
+		private final ArrayDeque<DigestEntry> entries = new ArrayDeque<>();
+		private SlackEventNotificationConfig config;
+		private long periodStart = -1;
+		// Summary of an earlier period which could not be sent
+		private DigestSummary requeued;
+		// Whether the spool file belongs to the current period, otherwise it is replaced on the next spill
+		private boolean spooled;
+		// Kept open while the period spills, closed when the digest is drained
+		private DataOutputStream spool;
+		// Whether the digest is dropped once its period in progress was drained
+		private boolean retired;
+		// Whether the digest was dropped, so entries have to go to a new digest of the notification
+		private boolean removed;
+
+		private Digest(Path spoolFile) {
+			this.spoolFile = spoolFile;
+		}
+
+		/**
+		 * @return {@code false} if the digest was dropped and the entry was not added
+		 */
+		private synchronized boolean add(SlackEventNotificationConfig config, DigestEntry entry, int bufferSize) {
+			if (removed) {
+				return false;
+			}
+			this.config = config;
+			startPeriod(System.currentTimeMillis());
+
+			if (entries.size() < bufferSize) {
+				entries.add(entry);
+				return true;
+			}
+
+			try {
+				spill(entry);
+			} catch (IOException e) {
+				LOG.warn("Could not spool digest entry to <{}>, dropping it.", spoolFile, e);
+				closeSpool();
+			}
+			return true;
+		}
+
+		private synchronized boolean recovered(SlackEventNotificationConfig config, long periodStart) {
+			if (removed) {
+				return false;
+			}
+			this.config = config;
+			this.periodStart = this.periodStart < 0 ? periodStart : Math.min(this.periodStart, periodStart);
+			this.spooled = true;
+			return true;
+		}
+
+		private synchronized boolean requeue(SlackEventNotificationConfig config, DigestSummary summary) {
+			if (removed) {
+				return false;
+			}
+			if (this.config == null) {
+				this.config = config;
+			}
+			// Sent with the next digest, so a failing webhook is not retried more often than digests are sent
+			startPeriod(System.currentTimeMillis());
+			if (requeued == null) {
+				requeued = summary;
+			} else {
+				requeued.addAll(summary);
+			}
+			return true;
+		}
+
+		/**
+		 * @return whether the digest has no period in progress and can be dropped right away
+		 */
+		private synchronized boolean retire() {
+			if (periodStart < 0) {
+				removed = true;
+			} else {
+				retired = true;
+			}
+			return removed;
+		}
+
+		private synchronized boolean isRemoved() {
+			return removed;
+		}
+
+		private void startPeriod(long nowMillis) {
+			if (periodStart < 0) {
+				periodStart = nowMillis;
+			}
+		}
+
+		private void spill(DigestEntry entry) throws IOException {
+			final DataOutputStream out = spool();
+			out.writeByte(ENTRY);
+			entry.writeTo(out);
+		}
+
+		private DataOutputStream spool() throws IOException {
+			if (spool == null) {
+				Files.createDirectories(spoolFile.getParent());
+				if (spooled) {
+					spool = new DataOutputStream(new BufferedOutputStream(
+							Files.newOutputStream(spoolFile, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+				} else {
+					// Replaces a file left by an earlier period which could not be deleted
+					spool = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spoolFile)));
+					spool.writeInt(MAGIC);
+					spool.writeLong(periodStart);
+					spooled = true;
+				}
+			}
+			return spool;
+		}
+
+		private void closeSpool() {
+			if (spool != null) {
+				try {
+					spool.close();
+				} catch (IOException e) {
+					LOG.warn("Could not write digest spool file <{}>.", spoolFile, e);
+				}
+				spool = null;
+			}
+		}
+
+		private synchronized DueDigest drainIfDue(String notificationId, long nowMillis) {
+			if (periodStart < 0 || nowMillis - periodStart < TimeUnit.MINUTES.toMillis(config.digestIntervalMinutes())) {
+				return null;
+			}
+
+			final DigestSummary summary = new DigestSummary();
+			if (requeued != null) {
+				summary.addAll(requeued);
+				requeued = null;
+			}
+			entries.forEach(summary::add);
+			entries.clear();
+			if (spooled) {
+				closeSpool();
+				readSpooled(summary);
+				spooled = false;
+			}
+			periodStart = -1;
+			removed = retired;
+			return new DueDigest(notificationId, config, summary);
+		}
+
+		private void readSpooled(DigestSummary summary) {
+			try (InputStream in = Files.newInputStream(spoolFile);
+				 DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+				if (data.readInt() != MAGIC) {
+					throw new IOException("Unknown format");
+				}
+				data.readLong();
+				while (true) {
+					final byte type = data.readByte();
+					if (type == ENTRY) {
+						summary.add(DigestEntry.readFrom(data));
+					} else if (type == SUMMARY) {
+						summary.addAll(DigestSummary.readFrom(data));
+					} else {
+						throw new IOException("Unknown record type " + type);
+					}
+				}
+			} catch (EOFException e) {
+				// End of spool file or a record which was only partially written
+			} catch (IOException e) {
+				LOG.warn("Could not read spooled digest entries from <{}>.", spoolFile, e);
+			}
+			deleteQuietly(spoolFile);
+		}
+
+		private synchronized void close() {
+			if (!entries.isEmpty() || requeued != null) {
+				try {
+					for (DigestEntry entry : entries) {
+						spill(entry);
+					}
+					if (requeued != null) {
+						final DataOutputStream out = spool();
+						out.writeByte(SUMMARY);
+						requeued.writeTo(out);
+					}
+					entries.clear();
+					requeued = null;
+				} catch (IOException e) {
+					LOG.warn("Could not spool {} digest entries to <{}>, dropping them.", entries.size(), spoolFile, e);
+				}
+			}
+			closeSpool();
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.sportalliance.graylog.plugins.slacknotification.digest;
+
+import java.util.Collections;
+
+import javax.inject.Inject;
+
+import org.graylog2.plugin.periodical.Periodical;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient;
+import com.sportalliance.graylog.plugins.slacknotification.SlackDispatcher;
+import com.sportalliance.graylog.plugins.slacknotification.SlackMessage;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeCache;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeState;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+import com.sportalliance.graylog.plugins.slacknotification.suppression.SlackSuppressor;
+
+/**
+ * Sends one summary message per notification in digest mode once its digest period is over.
+ */
+public class SlackDigestPeriodical extends Periodical {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SlackDigestPeriodical.class);
+
+	// Digests are the least urgent kind of message, see EventDto#priority()
+	private static final long DIGEST_PRIORITY = 1;
+	// Digests are recorded in the delivery audit log under this event ID
+	private static final String DIGEST_EVENT_ID = "digest";
+
+	private final SlackDigestBuffer digestBuffer;
+	private final SlackDispatcher dispatcher;
+	private final SlackRuntimeCache runtimeCache;
+	private final SlackSuppressor suppressor;
+
+	@Inject
+	public SlackDigestPeriodical(SlackDigestBuffer digestBuffer,
+								 SlackDispatcher dispatcher,
+								 SlackRuntimeCache runtimeCache,
+								 SlackSuppressor suppressor) {
+		this.digestBuffer = digestBuffer;
+		this.dispatcher = dispatcher;
+		this.runtimeCache = runtimeCache;
+		this.suppressor = suppressor;
+	}
+
+	@Override
+	public void doRun() {
+		for (SlackDigestBuffer.DueDigest digest : digestBuffer.drainDue(System.currentTimeMillis())) {
+			if (digest.summary().isEmpty()) {
+				continue;
+			}
+
+			final SlackEventNotificationConfig config = digest.config();
+			final SlackRuntimeState state = runtimeCache.get(digest.notificationId(), config);
+			final SlackSuppressor.Report suppressionReport = suppressor.takeReport(digest.notificationId());
+			final SlackMessage message = new SlackMessage(
+					state.payloadTemplate(),
+					(config.notifyChannel() ? "@channel " : "") + digest.summary().render()
+							+ (suppressionReport != null ? "\n" + suppressionReport.text() : ""),
+					null,
+					Collections.emptyList());
+			try {
+				dispatcher.dispatch(digest.notificationId(), DIGEST_EVENT_ID, DIGEST_PRIORITY, state, message);
+			} catch (SlackClient.SlackClientException e) {
+				// Also repeated to the targets which received it, a digest is better sent twice than lost
+				LOG.warn("Could not send digest of {} events for notification <{}>, adding them to the next digest.",
+						digest.summary().total(), digest.notificationId(), e);
+				digestBuffer.requeue(digest);
+				if (suppressionReport != null) {
+					suppressor.restoreReport(digest.notificationId(), suppressionReport);
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean runsForever() {
+		return false;
+	}
+
+	@Override
+	public boolean stopOnGracefulShutdown() {
+		return true;
+	}
+
+	@Override
+	public boolean masterOnly() {
+		return false;
+	}
+
+	@Override
+	public boolean startOnThisNode() {
+		return true;
+	}
+
+	@Override
+	public boolean isDaemon() {
+		return true;
+	}
+
+	@Override
+	public int getInitialDelaySeconds() {
+		return 30;
+	}
+
+	@Override
+	public int getPeriodSeconds() {
+		return 30;
+	}
+
+	@Override
+	protected Logger getLogger() {
+		return LOG;
+	}
+}
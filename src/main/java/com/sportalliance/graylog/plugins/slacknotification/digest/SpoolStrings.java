@@ -0,0 +1,35 @@
+package com.sportalliance.graylog.plugins.slacknotification.digest;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Strings in spool files, as UTF-8 bytes with an int length prefix. Unlike {@link DataOutput#writeUTF}
+ * this is not limited to 64 KB, e.g. for long event definition titles.
+ */
+final class SpoolStrings {
+
+	// Guards against allocating huge arrays for the length of a corrupt record
+	private static final int MAX_LENGTH = 16 * 1024 * 1024;
+
+	private SpoolStrings() {
+	}
+
+	static void write(DataOutput out, String value) throws IOException {
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String read(DataInput in) throws IOException {
+		final int length = in.readInt();
+		if (length < 0 || length > MAX_LENGTH) {
+			throw new IOException("Invalid string length " + length);
+		}
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
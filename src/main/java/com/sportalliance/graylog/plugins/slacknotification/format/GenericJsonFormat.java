@@ -0,0 +1,62 @@
+package com.sportalliance.graylog.plugins.slacknotification.format;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.sportalliance.graylog.plugins.slacknotification.SlackMessage;
+
+/**
+ * A plain JSON document with the rendered parts of the message, for custom receivers.
+ */
+class GenericJsonFormat implements PayloadFormat {
+
+	static final GenericJsonFormat INSTANCE = new GenericJsonFormat();
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Override
+	public String name() {
+		return GENERIC;
+	}
+
+	@Override
+	public byte[] encode(SlackMessage message) {
+		final Map<String, Object> document = new LinkedHashMap<>();
+		// The message is rendered as Slack mrkdwn, custom receivers get its plain text
+		document.put("text", Mrkdwn.toPlainText(message.message()));
+		document.put("custom_message", message.customMessage() == null ? null : Mrkdwn.toPlainText(message.customMessage()));
+		document.put("backlog", message.backlogItemMessages().stream()
+				.filter(item -> !Strings.isNullOrEmpty(item))
+				.map(Mrkdwn::toPlainText)
+				.collect(Collectors.toList()));
+		document.put("backlog_fields", message.backlogItemFields().stream()
+				.map(fields -> fields.stream().collect(Collectors.toMap(
+						field -> field.title, field -> field.value, (first, second) -> first, LinkedHashMap::new)))
+				.collect(Collectors.toList()));
+		document.put("backlog_size", message.backlogSize());
+		document.put("backlog_url", message.backlogSearchUrl());
+		document.put("color", message.color());
+
+		try {
+			return MAPPER.writeValueAsBytes(document);
+		} catch (JsonProcessingException e) {
+			throw new RuntimeException("Could not build payload JSON.", e);
+		}
+	}
+
+	@Override
+	public boolean isSuccess(String responseBody) {
+		// Any 2xx response is a success
+		return true;
+	}
+
+	@Override
+	public boolean isMrkdwn() {
+		// Converted to plain text in #encode
+		return false;
+	}
+}
@@ -0,0 +1,113 @@
+package com.sportalliance.graylog.plugins.slacknotification.format;
+
+import java.util.regex.Pattern;
+
+/**
+ * Escaping and links for Slack mrkdwn, see https://api.slack.com/reference/surfaces/formatting#escaping.
+ * <p>
+ * Only {@code &}, {@code <} and {@code >} are control characters. Text is scanned once and copied in
+ * runs between them, text without them is returned or appended as it is.
+ */
+public final class Mrkdwn {
+
+	// Links as written by #appendLink, <url|label>
+	private static final Pattern LINK = Pattern.compile("<([^|>]+)\\|([^>]+)>");
+
+	private Mrkdwn() {
+	}
+
+	/**
+	 * @return the escaped text, the given instance if it contains nothing to escape
+	 */
+	public static String escape(String text) {
+		final int first = indexOfControl(text);
+		if (first < 0) {
+			return text;
+		}
+		final StringBuilder out = new StringBuilder(text.length() + 16);
+		out.append(text, 0, first);
+		return appendEscaped(out, text, first, false).toString();
+	}
+
+	public static StringBuilder appendEscaped(StringBuilder out, CharSequence text) {
+		return appendEscaped(out, text, 0, false);
+	}
+
+	/**
+	 * Appends {@code <url|label>}. A {@code |} in the URL would end it early and is percent-encoded.
+	 */
+	public static StringBuilder appendLink(StringBuilder out, CharSequence url, CharSequence label) {
+		out.append('<');
+		appendEscaped(out, url, 0, true);
+		out.append('|');
+		appendEscaped(out, label, 0, false);
+		return out.append('>');
+	}
+
+	public static String link(String url, String label) {
+		return appendLink(new StringBuilder(url.length() + label.length() + 8), url, label).toString();
+	}
+
+	/**
+	 * Reverts {@link #escape} for receivers which do not understand mrkdwn.
+	 */
+	public static String unescape(String text) {
+		if (text.indexOf('&') < 0) {
+			return text;
+		}
+		return text.replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+	}
+
+	/**
+	 * Converts mrkdwn for receivers which render Markdown, links become {@code [label](url)}.
+	 */
+	public static String toMarkdown(String mrkdwn) {
+		return unescape(LINK.matcher(mrkdwn).replaceAll("[$2]($1)"));
+	}
+
+	/**
+	 * Converts mrkdwn for receivers which show the text as it is, links become {@code label (url)}.
+	 */
+	public static String toPlainText(String mrkdwn) {
+		return unescape(LINK.matcher(mrkdwn).replaceAll("$2 ($1)"));
+	}
+
+	private static StringBuilder appendEscaped(StringBuilder out, CharSequence text, int from, boolean url) {
+		int start = from;
+		final int length = text.length();
+		for (int i = from; i < length; i++) {
+			final String replacement;
+			switch (text.charAt(i)) {
+				case '&':
+					replacement = "&amp;";
+					break;
+				case '<':
+					replacement = "&lt;";
+					break;
+				case '>':
+					replacement = "&gt;";
+					break;
+				case '|':
+					replacement = url ? "%7C" : null;
+					break;
+				default:
+					replacement = null;
+			}
+			if (replacement != null) {
+				out.append(text, start, i).append(replacement);
+				start = i + 1;
+			}
+		}
+		return out.append(text, start, length);
+	}
+
+	private static int indexOfControl(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c == '&' || c == '<' || c == '>') {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
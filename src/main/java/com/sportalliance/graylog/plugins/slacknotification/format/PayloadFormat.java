@@ -0,0 +1,53 @@
+package com.sportalliance.graylog.plugins.slacknotification.format;
+
+import com.sportalliance.graylog.plugins.slacknotification.SlackMessage;
+
+/**
+ * Encodes a rendered {@link SlackMessage} for one kind of receiver and interprets its responses.
+ */
+public interface PayloadFormat {
+
+	String SLACK = "slack";
+	String MATTERMOST = "mattermost";
+	String ROCKET_CHAT = "rocketchat";
+	String TEAMS = "teams";
+	String GENERIC = "generic";
+
+	String name();
+
+	byte[] encode(SlackMessage message);
+
+	/**
+	 * Checks the body of a 2xx response. Receivers report some errors with a success status.
+	 */
+	boolean isSuccess(String responseBody);
+
+	/**
+	 * Whether the receiver renders Slack mrkdwn, so template values have to be escaped for it.
+	 */
+	boolean isMrkdwn();
+
+	/**
+	 * Format of the Slack Web API methods chat.postMessage and chat.update, not selectable for webhooks.
+	 */
+	static PayloadFormat slackWebApi() {
+		return SlackWebApiFormat.INSTANCE;
+	}
+
+	static PayloadFormat forName(String name) {
+		switch (name) {
+			case SLACK:
+				return SlackFormat.INSTANCE;
+			case MATTERMOST:
+				return SlackCompatibleFormat.FOR_MATTERMOST;
+			case ROCKET_CHAT:
+				return SlackCompatibleFormat.FOR_ROCKET_CHAT;
+			case TEAMS:
+				return TeamsFormat.INSTANCE;
+			case GENERIC:
+				return GenericJsonFormat.INSTANCE;
+			default:
+				throw new IllegalArgumentException("Unknown message format <" + name + ">");
+		}
+	}
+}
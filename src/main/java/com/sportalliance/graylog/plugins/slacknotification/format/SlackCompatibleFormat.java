@@ -0,0 +1,44 @@
+package com.sportalliance.graylog.plugins.slacknotification.format;
+
+import java.util.function.Predicate;
+
+import com.sportalliance.graylog.plugins.slacknotification.SlackMessage;
+
+/**
+ * Receivers accepting Slack's legacy attachment payload, but not Block Kit.
+ */
+class SlackCompatibleFormat implements PayloadFormat {
+
+	static final SlackCompatibleFormat FOR_MATTERMOST = new SlackCompatibleFormat(MATTERMOST, "ok"::equals);
+	// Rocket.Chat answers with {"success":true} or {"success":false,"error":...}
+	static final SlackCompatibleFormat FOR_ROCKET_CHAT = new SlackCompatibleFormat(ROCKET_CHAT,
+			body -> body.replace(" ", "").contains("\"success\":true"));
+
+	private final String name;
+	private final Predicate<String> successCheck;
+
+	private SlackCompatibleFormat(String name, Predicate<String> successCheck) {
+		this.name = name;
+		this.successCheck = successCheck;
+	}
+
+	@Override
+	public String name() {
+		return name;
+	}
+
+	@Override
+	public byte[] encode(SlackMessage message) {
+		return message.getJsonBytes(false);
+	}
+
+	@Override
+	public boolean isSuccess(String responseBody) {
+		return successCheck.test(responseBody);
+	}
+
+	@Override
+	public boolean isMrkdwn() {
+		return true;
+	}
+}
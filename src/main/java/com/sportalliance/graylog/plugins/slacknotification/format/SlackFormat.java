@@ -0,0 +1,31 @@
+package com.sportalliance.graylog.plugins.slacknotification.format;
+
+import com.sportalliance.graylog.plugins.slacknotification.SlackMessage;
+
+/**
+ * Slack incoming webhook payload, see https://api.slack.com/messaging/webhooks.
+ */
+class SlackFormat implements PayloadFormat {
+
+	static final SlackFormat INSTANCE = new SlackFormat();
+
+	@Override
+	public String name() {
+		return SLACK;
+	}
+
+	@Override
+	public byte[] encode(SlackMessage message) {
+		return message.getJsonBytes();
+	}
+
+	@Override
+	public boolean isSuccess(String responseBody) {
+		return "ok".equals(responseBody);
+	}
+
+	@Override
+	public boolean isMrkdwn() {
+		return true;
+	}
+}
@@ -0,0 +1,32 @@
+package com.sportalliance.graylog.plugins.slacknotification.format;
+
+import com.sportalliance.graylog.plugins.slacknotification.SlackMessage;
+
+/**
+ * Slack Web API payload, see https://api.slack.com/methods/chat.postMessage.
+ */
+class SlackWebApiFormat implements PayloadFormat {
+
+	static final SlackWebApiFormat INSTANCE = new SlackWebApiFormat();
+
+	@Override
+	public String name() {
+		return "slack-web-api";
+	}
+
+	@Override
+	public byte[] encode(SlackMessage message) {
+		return message.getJsonBytes();
+	}
+
+	@Override
+	public boolean isSuccess(String responseBody) {
+		// The Web API answers with {"ok":true,...} or {"ok":false,"error":...}
+		return responseBody.replace(" ", "").contains("\"ok\":true");
+	}
+
+	@Override
+	public boolean isMrkdwn() {
+		return true;
+	}
+}
@@ -0,0 +1,81 @@
+package com.sportalliance.graylog.plugins.slacknotification.format;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import com.sportalliance.graylog.plugins.slacknotification.SlackMessage;
+
+/**
+ * Microsoft Teams connector card, see
+ * https://docs.microsoft.com/en-us/outlook/actionable-messages/message-card-reference.
+ */
+class TeamsFormat implements PayloadFormat {
+
+	static final TeamsFormat INSTANCE = new TeamsFormat();
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Override
+	public String name() {
+		return TEAMS;
+	}
+
+	@Override
+	public byte[] encode(SlackMessage message) {
+		final Map<String, Object> card = new LinkedHashMap<>();
+		card.put("@type", "MessageCard");
+		card.put("@context", "https://schema.org/extensions");
+		card.put("themeColor", message.color().replace("#", ""));
+		card.put("summary", "Graylog alert");
+		card.put("text", Mrkdwn.toMarkdown(message.message()));
+
+		final List<Object> sections = new ArrayList<>();
+		if (!isNullOrEmpty(message.customMessage())) {
+			sections.add(ImmutableMap.of("text", Mrkdwn.toMarkdown(message.customMessage())));
+		}
+		for (String backlogItemMessage : message.backlogItemMessages()) {
+			if (!isNullOrEmpty(backlogItemMessage)) {
+				sections.add(ImmutableMap.of("text", Mrkdwn.toMarkdown(backlogItemMessage)));
+			}
+		}
+		for (List<SlackMessage.AttachmentField> fields : message.backlogItemFields()) {
+			if (!fields.isEmpty()) {
+				sections.add(ImmutableMap.of("facts", fields.stream()
+						.map(field -> ImmutableMap.of("name", field.title, "value", field.value))
+						.collect(Collectors.toList())));
+			}
+		}
+		if (message.backlogLink() != null) {
+			sections.add(ImmutableMap.of("text", Mrkdwn.toMarkdown(message.backlogLink())));
+		}
+		if (!sections.isEmpty()) {
+			card.put("sections", sections);
+		}
+
+		try {
+			return MAPPER.writeValueAsBytes(card);
+		} catch (JsonProcessingException e) {
+			throw new RuntimeException("Could not build payload JSON.", e);
+		}
+	}
+
+	@Override
+	public boolean isSuccess(String responseBody) {
+		// Teams answers with "1" on success and with an error text and status 200 otherwise
+		return "1".equals(responseBody);
+	}
+
+	@Override
+	public boolean isMrkdwn() {
+		// Links and escapes in the Slack parts of the message are converted, values are taken as they are
+		return false;
+	}
+}
@@ -0,0 +1,126 @@
+package com.sportalliance.graylog.plugins.slacknotification.live;
+
+import java.time.Instant;
+
+import com.sportalliance.graylog.plugins.slacknotification.SlackMessage;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeState;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+
+/**
+ * A posted Slack message of one alert and the fires counted since.
+ */
+class LiveMessage {
+
+	static final int MAX_UPDATE_FAILURES = 3;
+
+	private final String key;
+	private final String notificationId;
+	private final String eventId;
+	private final long priority;
+	private final SlackEventNotificationConfig config;
+
+	private int fires = 1;
+	private int updatedFires = 1;
+	private long lastFireMillis;
+	private long lastUpdateMillis;
+	private int updateFailures;
+
+	// Set once the message is posted
+	private String channelId;
+	private String ts;
+	private SlackMessage message;
+
+	LiveMessage(String key, String notificationId, String eventId, long priority, SlackEventNotificationConfig config,
+				long nowMillis) {
+		this.key = key;
+		this.notificationId = notificationId;
+		this.eventId = eventId;
+		this.priority = priority;
+		this.config = config;
+		this.lastFireMillis = nowMillis;
+		this.lastUpdateMillis = nowMillis;
+	}
+
+	String key() {
+		return key;
+	}
+
+	String notificationId() {
+		return notificationId;
+	}
+
+	String eventId() {
+		return eventId;
+	}
+
+	long priority() {
+		return priority;
+	}
+
+	SlackEventNotificationConfig config() {
+		return config;
+	}
+
+	synchronized void fired(long nowMillis) {
+		fires++;
+		lastFireMillis = nowMillis;
+	}
+
+	synchronized void posted(String channelId, String ts, SlackMessage message) {
+		this.channelId = channelId;
+		this.ts = ts;
+		this.message = message;
+	}
+
+	synchronized boolean isExpired(long nowMillis) {
+		return nowMillis - lastFireMillis > config.liveMessageWindowMinutes() * 60_000L;
+	}
+
+	synchronized boolean isDirty() {
+		return fires != updatedFires;
+	}
+
+	/**
+	 * Whether an update is pending and the last one is at least one update interval ago.
+	 */
+	synchronized boolean isUpdateDue(long nowMillis) {
+		return isUpdatePending() && nowMillis - lastUpdateMillis >= config.liveMessageUpdateIntervalSeconds() * 1000L;
+	}
+
+	/**
+	 * Whether the message is posted and fires were counted since its last update.
+	 */
+	synchronized boolean isUpdatePending() {
+		return ts != null && isDirty();
+	}
+
+	/**
+	 * Builds the update with the current counter and marks it as sent, fires during the send are
+	 * part of the next update.
+	 *
+	 * @param state the cached runtime state of the notification, providing the payload template of the channel
+	 */
+	synchronized SlackMessage takeUpdate(long nowMillis, SlackRuntimeState state) {
+		updatedFires = fires;
+		lastUpdateMillis = nowMillis;
+
+		final long lastFireSeconds = lastFireMillis / 1000;
+		final String text = message.message() + "\n_Fired " + fires + " times, last "
+				+ "<!date^" + lastFireSeconds + "^{date_short_pretty} {time_secs}|" + Instant.ofEpochSecond(lastFireSeconds) + ">_";
+		return message.forUpdate(state.payloadTemplate(channelId), text, ts);
+	}
+
+	synchronized void updated() {
+		updateFailures = 0;
+	}
+
+	/**
+	 * Marks the fires as not updated again, so the next flush retries the update.
+	 *
+	 * @return {@code false} if the update failed {@value #MAX_UPDATE_FAILURES} times in a row and is not retried
+	 */
+	synchronized boolean updateFailed() {
+		updatedFires = 0;
+		return ++updateFailures < MAX_UPDATE_FAILURES;
+	}
+}
@@ -0,0 +1,68 @@
+package com.sportalliance.graylog.plugins.slacknotification.live;
+
+import javax.inject.Inject;
+
+import org.graylog2.plugin.periodical.Periodical;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies the fires counted for live messages, see {@link SlackLiveMessages}.
+ */
+public class SlackLiveMessagePeriodical extends Periodical {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SlackLiveMessagePeriodical.class);
+
+	private final SlackLiveMessages liveMessages;
+
+	@Inject
+	public SlackLiveMessagePeriodical(SlackLiveMessages liveMessages) {
+		this.liveMessages = liveMessages;
+	}
+
+	@Override
+	public void doRun() {
+		liveMessages.flush(System.currentTimeMillis());
+	}
+
+	@Override
+	public boolean runsForever() {
+		return false;
+	}
+
+	@Override
+	public boolean stopOnGracefulShutdown() {
+		return true;
+	}
+
+	@Override
+	public boolean masterOnly() {
+		return false;
+	}
+
+	@Override
+	public boolean startOnThisNode() {
+		return true;
+	}
+
+	@Override
+	public boolean isDaemon() {
+		return true;
+	}
+
+	@Override
+	public int getInitialDelaySeconds() {
+		return 5;
+	}
+
+	@Override
+	public int getPeriodSeconds() {
+		// Lower bound of the per-notification update interval
+		return 5;
+	}
+
+	@Override
+	protected Logger getLogger() {
+		return LOG;
+	}
+}
@@ -0,0 +1,176 @@
+package com.sportalliance.graylog.plugins.slacknotification.live;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.graylog.events.notifications.EventNotificationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sportalliance.graylog.plugins.slacknotification.AlertKey;
+import com.sportalliance.graylog.plugins.slacknotification.DeliveryTarget;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackResponse;
+import com.sportalliance.graylog.plugins.slacknotification.SlackMessage;
+import com.sportalliance.graylog.plugins.slacknotification.SlackNotificationPluginConfiguration;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeCache;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeState;
+import com.sportalliance.graylog.plugins.slacknotification.SlackSendGuard;
+import com.sportalliance.graylog.plugins.slacknotification.audit.DeliveryAuditLog;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+
+/**
+ * Keeps one posted Slack message per active alert of notifications in live message mode.
+ * <p>
+ * Alerts are identified by their {@link AlertKey}. The first fire posts a
+ * message via chat.postMessage, further fires are only counted here and the
+ * {@link SlackLiveMessagePeriodical} applies them with at most one chat.update per update interval.
+ * The least recently fired alerts are forgotten once the node-wide maximum of entries is reached,
+ * as are alerts whose update failed {@value LiveMessage#MAX_UPDATE_FAILURES} times in a row or after
+ * their window expired. Their next fire posts a new message.
+ */
+@Singleton
+public class SlackLiveMessages {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SlackLiveMessages.class);
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final Map<String, LiveMessage> messages;
+	private final SlackSendGuard sendGuard;
+	private final DeliveryAuditLog auditLog;
+	private final SlackRuntimeCache runtimeCache;
+
+	@Inject
+	public SlackLiveMessages(@Named(SlackNotificationPluginConfiguration.LIVE_MESSAGE_MAX_ENTRIES) int maxEntries,
+							 SlackSendGuard sendGuard,
+							 DeliveryAuditLog auditLog,
+							 SlackRuntimeCache runtimeCache) {
+		this.messages = new LinkedHashMap<String, LiveMessage>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, LiveMessage> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		this.sendGuard = sendGuard;
+		this.auditLog = auditLog;
+		this.runtimeCache = runtimeCache;
+	}
+
+	/**
+	 * Counts the fire for the live message of the alert if there is one.
+	 *
+	 * @return {@code false} if the alert has no live message, the caller then has to {@link #post} one
+	 */
+	public boolean refire(EventNotificationContext ctx, SlackEventNotificationConfig config) {
+		final String key = AlertKey.of(ctx);
+		final long now = System.currentTimeMillis();
+		synchronized (messages) {
+			final LiveMessage live = messages.get(key);
+			if (live != null && live.config().equals(config) && !live.isExpired(now)) {
+				live.fired(now);
+				return true;
+			}
+			// Reserved before posting, so concurrent fires are counted instead of posted as well
+			messages.put(key, new LiveMessage(key, ctx.notificationId(), ctx.event().id(), ctx.event().priority(), config, now));
+			return false;
+		}
+	}
+
+	public void post(EventNotificationContext ctx, SlackRuntimeState state, SlackMessage message) throws SlackClientException {
+		final String key = AlertKey.of(ctx);
+		final LiveMessage live;
+		synchronized (messages) {
+			live = messages.get(key);
+		}
+
+		final DeliveryTarget target = state.postMessageTarget();
+		try {
+			final SlackResponse response = sendGuard.execute(target.webhookUrl(), ctx.event().priority(),
+					() -> auditLog.send(ctx.notificationId(), ctx.event().id(), target, message));
+			final JsonNode body = parse(response);
+			if (live != null) {
+				live.posted(body.path("channel").asText(), body.path("ts").asText(), message);
+			}
+		} catch (SlackClientException e) {
+			synchronized (messages) {
+				messages.remove(key, live);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Sends the due updates and forgets expired alerts.
+	 */
+	void flush(long now) {
+		flush(now, false);
+	}
+
+	/**
+	 * Sends all pending updates regardless of the update interval, called on shutdown so the counters
+	 * posted last are not lost with this node.
+	 */
+	public void flushPending() {
+		flush(System.currentTimeMillis(), true);
+	}
+
+	private void flush(long now, boolean pending) {
+		final List<LiveMessage> due = new ArrayList<>();
+		synchronized (messages) {
+			for (Iterator<LiveMessage> it = messages.values().iterator(); it.hasNext(); ) {
+				final LiveMessage live = it.next();
+				if (pending ? live.isUpdatePending() : live.isUpdateDue(now)) {
+					due.add(live);
+				} else if (live.isExpired(now) && !live.isDirty()) {
+					it.remove();
+				}
+			}
+		}
+
+		for (LiveMessage live : due) {
+			final SlackRuntimeState state = runtimeCache.get(live.notificationId(), live.config());
+			final DeliveryTarget target = state.updateMessageTarget();
+			final SlackMessage update = live.takeUpdate(now, state);
+			try {
+				final SlackResponse response = sendGuard.execute(target.webhookUrl(), live.priority(),
+						() -> auditLog.send(live.notificationId(), live.eventId(), target, update));
+				parse(response);
+				live.updated();
+			} catch (SlackClientException e) {
+				// E.g. a deleted message or a revoked token, which fail again however often they are retried
+				if (live.updateFailed() && !live.isExpired(now)) {
+					LOG.warn("Could not update live message of notification <{}>.", live.notificationId(), e);
+				} else {
+					synchronized (messages) {
+						messages.remove(live.key(), live);
+					}
+					LOG.warn("Could not update live message of notification <{}>, giving it up.", live.notificationId(), e);
+				}
+			}
+		}
+	}
+
+	private static JsonNode parse(SlackResponse response) throws SlackClientException {
+		final JsonNode body;
+		try {
+			body = MAPPER.readTree(response.body());
+		} catch (IOException e) {
+			throw new SlackClientException("Could not parse Slack Web API response", e);
+		}
+		if (!body.path("ok").asBoolean()) {
+			throw new SlackClientException("Slack Web API error " + body.path("error").asText(),
+					response.statusCode(), response.body());
+		}
+		return body;
+	}
+}
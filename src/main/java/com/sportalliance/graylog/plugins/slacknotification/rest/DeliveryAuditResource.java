@@ -0,0 +1,89 @@
+package com.sportalliance.graylog.plugins.slacknotification.rest;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.shiro.authz.annotation.RequiresAuthentication;
+import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.graylog2.plugin.rest.PluginRestResource;
+import org.graylog2.shared.rest.resources.RestResource;
+import org.graylog2.shared.security.RestPermissions;
+import org.joda.time.DateTime;
+
+import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import com.sportalliance.graylog.plugins.slacknotification.audit.DeliveryAuditLog;
+import com.sportalliance.graylog.plugins.slacknotification.audit.DeliveryRecord;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+
+@Api(value = "SlackNotification/Deliveries", description = "Delivery audit trail of Slack notifications on this node")
+@Path("/deliveries")
+@Produces(MediaType.APPLICATION_JSON)
+@RequiresAuthentication
+public class DeliveryAuditResource extends RestResource implements PluginRestResource {
+
+	private static final int MAX_LIMIT = 1000;
+
+	private final DeliveryAuditLog auditLog;
+
+	@Inject
+	public DeliveryAuditResource(DeliveryAuditLog auditLog) {
+		this.auditLog = auditLog;
+	}
+
+	@GET
+	@Timed
+	@ApiOperation("Find the latest Slack deliveries of this node, by event ID and/or time range")
+	@RequiresPermissions(RestPermissions.EVENT_NOTIFICATIONS_READ)
+	public DeliveryRecordList find(@ApiParam(name = "event_id") @QueryParam("event_id") String eventId,
+								   @ApiParam(name = "from", value = "ISO 8601 timestamp, inclusive") @QueryParam("from") String from,
+								   @ApiParam(name = "to", value = "ISO 8601 timestamp, exclusive") @QueryParam("to") String to,
+								   @ApiParam(name = "limit") @QueryParam("limit") @DefaultValue("100") int limit) {
+		if (limit < 1 || limit > MAX_LIMIT) {
+			throw new BadRequestException("limit must be between 1 and " + MAX_LIMIT);
+		}
+
+		final List<DeliveryRecord> records = auditLog.find(
+				eventId,
+				parseTimestamp(from, Long.MIN_VALUE),
+				parseTimestamp(to, Long.MAX_VALUE),
+				limit);
+		return DeliveryRecordList.create(records);
+	}
+
+	private static long parseTimestamp(String timestamp, long defaultValue) {
+		if (timestamp == null || timestamp.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return DateTime.parse(timestamp).getMillis();
+		} catch (IllegalArgumentException e) {
+			throw new BadRequestException("Invalid timestamp <" + timestamp + ">");
+		}
+	}
+
+	@AutoValue
+	public static abstract class DeliveryRecordList {
+		@JsonProperty("deliveries")
+		public abstract List<DeliveryRecord> deliveries();
+
+		@JsonProperty("total")
+		public abstract int total();
+
+		public static DeliveryRecordList create(List<DeliveryRecord> deliveries) {
+			return new AutoValue_DeliveryAuditResource_DeliveryRecordList(deliveries, deliveries.size());
+		}
+	}
+}
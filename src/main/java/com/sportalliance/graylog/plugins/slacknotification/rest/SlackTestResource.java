@@ -0,0 +1,176 @@
+package com.sportalliance.graylog.plugins.slacknotification.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.shiro.authz.annotation.RequiresAuthentication;
+import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.graylog.events.event.EventDto;
+import org.graylog.events.notifications.EventNotificationContext;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageSummary;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.rest.PluginRestResource;
+import org.graylog2.plugin.system.NodeId;
+import org.graylog2.shared.rest.resources.RestResource;
+import org.graylog2.shared.security.RestPermissions;
+import org.joda.time.DateTime;
+
+import com.codahale.metrics.annotation.Timed;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.sportalliance.graylog.plugins.slacknotification.DeliveryTarget;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackResponse;
+import com.sportalliance.graylog.plugins.slacknotification.SlackMessage;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeCache;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeState;
+import com.sportalliance.graylog.plugins.slacknotification.SlackSendGuard;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTimings;
+import com.sportalliance.graylog.plugins.slacknotification.audit.DeliveryAuditLog;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotification;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+
+@Api(value = "SlackNotification/Test", description = "Render and optionally send Slack notifications without an event")
+@Path("/test")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+@RequiresAuthentication
+public class SlackTestResource extends RestResource implements PluginRestResource {
+
+	private static final String TEST_NOTIFICATION_ID = "NotificationTestId";
+	private static final String TEST_INDEX = "test-index";
+
+	private final SlackEventNotification.Factory notificationFactory;
+	private final SlackRuntimeCache runtimeCache;
+	private final SlackSendGuard sendGuard;
+	private final DeliveryAuditLog auditLog;
+	private final NodeId nodeId;
+
+	@Inject
+	public SlackTestResource(SlackEventNotification.Factory notificationFactory,
+							 SlackRuntimeCache runtimeCache,
+							 SlackSendGuard sendGuard,
+							 DeliveryAuditLog auditLog,
+							 NodeId nodeId) {
+		this.notificationFactory = notificationFactory;
+		this.runtimeCache = runtimeCache;
+		this.sendGuard = sendGuard;
+		this.auditLog = auditLog;
+		this.nodeId = nodeId;
+	}
+
+	@POST
+	@Timed
+	@ApiOperation("Render a notification config for a sample event, optionally send it and measure the time spent per step")
+	@RequiresPermissions(RestPermissions.EVENT_NOTIFICATIONS_CREATE)
+	public TestSendResult test(@ApiParam(name = "JSON body", required = true) @Valid @NotNull TestSendRequest request) {
+		if (!(request.config() instanceof SlackEventNotificationConfig)) {
+			throw new BadRequestException("Config must be of type " + SlackEventNotificationConfig.TYPE_NAME);
+		}
+		final SlackEventNotificationConfig config = (SlackEventNotificationConfig) request.config();
+		if (config.validate().failed()) {
+			throw new BadRequestException("Invalid config: " + config.validate().getErrors());
+		}
+
+		final EventNotificationContext ctx = EventNotificationContext.builder()
+				.notificationId(TEST_NOTIFICATION_ID)
+				.notificationConfig(config)
+				.event(request.event().orElseGet(this::dummyEvent))
+				.build();
+		final List<MessageSummary> backlog = request.backlog().stream()
+				.map(SlackTestResource::toMessageSummary)
+				.collect(Collectors.toList());
+
+		final SlackRuntimeState state = runtimeCache.create(config);
+		try {
+			return test(request, ctx, state, backlog);
+		} finally {
+			runtimeCache.discard(TEST_NOTIFICATION_ID, state);
+		}
+	}
+
+	private TestSendResult test(TestSendRequest request, EventNotificationContext ctx,
+								SlackRuntimeState state, List<MessageSummary> backlog) {
+		final SlackTimings timings = new SlackTimings();
+		final SlackMessage message = notificationFactory.create().createSlackMessage(ctx, state, backlog, timings);
+
+		final long serializeStart = System.nanoTime();
+		// Only the primary target is measured, additional targets receive the same rendered message
+		final DeliveryTarget target = state.primaryTarget();
+		final byte[] payload = target.encode(message);
+		timings.addSerialize(serializeStart);
+
+		final TestSendResult.Builder result = TestSendResult.builder()
+				.payload(new String(payload, StandardCharsets.UTF_8))
+				.payloadSize(payload.length);
+
+		if (request.send()) {
+			try {
+				// Test sends count against the same limits as events and show up in the audit trail
+				final SlackResponse response = sendGuard.execute(target.webhookUrl(), ctx.event().priority(),
+						() -> auditLog.send(TEST_NOTIFICATION_ID, ctx.event().id(), target, payload, timings));
+				result.sent(true)
+						.httpStatus(response.statusCode())
+						.response(response.body());
+			} catch (SlackClientException e) {
+				result.httpStatus(e.statusCode())
+						.error(e.getCause() != null ? e.getMessage() + " (" + e.getCause() + ")" : e.getMessage());
+				if (e.responseBody() != null) {
+					result.response(e.responseBody());
+				}
+			}
+		}
+
+		return result.timings(TestSendResult.Timings.of(timings)).build();
+	}
+
+	private EventDto dummyEvent() {
+		final DateTime now = Tools.nowUTC();
+		return EventDto.builder()
+				.id("NotificationTestId")
+				.eventDefinitionType("notification-test-v1")
+				.eventDefinitionId("EventDefinitionTestId")
+				.eventTimestamp(now)
+				.processingTimestamp(now)
+				.streams(ImmutableSet.of())
+				.sourceStreams(ImmutableSet.of())
+				.message("Notification test message")
+				.source(nodeId.toString())
+				.keyTuple(ImmutableList.of("testkey"))
+				.key("testkey")
+				.priority(2)
+				.alert(true)
+				.fields(ImmutableMap.of("field1", "value1", "field2", "value2"))
+				.build();
+	}
+
+	private static MessageSummary toMessageSummary(Map<String, Object> fields) {
+		final Object text = fields.getOrDefault(Message.FIELD_MESSAGE, "");
+		final Object source = fields.getOrDefault(Message.FIELD_SOURCE, "test-source");
+		final Message message = new Message(String.valueOf(text), String.valueOf(source), Tools.nowUTC());
+		fields.forEach((key, value) -> {
+			if (!Message.RESERVED_FIELDS.contains(key)) {
+				message.addField(key, value);
+			}
+		});
+		return new MessageSummary(TEST_INDEX, message);
+	}
+}
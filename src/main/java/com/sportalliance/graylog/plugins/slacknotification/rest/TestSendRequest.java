@@ -0,0 +1,52 @@
+package com.sportalliance.graylog.plugins.slacknotification.rest;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+import org.graylog.events.event.EventDto;
+import org.graylog.events.notifications.EventNotificationConfig;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+@AutoValue
+public abstract class TestSendRequest {
+
+	@JsonProperty("config")
+	public abstract EventNotificationConfig config();
+
+	/**
+	 * Sample event, a dummy event is used if absent.
+	 */
+	@JsonProperty("event")
+	public abstract Optional<EventDto> event();
+
+	/**
+	 * Fields of the sample backlog messages. Each entry needs at least a "message" field.
+	 */
+	@JsonProperty("backlog")
+	public abstract List<Map<String, Object>> backlog();
+
+	/**
+	 * Whether the rendered message is actually sent to the webhook.
+	 */
+	@JsonProperty("send")
+	public abstract boolean send();
+
+	@JsonCreator
+	public static TestSendRequest create(@JsonProperty("config") EventNotificationConfig config,
+										 @JsonProperty("event") @Nullable EventDto event,
+										 @JsonProperty("backlog") @Nullable List<Map<String, Object>> backlog,
+										 @JsonProperty("send") boolean send) {
+		return new AutoValue_TestSendRequest(
+				config,
+				Optional.ofNullable(event),
+				backlog == null ? Collections.emptyList() : backlog,
+				send);
+	}
+}
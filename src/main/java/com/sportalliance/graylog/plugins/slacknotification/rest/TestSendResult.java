@@ -0,0 +1,96 @@
+package com.sportalliance.graylog.plugins.slacknotification.rest;
+
+import java.util.Optional;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.google.auto.value.AutoValue;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTimings;
+
+@AutoValue
+public abstract class TestSendResult {
+
+	@JsonProperty("payload")
+	@JsonRawValue
+	public abstract String payload();
+
+	@JsonProperty("payload_size")
+	public abstract int payloadSize();
+
+	@JsonProperty("sent")
+	public abstract boolean sent();
+
+	/**
+	 * The HTTP status of the response or {@code -1} if nothing was sent or no response was received.
+	 */
+	@JsonProperty("http_status")
+	public abstract int httpStatus();
+
+	@JsonProperty("response")
+	public abstract Optional<String> response();
+
+	@JsonProperty("error")
+	public abstract Optional<String> error();
+
+	@JsonProperty("timings")
+	public abstract Timings timings();
+
+	public static Builder builder() {
+		return new AutoValue_TestSendResult.Builder()
+				.sent(false)
+				.httpStatus(-1);
+	}
+
+	@AutoValue.Builder
+	public static abstract class Builder {
+		public abstract Builder payload(String payload);
+
+		public abstract Builder payloadSize(int payloadSize);
+
+		public abstract Builder sent(boolean sent);
+
+		public abstract Builder httpStatus(int httpStatus);
+
+		public abstract Builder response(String response);
+
+		public abstract Builder error(String error);
+
+		public abstract Builder timings(Timings timings);
+
+		public abstract TestSendResult build();
+	}
+
+	/**
+	 * Time spent per step in milliseconds.
+	 */
+	@AutoValue
+	public static abstract class Timings {
+		@JsonProperty("model_build_ms")
+		public abstract double modelBuild();
+
+		@JsonProperty("template_render_ms")
+		public abstract double templateRender();
+
+		@JsonProperty("serialize_ms")
+		public abstract double serialize();
+
+		@JsonProperty("connect_ms")
+		public abstract double connect();
+
+		@JsonProperty("response_ms")
+		public abstract double response();
+
+		public static Timings of(SlackTimings timings) {
+			return new AutoValue_TestSendResult_Timings(
+					millis(timings.modelBuildNanos()),
+					millis(timings.templateRenderNanos()),
+					millis(timings.serializeNanos()),
+					millis(timings.connectNanos()),
+					millis(timings.responseNanos()));
+		}
+
+		private static double millis(long nanos) {
+			return nanos / 1_000_000d;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.sportalliance.graylog.plugins.slacknotification.sampling;
+
+import java.util.List;
+
+import org.graylog2.plugin.MessageSummary;
+
+/**
+ * The backlog items chosen for rendering, with a note per item and a summary line for the message.
+ */
+public class BacklogSample {
+
+	private final List<MessageSummary> items;
+	private final List<String> notes;
+	private final String summary;
+
+	BacklogSample(List<MessageSummary> items, List<String> notes, String summary) {
+		this.items = items;
+		this.notes = notes;
+		this.summary = summary;
+	}
+
+	public List<MessageSummary> items() {
+		return items;
+	}
+
+	/**
+	 * @return the note of the item at the given index, e.g. how many messages it stands for, or {@code null}
+	 */
+	public String note(int index) {
+		return notes.isEmpty() ? null : notes.get(index);
+	}
+
+	/**
+	 * @return a mrkdwn line describing how the items were chosen
+	 */
+	public String summary() {
+		return summary;
+	}
+}
@@ -0,0 +1,207 @@
+package com.sportalliance.graylog.plugins.slacknotification.sampling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.graylog2.plugin.MessageSummary;
+
+import com.sportalliance.graylog.plugins.slacknotification.format.Mrkdwn;
+
+/**
+ * Chooses a fixed number of representative items of a backlog in one pass and with memory bounded by
+ * the sample size, independent of the backlog size.
+ */
+public final class BacklogSampler {
+
+	/**
+	 * Largest sample size, each eviction of the top-K sketch scans all of its counters.
+	 */
+	public static final int MAX_SIZE = 100;
+	// Counters kept per reported value by the top-K sketch, more counters make the counts more exact
+	private static final int COUNTERS_PER_VALUE = 4;
+	private static final String NO_VALUE = "(none)";
+
+	private BacklogSampler() {
+	}
+
+	/**
+	 * @param size  number of items to choose, at most {@link #MAX_SIZE}
+	 * @param field message field of the {@link SamplingStrategy#GROUP} and {@link SamplingStrategy#TOP_K} strategies
+	 */
+	public static BacklogSample sample(List<MessageSummary> backlog, SamplingStrategy strategy, int size, String field) {
+		// Configs saved before the size was validated may ask for more
+		final int limitedSize = Math.min(size, MAX_SIZE);
+		switch (strategy) {
+			case RESERVOIR:
+				return reservoir(backlog, limitedSize);
+			case GROUP:
+				return group(backlog, limitedSize, field);
+			case TOP_K:
+				return topK(backlog, limitedSize, field);
+			default:
+				throw new IllegalArgumentException("Unknown backlog sampling <" + strategy + ">");
+		}
+	}
+
+	/**
+	 * Reservoir sampling with Algorithm L, which jumps over the items that are not chosen. For a
+	 * random access backlog only about {@code size * log(backlog size / size)} items are touched.
+	 * The chosen items keep their backlog order.
+	 */
+	private static BacklogSample reservoir(List<MessageSummary> backlog, int size) {
+		final int total = backlog.size();
+		final int k = Math.min(size, total);
+		final int[] chosen = new int[k];
+		for (int i = 0; i < k; i++) {
+			chosen[i] = i;
+		}
+
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (k > 0) {
+			double w = Math.exp(Math.log(uniform(random)) / k);
+			long next = k - 1;
+			while (true) {
+				next += (long) Math.floor(Math.log(uniform(random)) / Math.log(1 - w)) + 1;
+				if (next >= total) {
+					break;
+				}
+				chosen[random.nextInt(k)] = (int) next;
+				w *= Math.exp(Math.log(uniform(random)) / k);
+			}
+		}
+		Arrays.sort(chosen);
+
+		final List<MessageSummary> items = new ArrayList<>(k);
+		if (backlog instanceof RandomAccess) {
+			for (int index : chosen) {
+				items.add(backlog.get(index));
+			}
+		} else {
+			final Iterator<MessageSummary> it = backlog.iterator();
+			// Index of the item the iterator returns next
+			int position = 0;
+			for (int index : chosen) {
+				for (; position < index; position++) {
+					it.next();
+				}
+				items.add(it.next());
+				position++;
+			}
+		}
+		return new BacklogSample(items, Collections.emptyList(),
+				"_Random sample of " + k + " of " + total + " backlog messages_\n");
+	}
+
+	// (0, 1], the logarithm must not be infinite
+	private static double uniform(ThreadLocalRandom random) {
+		return 1 - random.nextDouble();
+	}
+
+	/**
+	 * Keeps the first {@code size} distinct values with their first message, messages with further
+	 * values are only counted.
+	 */
+	private static BacklogSample group(List<MessageSummary> backlog, int size, String field) {
+		final Map<String, Group> groups = new LinkedHashMap<>();
+		long other = 0;
+		for (MessageSummary item : backlog) {
+			final String value = fieldValue(item, field);
+			final Group group = groups.get(value);
+			if (group != null) {
+				group.count++;
+			} else if (groups.size() < size) {
+				groups.put(value, new Group(value, item));
+			} else {
+				other++;
+			}
+		}
+
+		final StringBuilder summary = new StringBuilder("_").append(backlog.size()).append(" backlog messages grouped by ");
+		Mrkdwn.appendEscaped(summary, field);
+		if (other > 0) {
+			summary.append(", ").append(other).append(" of them with further values");
+		}
+		return toSample(groups.values(), field, summary.append("_\n").toString());
+	}
+
+	/**
+	 * Finds the most frequent values with the Space-Saving sketch: a fixed number of counters, where a
+	 * new value replaces the value with the lowest count and inherits that count as possible error.
+	 */
+	private static BacklogSample topK(List<MessageSummary> backlog, int size, String field) {
+		final int capacity = size * COUNTERS_PER_VALUE;
+		final Map<String, Group> counters = new HashMap<>(capacity * 2);
+		for (MessageSummary item : backlog) {
+			final String value = fieldValue(item, field);
+			final Group counter = counters.get(value);
+			if (counter != null) {
+				counter.count++;
+			} else if (counters.size() < capacity) {
+				counters.put(value, new Group(value, item));
+			} else {
+				Group min = null;
+				for (Group candidate : counters.values()) {
+					if (min == null || candidate.count < min.count) {
+						min = candidate;
+					}
+				}
+				counters.remove(min.value);
+				final Group replacement = new Group(value, item);
+				replacement.count = min.count + 1;
+				replacement.error = min.count;
+				counters.put(value, replacement);
+			}
+		}
+
+		final List<Group> top = new ArrayList<>(counters.values());
+		top.sort((a, b) -> Long.compare(b.count, a.count));
+		final StringBuilder summary = new StringBuilder("_Most frequent ");
+		Mrkdwn.appendEscaped(summary, field);
+		summary.append(" values of ").append(backlog.size()).append(" backlog messages_\n");
+		return toSample(top.subList(0, Math.min(size, top.size())), field, summary.toString());
+	}
+
+	private static BacklogSample toSample(Collection<Group> groups, String field, String summary) {
+		final List<MessageSummary> items = new ArrayList<>(groups.size());
+		final List<String> notes = new ArrayList<>(groups.size());
+		for (Group group : groups) {
+			items.add(group.example);
+			final StringBuilder note = new StringBuilder();
+			if (group.error > 0) {
+				note.append('~');
+			}
+			note.append(group.count).append(group.count == 1 ? " message with " : " messages with ");
+			Mrkdwn.appendEscaped(note, field).append(" = ");
+			Mrkdwn.appendEscaped(note, group.value.isEmpty() ? NO_VALUE : group.value);
+			notes.add(note.toString());
+		}
+		return new BacklogSample(items, notes, summary);
+	}
+
+	private static String fieldValue(MessageSummary item, String field) {
+		// Reads the message directly, MessageSummary#getFields() copies all fields
+		final Object value = item.getField(field);
+		return value == null ? "" : value.toString();
+	}
+
+	private static class Group {
+		private final String value;
+		private final MessageSummary example;
+		private long count = 1;
+		private long error;
+
+		Group(String value, MessageSummary example) {
+			this.value = value;
+			this.example = example;
+		}
+	}
+}
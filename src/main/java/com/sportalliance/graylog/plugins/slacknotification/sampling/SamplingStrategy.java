@@ -0,0 +1,38 @@
+package com.sportalliance.graylog.plugins.slacknotification.sampling;
+
+/**
+ * How the rendered items of a large backlog are chosen.
+ */
+public enum SamplingStrategy {
+	/**
+	 * A uniform random sample of the backlog.
+	 */
+	RESERVOIR("reservoir"),
+	/**
+	 * One example and the count per distinct value of the sample field, in the order the values first occur.
+	 */
+	GROUP("group"),
+	/**
+	 * One example and the count of the most frequent values of the sample field.
+	 */
+	TOP_K("top_k");
+
+	private final String configValue;
+
+	SamplingStrategy(String configValue) {
+		this.configValue = configValue;
+	}
+
+	public String configValue() {
+		return configValue;
+	}
+
+	public static SamplingStrategy forName(String name) {
+		for (SamplingStrategy strategy : values()) {
+			if (strategy.configValue.equals(name)) {
+				return strategy;
+			}
+		}
+		throw new IllegalArgumentException("Unknown backlog sampling <" + name + ">");
+	}
+}
@@ -0,0 +1,80 @@
+package com.sportalliance.graylog.plugins.slacknotification.suppression;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.base.Splitter;
+
+/**
+ * One-off windows like {@code 2019-11-02T20:00:00Z/2019-11-02T23:00:00Z}, kept as sorted,
+ * non-overlapping start and end arrays for a binary search.
+ */
+class MaintenanceWindows {
+
+	static final MaintenanceWindows NONE = new MaintenanceWindows(new long[0], new long[0]);
+
+	private static final Splitter ENTRY_SPLITTER = Splitter.onPattern("[,;\\s]+").trimResults().omitEmptyStrings();
+
+	private final long[] starts;
+	private final long[] ends;
+
+	private MaintenanceWindows(long[] starts, long[] ends) {
+		this.starts = starts;
+		this.ends = ends;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if a window is invalid
+	 */
+	static MaintenanceWindows parse(String windows) {
+		final List<long[]> parsed = new ArrayList<>();
+		for (String entry : ENTRY_SPLITTER.split(windows)) {
+			final String[] bounds = entry.split("/");
+			if (bounds.length != 2) {
+				throw new IllegalArgumentException("Maintenance window <" + entry + "> must look like \"<start>/<end>\" in ISO 8601");
+			}
+			try {
+				final long start = OffsetDateTime.parse(bounds[0]).toInstant().toEpochMilli();
+				final long end = OffsetDateTime.parse(bounds[1]).toInstant().toEpochMilli();
+				if (end <= start) {
+					throw new IllegalArgumentException("Maintenance window <" + entry + "> ends before it starts");
+				}
+				parsed.add(new long[]{start, end});
+			} catch (DateTimeParseException e) {
+				throw new IllegalArgumentException("Invalid timestamp in maintenance window <" + entry + ">", e);
+			}
+		}
+		if (parsed.isEmpty()) {
+			return NONE;
+		}
+
+		// Merge overlapping windows so the ends are sorted as well
+		parsed.sort(Comparator.comparingLong(window -> window[0]));
+		final long[] starts = new long[parsed.size()];
+		final long[] ends = new long[parsed.size()];
+		int size = 0;
+		for (long[] window : parsed) {
+			if (size > 0 && window[0] <= ends[size - 1]) {
+				ends[size - 1] = Math.max(ends[size - 1], window[1]);
+			} else {
+				starts[size] = window[0];
+				ends[size] = window[1];
+				size++;
+			}
+		}
+		return new MaintenanceWindows(Arrays.copyOf(starts, size), Arrays.copyOf(ends, size));
+	}
+
+	boolean contains(long epochMillis) {
+		int index = Arrays.binarySearch(starts, epochMillis);
+		if (index < 0) {
+			// The window starting before the timestamp, if any
+			index = -index - 2;
+		}
+		return index >= 0 && epochMillis < ends[index];
+	}
+}
@@ -0,0 +1,128 @@
+package com.sportalliance.graylog.plugins.slacknotification.suppression;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+import com.google.common.base.Splitter;
+
+/**
+ * Recurring weekly windows in a time zone, e.g. {@code Mon-Fri 22:00-07:00; Sat,Sun 00:00-24:00}.
+ * <p>
+ * The windows are kept as one bit per minute of the week, so a lookup is a time zone offset and a bit test.
+ * A window ending before its start ends on the next day.
+ */
+class QuietHours {
+
+	static final QuietHours NONE = new QuietHours(new BitSet(), ZoneId.of("UTC"));
+
+	private static final int MINUTES_PER_DAY = 24 * 60;
+	private static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+	private static final Splitter ENTRY_SPLITTER = Splitter.onPattern("[;\\n]").trimResults().omitEmptyStrings();
+	private static final Splitter TOKEN_SPLITTER = Splitter.onPattern("\\s+").trimResults().omitEmptyStrings();
+
+	private final BitSet minutes;
+	private final ZoneId timeZone;
+
+	private QuietHours(BitSet minutes, ZoneId timeZone) {
+		this.minutes = minutes;
+		this.timeZone = timeZone;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the windows or the time zone are invalid
+	 */
+	static QuietHours parse(String windows, String timeZone) {
+		final ZoneId zone;
+		try {
+			zone = ZoneId.of(timeZone);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Unknown time zone <" + timeZone + ">", e);
+		}
+
+		final BitSet minutes = new BitSet(MINUTES_PER_WEEK);
+		for (String entry : ENTRY_SPLITTER.split(windows)) {
+			final List<String> tokens = TOKEN_SPLITTER.splitToList(entry);
+			if (tokens.size() != 2) {
+				throw new IllegalArgumentException("Quiet hours <" + entry + "> must look like \"Mon-Fri 22:00-07:00\"");
+			}
+			final boolean[] days = parseDays(tokens.get(0));
+			final String[] times = tokens.get(1).split("-");
+			if (times.length != 2) {
+				throw new IllegalArgumentException("Invalid time range <" + tokens.get(1) + ">");
+			}
+			final int start = parseMinuteOfDay(times[0]);
+			final int end = parseMinuteOfDay(times[1]);
+			final int length = end > start ? end - start : MINUTES_PER_DAY - start + end;
+
+			for (int day = 0; day < 7; day++) {
+				if (days[day]) {
+					final int from = day * MINUTES_PER_DAY + start;
+					for (int minute = from; minute < from + length; minute++) {
+						minutes.set(minute % MINUTES_PER_WEEK);
+					}
+				}
+			}
+		}
+		return new QuietHours(minutes, zone);
+	}
+
+	boolean isQuiet(long epochMillis) {
+		if (minutes.isEmpty()) {
+			return false;
+		}
+		final Instant instant = Instant.ofEpochMilli(epochMillis);
+		final LocalDateTime local = LocalDateTime.ofEpochSecond(instant.getEpochSecond(), 0, timeZone.getRules().getOffset(instant));
+		final int minuteOfWeek = (local.getDayOfWeek().getValue() - 1) * MINUTES_PER_DAY + local.getHour() * 60 + local.getMinute();
+		return minutes.get(minuteOfWeek);
+	}
+
+	private static boolean[] parseDays(String days) {
+		final boolean[] result = new boolean[7];
+		if ("*".equals(days)) {
+			Arrays.fill(result, true);
+			return result;
+		}
+		for (String part : days.split(",")) {
+			final String[] range = part.split("-");
+			final int from = parseDay(range[0]);
+			final int to = range.length > 1 ? parseDay(range[1]) : from;
+			for (int day = from; ; day = (day + 1) % 7) {
+				result[day] = true;
+				if (day == to) {
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	private static int parseDay(String day) {
+		final String name = day.trim().toUpperCase(Locale.ROOT);
+		for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+			if (name.length() >= 3 && dayOfWeek.name().startsWith(name)) {
+				return dayOfWeek.getValue() - 1;
+			}
+		}
+		throw new IllegalArgumentException("Unknown day <" + day + ">, use Mon, Tue, Wed, Thu, Fri, Sat or Sun");
+	}
+
+	private static int parseMinuteOfDay(String time) {
+		final String[] parts = time.split(":");
+		try {
+			final int hour = Integer.parseInt(parts[0]);
+			final int minute = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+			if (parts.length > 2 || hour < 0 || minute < 0 || minute > 59 || hour * 60 + minute > MINUTES_PER_DAY) {
+				throw new NumberFormatException();
+			}
+			return hour * 60 + minute;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid time <" + time + ">, use HH:mm");
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.sportalliance.graylog.plugins.slacknotification.suppression;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.inject.Singleton;
+
+import org.graylog.events.notifications.EventNotificationContext;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sportalliance.graylog.plugins.slacknotification.AlertKey;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+
+/**
+ * Decides whether an event is sent at all, before anything is rendered, and counts the events it
+ * suppressed until the next message of the notification is delivered.
+ * <p>
+ * An event which is let through counts as sent right away, so concurrent repetitions are suppressed
+ * too. If its message cannot be sent, {@link #sendFailed} and {@link #restoreReport} undo that.
+ */
+@Singleton
+public class SlackSuppressor {
+
+	private static final int MAX_KEYS = 10_000;
+	private static final SuppressionReason[] REASONS = SuppressionReason.values();
+
+	// Time of the last event which was let through, per notification and event key
+	private final Cache<String, Long> lastSent = CacheBuilder.newBuilder()
+			.maximumSize(MAX_KEYS)
+			.build();
+	private final ConcurrentMap<String, AtomicLongArray> suppressed = new ConcurrentHashMap<>();
+
+	/**
+	 * @return {@code true} if the event is suppressed and must not be sent
+	 * @see #sendFailed
+	 */
+	public boolean suppress(EventNotificationContext ctx, SuppressionSchedule schedule, long nowMillis) {
+		final SlackEventNotificationConfig config = (SlackEventNotificationConfig) ctx.notificationConfig();
+		SuppressionReason reason = schedule.reason(nowMillis);
+		if (reason == null && config.repeatSuppressionMinutes() > 0 && isRepeated(ctx, config, nowMillis)) {
+			reason = SuppressionReason.REPEATED;
+		}
+		if (reason == null) {
+			return false;
+		}
+
+		suppressed.computeIfAbsent(ctx.notificationId(), id -> new AtomicLongArray(REASONS.length))
+				.incrementAndGet(reason.ordinal());
+		return true;
+	}
+
+	private boolean isRepeated(EventNotificationContext ctx, SlackEventNotificationConfig config, long nowMillis) {
+		final String key = AlertKey.of(ctx);
+		final long window = TimeUnit.MINUTES.toMillis(config.repeatSuppressionMinutes());
+		final boolean[] repeated = new boolean[1];
+		lastSent.asMap().compute(key, (k, last) -> {
+			if (last != null && nowMillis - last < window) {
+				repeated[0] = true;
+				return last;
+			}
+			return nowMillis;
+		});
+		return repeated[0];
+	}
+
+	/**
+	 * Forgets that the event which was let through at the given time was sent, so its next repetition
+	 * is not suppressed.
+	 */
+	public void sendFailed(EventNotificationContext ctx, long nowMillis) {
+		lastSent.asMap().remove(AlertKey.of(ctx), nowMillis);
+	}
+
+	/**
+	 * Removes the counts of the given notification.
+	 *
+	 * @return the report for the next message of the notification or {@code null} if nothing was suppressed
+	 */
+	public Report takeReport(String notificationId) {
+		final AtomicLongArray counts = suppressed.remove(notificationId);
+		return counts == null ? null : new Report(counts);
+	}
+
+	/**
+	 * Adds the counts of a report whose message could not be sent back to the counts of the notification.
+	 */
+	public void restoreReport(String notificationId, Report report) {
+		final AtomicLongArray counts = suppressed.computeIfAbsent(notificationId, id -> new AtomicLongArray(REASONS.length));
+		for (int i = 0; i < REASONS.length; i++) {
+			counts.addAndGet(i, report.counts.get(i));
+		}
+	}
+
+	/**
+	 * The counts of suppressed events taken for one message.
+	 */
+	public static class Report {
+		private final AtomicLongArray counts;
+
+		private Report(AtomicLongArray counts) {
+			this.counts = counts;
+		}
+
+		/**
+		 * @return a line for the message
+		 */
+		public String text() {
+			long total = 0;
+			final StringBuilder details = new StringBuilder();
+			for (SuppressionReason reason : REASONS) {
+				final long count = counts.get(reason.ordinal());
+				if (count > 0) {
+					details.append(details.length() == 0 ? "" : ", ").append(count).append(' ').append(reason.description());
+					total += count;
+				}
+			}
+			return "_" + total + (total == 1 ? " event" : " events") + " suppressed since the last message (" + details + ")_";
+		}
+	}
+}
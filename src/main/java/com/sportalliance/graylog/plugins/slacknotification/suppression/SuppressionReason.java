@@ -0,0 +1,17 @@
+package com.sportalliance.graylog.plugins.slacknotification.suppression;
+
+enum SuppressionReason {
+	QUIET_HOURS("quiet hours"),
+	MAINTENANCE("maintenance"),
+	REPEATED("repeated");
+
+	private final String description;
+
+	SuppressionReason(String description) {
+		this.description = description;
+	}
+
+	String description() {
+		return description;
+	}
+}
@@ -0,0 +1,57 @@
+package com.sportalliance.graylog.plugins.slacknotification.suppression;
+
+import static com.google.common.base.Strings.nullToEmpty;
+
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+
+/**
+ * The quiet hours and maintenance windows of a notification, compiled once per config.
+ */
+public class SuppressionSchedule {
+
+	public static final SuppressionSchedule NONE = new SuppressionSchedule(QuietHours.NONE, MaintenanceWindows.NONE);
+
+	private final QuietHours quietHours;
+	private final MaintenanceWindows maintenanceWindows;
+
+	private SuppressionSchedule(QuietHours quietHours, MaintenanceWindows maintenanceWindows) {
+		this.quietHours = quietHours;
+		this.maintenanceWindows = maintenanceWindows;
+	}
+
+	/**
+	 * @throws IllegalArgumentException with a message for the user if the config is invalid
+	 */
+	public static SuppressionSchedule create(SlackEventNotificationConfig config) {
+		return new SuppressionSchedule(
+				QuietHours.parse(nullToEmpty(config.quietHours()), config.timeZone()),
+				MaintenanceWindows.parse(nullToEmpty(config.maintenanceWindows())));
+	}
+
+	/**
+	 * @throws IllegalArgumentException with a message for the user if the quiet hours are invalid
+	 */
+	public static void checkQuietHours(String quietHours) {
+		QuietHours.parse(nullToEmpty(quietHours), "UTC");
+	}
+
+	/**
+	 * @throws IllegalArgumentException with a message for the user if the maintenance windows are invalid
+	 */
+	public static void checkMaintenanceWindows(String maintenanceWindows) {
+		MaintenanceWindows.parse(nullToEmpty(maintenanceWindows));
+	}
+
+	/**
+	 * @return why an event at the given time is suppressed or {@code null} if it is not
+	 */
+	SuppressionReason reason(long epochMillis) {
+		if (maintenanceWindows.contains(epochMillis)) {
+			return SuppressionReason.MAINTENANCE;
+		}
+		if (quietHours.isQuiet(epochMillis)) {
+			return SuppressionReason.QUIET_HOURS;
+		}
+		return null;
+	}
+}
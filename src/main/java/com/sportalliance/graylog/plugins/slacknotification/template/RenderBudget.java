@@ -0,0 +1,122 @@
+package com.sportalliance.graylog.plugins.slacknotification.template;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.floreysoft.jmte.DefaultModelAdaptor;
+import com.floreysoft.jmte.ProcessListener;
+import com.floreysoft.jmte.TemplateContext;
+import com.floreysoft.jmte.token.StringToken;
+import com.floreysoft.jmte.token.Token;
+import com.sportalliance.graylog.plugins.slacknotification.format.Mrkdwn;
+
+/**
+ * Limits one template render. Once a limit is hit, loops end early and variables evaluate to nothing,
+ * so the rest of the template is skipped cheaply and the output rendered so far is kept.
+ * <p>
+ * Text values are escaped for mrkdwn if a receiver renders it, so only the template itself can
+ * contain links or other markup.
+ */
+class RenderBudget extends DefaultModelAdaptor implements ProcessListener {
+
+	private final long deadlineNanos;
+	private final int maxIterations;
+	private final int maxOutputLength;
+	private final boolean escapeMrkdwn;
+	private int iterations;
+	private int outputLength;
+	private String exceeded;
+
+	RenderBudget(long timeoutNanos, int maxIterations, int maxOutputLength, boolean escapeMrkdwn) {
+		this.deadlineNanos = System.nanoTime() + timeoutNanos;
+		this.maxIterations = maxIterations;
+		this.maxOutputLength = maxOutputLength;
+		this.escapeMrkdwn = escapeMrkdwn;
+	}
+
+	/**
+	 * @return the limit which was hit or {@code null} if the render stayed within its budget
+	 */
+	String exceeded() {
+		return exceeded;
+	}
+
+	int iterations() {
+		return iterations;
+	}
+
+	private boolean isExhausted() {
+		if (exceeded == null && System.nanoTime() > deadlineNanos) {
+			exceeded = "time limit";
+		}
+		return exceeded != null;
+	}
+
+	@Override
+	public Object getValue(TemplateContext context, Token token, List<String> segments, String expression) {
+		if (isExhausted()) {
+			return null;
+		}
+		final Object value = super.getValue(context, token, segments, expression);
+		if (!(value instanceof String)) {
+			return value;
+		}
+		final String text = escapeMrkdwn ? Mrkdwn.escape((String) value) : (String) value;
+		return token instanceof StringToken ? limitOutput(text) : text;
+	}
+
+	/**
+	 * Counts the length of variables written to the output and cuts off the one exceeding the limit,
+	 * so a huge value is never copied into the output as a whole.
+	 */
+	private String limitOutput(String text) {
+		final int remaining = maxOutputLength - outputLength;
+		if (text.length() <= remaining) {
+			outputLength += text.length();
+			return text;
+		}
+		exceeded = "output limit";
+		outputLength = maxOutputLength;
+		// Do not split a surrogate pair
+		final int end = remaining > 0 && Character.isHighSurrogate(text.charAt(remaining - 1)) ? remaining - 1 : remaining;
+		return text.substring(0, Math.max(0, end));
+	}
+
+	@Override
+	public Iterable<Object> getIterable(Object value) {
+		final Iterable<Object> iterable = super.getIterable(value);
+		return () -> new BudgetIterator(iterable.iterator());
+	}
+
+	@Override
+	public void log(TemplateContext context, Token token, Action action) {
+		// Catches templates which spend their time on tokens without variables
+		isExhausted();
+	}
+
+	private class BudgetIterator implements Iterator<Object> {
+		private final Iterator<Object> delegate;
+
+		BudgetIterator(Iterator<Object> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (iterations >= maxIterations && exceeded == null && delegate.hasNext()) {
+				exceeded = "iteration limit";
+			}
+			return !isExhausted() && delegate.hasNext();
+		}
+
+		@Override
+		public Object next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			iterations++;
+			return delegate.next();
+		}
+	}
+}
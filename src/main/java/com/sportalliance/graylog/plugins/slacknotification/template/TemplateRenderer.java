@@ -0,0 +1,97 @@
+package com.sportalliance.graylog.plugins.slacknotification.template;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.floreysoft.jmte.template.Template;
+import com.github.joschi.jadconfig.util.Duration;
+import com.sportalliance.graylog.plugins.slacknotification.SlackNotificationPluginConfiguration;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeCache;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeState;
+
+/**
+ * Renders user templates within the node-wide limits for time, loop iterations and output length.
+ * <p>
+ * Render time, iterations and output length are recorded per notification and template, e.g.
+ * {@code ...TemplateRenderer.<notification ID>.custom_message.render-time}, to find expensive templates.
+ * They are removed along with the cached state of the notification, so they start over when the
+ * notification changes and do not outlive deleted notifications or test renders.
+ */
+@Singleton
+public class TemplateRenderer implements SlackRuntimeCache.RemovalListener {
+
+	private static final Logger LOG = LoggerFactory.getLogger(TemplateRenderer.class);
+
+	private final int maxOutputLength;
+	private final int maxIterations;
+	private final long timeoutNanos;
+	private final MetricRegistry metricRegistry;
+
+	@Inject
+	public TemplateRenderer(@Named(SlackNotificationPluginConfiguration.TEMPLATE_MAX_OUTPUT_LENGTH) int maxOutputLength,
+							@Named(SlackNotificationPluginConfiguration.TEMPLATE_MAX_ITERATIONS) int maxIterations,
+							@Named(SlackNotificationPluginConfiguration.TEMPLATE_RENDER_TIMEOUT) Duration timeout,
+							MetricRegistry metricRegistry) {
+		this.maxOutputLength = maxOutputLength;
+		this.maxIterations = maxIterations;
+		this.timeoutNanos = timeout.toNanoseconds();
+		this.metricRegistry = metricRegistry;
+	}
+
+	/**
+	 * @param templateName the config field of the template, e.g. {@code custom_message}
+	 * @param escapeMrkdwn whether text values are escaped for Slack mrkdwn
+	 * @return the rendered text, cut off with a marker if a limit was hit, or the exception if rendering failed
+	 */
+	public String render(Template template, Map<String, Object> model, String notificationId, String templateName,
+						 boolean escapeMrkdwn) {
+		final RenderBudget budget = new RenderBudget(timeoutNanos, maxIterations, maxOutputLength, escapeMrkdwn);
+		final Timer.Context renderTime = metricRegistry.timer(name(TemplateRenderer.class, notificationId, templateName, "render-time")).time();
+		String output;
+		try {
+			output = template.transform(model, Locale.getDefault(), budget, budget);
+		} catch (Exception e) {
+			LOG.error("Exception during templating", e);
+			return e.toString();
+		} finally {
+			renderTime.stop();
+		}
+
+		metricRegistry.histogram(name(TemplateRenderer.class, notificationId, templateName, "iterations")).update(budget.iterations());
+		metricRegistry.histogram(name(TemplateRenderer.class, notificationId, templateName, "output-length")).update(output.length());
+
+		String exceeded = budget.exceeded();
+		// Variables are limited while rendering, the text of the template itself only here
+		if (output.length() > maxOutputLength) {
+			// Do not split a surrogate pair
+			final int end = Character.isHighSurrogate(output.charAt(maxOutputLength - 1)) ? maxOutputLength - 1 : maxOutputLength;
+			output = output.substring(0, end);
+			exceeded = exceeded == null ? "output limit" : exceeded;
+		}
+		if (exceeded == null) {
+			return output;
+		}
+
+		metricRegistry.meter(name(TemplateRenderer.class, notificationId, templateName, "truncated")).mark();
+		LOG.debug("Template {} of notification <{}> was cut off at its {}.", templateName, notificationId, exceeded);
+		return output + "\n_… cut off at the template " + exceeded + "_";
+	}
+
+	@Override
+	public void removed(String notificationId, SlackRuntimeState removed, Collection<SlackRuntimeState> cached) {
+		final String prefix = name(TemplateRenderer.class, notificationId) + ".";
+		metricRegistry.removeMatching((metricName, metric) -> metricName.startsWith(prefix));
+	}
+}
@@ -0,0 +1,154 @@
+package com.sportalliance.graylog.plugins.slacknotification.upload;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageSummary;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotification;
+
+/**
+ * File formats of an uploaded backlog, written one backlog item at a time.
+ * <p>
+ * If backlog fields are configured, the rows consist of exactly these fields. Otherwise they consist
+ * of timestamp, source and message followed by all other fields of the message, as one JSON column
+ * in CSV files.
+ */
+public enum BacklogFileFormat {
+
+	CSV("csv", "csv") {
+		@Override
+		void writeHeader(Writer out, List<String> fields) throws IOException {
+			final List<String> columns = fields.isEmpty() ? DEFAULT_CSV_COLUMNS : fields;
+			for (int i = 0; i < columns.size(); i++) {
+				if (i > 0) {
+					out.write(',');
+				}
+				writeCsvValue(out, columns.get(i));
+			}
+			out.write("\r\n");
+		}
+
+		@Override
+		void writeRow(Writer out, MessageSummary item, List<String> fields) throws IOException {
+			if (fields.isEmpty()) {
+				writeCsvValue(out, String.valueOf(item.getTimestamp()));
+				out.write(',');
+				writeCsvValue(out, item.getSource());
+				out.write(',');
+				writeCsvValue(out, item.getMessage());
+				out.write(',');
+				writeCsvValue(out, MAPPER.writeValueAsString(item.getFields()));
+			} else {
+				final Map<String, Object> itemFields = item.getFields();
+				for (int i = 0; i < fields.size(); i++) {
+					if (i > 0) {
+						out.write(',');
+					}
+					final Object value = SlackEventNotification.fieldValue(item, itemFields, fields.get(i));
+					if (value != null) {
+						writeCsvValue(out, String.valueOf(value));
+					}
+				}
+			}
+			out.write("\r\n");
+		}
+	},
+
+	NDJSON("ndjson", "text") {
+		@Override
+		void writeHeader(Writer out, List<String> fields) {
+			// Every line describes itself
+		}
+
+		@Override
+		void writeRow(Writer out, MessageSummary item, List<String> fields) throws IOException {
+			final Map<String, Object> itemFields = item.getFields();
+			final Map<String, Object> row = new LinkedHashMap<>();
+			if (fields.isEmpty()) {
+				row.put(Message.FIELD_TIMESTAMP, String.valueOf(item.getTimestamp()));
+				row.put(Message.FIELD_SOURCE, item.getSource());
+				row.put(Message.FIELD_MESSAGE, item.getMessage());
+				row.putAll(itemFields);
+			} else {
+				for (String field : fields) {
+					final Object value = SlackEventNotification.fieldValue(item, itemFields, field);
+					row.put(field, value == null ? null : String.valueOf(value));
+				}
+			}
+			MAPPER.writeValue(out, row);
+			out.write('\n');
+		}
+	};
+
+	private static final List<String> DEFAULT_CSV_COLUMNS = Arrays.asList(
+			Message.FIELD_TIMESTAMP, Message.FIELD_SOURCE, Message.FIELD_MESSAGE, "fields");
+
+	// The writer belongs to the upload, rows must neither close nor flush it
+	private static final ObjectMapper MAPPER = new ObjectMapper()
+			.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+			.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+
+	private final String extension;
+	private final String slackFileType;
+
+	BacklogFileFormat(String extension, String slackFileType) {
+		this.extension = extension;
+		this.slackFileType = slackFileType;
+	}
+
+	public String extension() {
+		return extension;
+	}
+
+	/**
+	 * @return the file type Slack uses to preview the file
+	 */
+	public String slackFileType() {
+		return slackFileType;
+	}
+
+	abstract void writeHeader(Writer out, List<String> fields) throws IOException;
+
+	abstract void writeRow(Writer out, MessageSummary item, List<String> fields) throws IOException;
+
+	public static BacklogFileFormat forName(String name) {
+		for (BacklogFileFormat format : values()) {
+			if (format.extension.equals(name)) {
+				return format;
+			}
+		}
+		throw new IllegalArgumentException("Unknown backlog file format <" + name + ">");
+	}
+
+	private static void writeCsvValue(Writer out, String value) throws IOException {
+		if (value == null) {
+			return;
+		}
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			final char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+		}
+		if (!quote) {
+			out.write(value);
+			return;
+		}
+		out.write('"');
+		int start = 0;
+		for (int i = value.indexOf('"'); i >= 0; i = value.indexOf('"', start)) {
+			out.write(value, start, i + 1 - start);
+			out.write('"');
+			start = i + 1;
+		}
+		out.write(value, start, value.length() - start);
+		out.write('"');
+	}
+}
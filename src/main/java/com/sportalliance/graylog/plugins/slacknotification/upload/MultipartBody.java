@@ -0,0 +1,101 @@
+package com.sportalliance.graylog.plugins.slacknotification.upload;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.graylog2.plugin.MessageSummary;
+
+import com.sportalliance.graylog.plugins.slacknotification.SlackTransport;
+
+/**
+ * A multipart/form-data body of form fields and one backlog file, as expected by the Slack Web API
+ * method files.upload.
+ * <p>
+ * The file is written item by item from the backlog iterator while the request is sent, so neither
+ * the file nor the body exist as a whole in memory. The body can only be written once.
+ */
+public class MultipartBody implements SlackTransport.BodyWriter {
+
+	private static final String CRLF = "\r\n";
+	private static final int BUFFER_SIZE = 8192;
+
+	private final String boundary = "----graylog-slack-" + UUID.randomUUID().toString().replace("-", "");
+	private final Map<String, String> fields = new LinkedHashMap<>();
+	private final String fileField;
+	private final String fileName;
+	private final BacklogFileFormat format;
+	private final List<String> columns;
+	private final Iterator<MessageSummary> backlog;
+	private int rows;
+
+	/**
+	 * @param fileField name of the form field of the file
+	 * @param fileName  file name shown in Slack
+	 * @param format    format of the file
+	 * @param columns   message fields written per backlog item, empty for all fields
+	 * @param backlog   the items written as rows of the file
+	 */
+	public MultipartBody(String fileField, String fileName, BacklogFileFormat format, List<String> columns,
+						 Iterator<MessageSummary> backlog) {
+		this.fileField = fileField;
+		this.fileName = fileName;
+		this.format = format;
+		this.columns = columns;
+		this.backlog = backlog;
+	}
+
+	/**
+	 * Adds a form field, written before the file.
+	 */
+	public MultipartBody field(String name, String value) {
+		fields.put(name, value);
+		return this;
+	}
+
+	public String contentType() {
+		return "multipart/form-data; boundary=" + boundary;
+	}
+
+	/**
+	 * @return the number of backlog items written so far
+	 */
+	public int rows() {
+		return rows;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		// Not closed, the stream belongs to the transport
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+		for (Map.Entry<String, String> field : fields.entrySet()) {
+			writer.write("--" + boundary + CRLF);
+			writer.write("Content-Disposition: form-data; name=\"" + quote(field.getKey()) + "\"" + CRLF + CRLF);
+			writer.write(field.getValue());
+			writer.write(CRLF);
+		}
+
+		writer.write("--" + boundary + CRLF);
+		writer.write("Content-Disposition: form-data; name=\"" + quote(fileField) + "\"; filename=\"" + quote(fileName) + "\"" + CRLF);
+		writer.write("Content-Type: application/octet-stream" + CRLF + CRLF);
+		format.writeHeader(writer, columns);
+		while (backlog.hasNext()) {
+			format.writeRow(writer, backlog.next(), columns);
+			rows++;
+		}
+		writer.write(CRLF + "--" + boundary + "--" + CRLF);
+		writer.flush();
+	}
+
+	private static String quote(String value) {
+		return value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A");
+	}
+}
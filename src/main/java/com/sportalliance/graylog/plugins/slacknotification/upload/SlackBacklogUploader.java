@@ -0,0 +1,86 @@
+package com.sportalliance.graylog.plugins.slacknotification.upload;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.graylog.events.notifications.EventNotificationContext;
+import org.graylog2.plugin.MessageSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sportalliance.graylog.plugins.slacknotification.DeliveryTarget;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackResponse;
+import com.sportalliance.graylog.plugins.slacknotification.SlackRuntimeState;
+import com.sportalliance.graylog.plugins.slacknotification.SlackSendGuard;
+import com.sportalliance.graylog.plugins.slacknotification.audit.DeliveryAuditLog;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+
+/**
+ * Uploads the backlog of an event as a file to the channel of the notification via the Slack Web
+ * API method files.upload, so the message itself only needs to reference it.
+ */
+@Singleton
+public class SlackBacklogUploader {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SlackBacklogUploader.class);
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final SlackSendGuard sendGuard;
+	private final DeliveryAuditLog auditLog;
+
+	@Inject
+	public SlackBacklogUploader(SlackSendGuard sendGuard, DeliveryAuditLog auditLog) {
+		this.sendGuard = sendGuard;
+		this.auditLog = auditLog;
+	}
+
+	/**
+	 * @return the permalink of the uploaded file
+	 */
+	public String upload(EventNotificationContext ctx, SlackRuntimeState state, List<MessageSummary> backlog) throws SlackClientException {
+		final SlackEventNotificationConfig config = state.config();
+		final BacklogFileFormat format = BacklogFileFormat.forName(config.backlogUpload());
+		final MultipartBody body = body(config.channel(), "backlog-" + ctx.event().id() + "." + format.extension(), format,
+				state.backlogFields(), backlog);
+		final DeliveryTarget target = state.uploadTarget();
+		final SlackResponse response = sendGuard.execute(target.webhookUrl(), ctx.event().priority(),
+				() -> auditLog.upload(ctx.notificationId(), ctx.event().id(), target, body.contentType(), body));
+		LOG.debug("Uploaded backlog of {} messages for notification <{}>.", body.rows(), ctx.notificationId());
+		return permalink(response);
+	}
+
+	/**
+	 * Builds the files.upload request body for the given backlog.
+	 */
+	public static MultipartBody body(String channel, String fileName, BacklogFileFormat format,
+									 List<String> columns, List<MessageSummary> backlog) {
+		return new MultipartBody("file", fileName, format, columns, backlog.iterator())
+				.field("channels", channel)
+				.field("filename", fileName)
+				.field("filetype", format.slackFileType())
+				.field("title", fileName);
+	}
+
+	/**
+	 * Reads the permalink of the uploaded file from a files.upload response.
+	 */
+	public static String permalink(SlackResponse response) throws SlackClientException {
+		final JsonNode body;
+		try {
+			body = MAPPER.readTree(response.body());
+		} catch (IOException e) {
+			throw new SlackClientException("Could not parse Slack Web API response", e);
+		}
+		if (!body.path("ok").asBoolean()) {
+			throw new SlackClientException("Slack Web API error " + body.path("error").asText(),
+					response.statusCode(), response.body());
+		}
+		return body.path("file").path("permalink").asText();
+	}
+}
@@ -0,0 +1,88 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class PriorityPermitsTest {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final List<String> granted = new CopyOnWriteArrayList<>();
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void servesHigherPriorityFirst() throws Exception {
+		final PriorityPermits permits = new PriorityPermits(1, TimeUnit.MINUTES.toNanos(1));
+		assertTrue(permits.tryAcquire());
+
+		final Future<?> low = waitFor(permits, 1, "low");
+		final Future<?> normal = waitFor(permits, 2, "normal");
+		final Future<?> high = waitFor(permits, 3, "high");
+		permits.release();
+		low.get(10, TimeUnit.SECONDS);
+		normal.get(10, TimeUnit.SECONDS);
+		high.get(10, TimeUnit.SECONDS);
+
+		assertEquals(Arrays.asList("high", "normal", "low"), granted);
+	}
+
+	@Test
+	public void servesAgedLowerPriorityFirst() throws Exception {
+		final PriorityPermits permits = new PriorityPermits(1, TimeUnit.MILLISECONDS.toNanos(10));
+		assertTrue(permits.tryAcquire());
+
+		final Future<?> low = waitFor(permits, 1, "low");
+		// Two aging intervals make up for the two priority levels, waiting longer puts it ahead
+		Thread.sleep(100);
+		final Future<?> high = waitFor(permits, 3, "high");
+		permits.release();
+		low.get(10, TimeUnit.SECONDS);
+		high.get(10, TimeUnit.SECONDS);
+
+		assertEquals(Arrays.asList("low", "high"), granted);
+	}
+
+	@Test
+	public void timedOutWaiterLeavesQueue() throws Exception {
+		final PriorityPermits permits = new PriorityPermits(1, TimeUnit.MINUTES.toNanos(1));
+		assertTrue(permits.tryAcquire());
+
+		assertFalse(permits.tryAcquire(3, 10, TimeUnit.MILLISECONDS));
+		assertEquals(0, permits.waiting());
+		permits.release();
+		assertTrue(permits.tryAcquire());
+	}
+
+	/**
+	 * Waits for a permit in the background, records it as granted and releases it again. Returns once
+	 * the waiter is queued.
+	 */
+	private Future<?> waitFor(PriorityPermits permits, int priority, String name) throws InterruptedException {
+		final int queued = permits.waiting();
+		final Future<?> waiter = executor.submit(() -> {
+			assertTrue(permits.tryAcquire(priority, 10, TimeUnit.SECONDS));
+			granted.add(name);
+			permits.release();
+			return null;
+		});
+		while (permits.waiting() == queued) {
+			Thread.sleep(1);
+		}
+		return waiter;
+	}
+}
@@ -0,0 +1,62 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import static com.sportalliance.graylog.plugins.slacknotification.PriorityRateLimiter.PRIORITY_HIGH;
+import static com.sportalliance.graylog.plugins.slacknotification.PriorityRateLimiter.PRIORITY_LOW;
+import static com.sportalliance.graylog.plugins.slacknotification.PriorityRateLimiter.PRIORITY_NORMAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PriorityRateLimiterTest {
+
+	private static final double DELTA = 1e-9;
+
+	@Test
+	public void splitsRateByShares() {
+		final PriorityRateLimiter rateLimiter = new PriorityRateLimiter(100, 10, 30, 60);
+
+		assertEquals(10, rateLimiter.rate(PRIORITY_LOW), DELTA);
+		assertEquals(30, rateLimiter.rate(PRIORITY_NORMAL), DELTA);
+		assertEquals(60, rateLimiter.rate(PRIORITY_HIGH), DELTA);
+	}
+
+	@Test
+	public void keepsMinimalRatePerPriority() {
+		final PriorityRateLimiter rateLimiter = new PriorityRateLimiter(1, 1, 1, 10000);
+
+		assertEquals(0.01, rateLimiter.rate(PRIORITY_LOW), DELTA);
+		assertEquals(0.01, rateLimiter.rate(PRIORITY_NORMAL), DELTA);
+	}
+
+	@Test
+	public void exhaustedShareDoesNotLimitOtherPriorities() {
+		final PriorityRateLimiter rateLimiter = new PriorityRateLimiter(1, 1, 1, 1);
+
+		assertTrue(rateLimiter.tryAcquire(PRIORITY_LOW, 0, TimeUnit.MILLISECONDS));
+		assertFalse(rateLimiter.tryAcquire(PRIORITY_LOW, 0, TimeUnit.MILLISECONDS));
+		assertTrue(rateLimiter.tryAcquire(PRIORITY_HIGH, 0, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void disabledWithoutRate() {
+		final PriorityRateLimiter rateLimiter = new PriorityRateLimiter(0, 10, 30, 60);
+
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(rateLimiter.tryAcquire(PRIORITY_LOW, 0, TimeUnit.MILLISECONDS));
+		}
+		assertEquals(0, rateLimiter.rate(PRIORITY_LOW), DELTA);
+	}
+
+	@Test
+	public void normalizesEventPriorities() {
+		assertEquals(PRIORITY_LOW, PriorityRateLimiter.normalize(0));
+		assertEquals(PRIORITY_LOW, PriorityRateLimiter.normalize(1));
+		assertEquals(PRIORITY_NORMAL, PriorityRateLimiter.normalize(2));
+		assertEquals(PRIORITY_HIGH, PriorityRateLimiter.normalize(3));
+		assertEquals(PRIORITY_HIGH, PriorityRateLimiter.normalize(4));
+	}
+}
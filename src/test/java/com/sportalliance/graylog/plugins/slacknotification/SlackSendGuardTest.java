@@ -0,0 +1,156 @@
+package com.sportalliance.graylog.plugins.slacknotification;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.floreysoft.jmte.Engine;
+import com.github.joschi.jadconfig.util.Duration;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.config.SlackEventNotificationConfig;
+
+public class SlackSendGuardTest {
+
+	private static final String WEBHOOK_URL = "https://hooks.slack.com/services/T000/B000/XXXX";
+
+	private final MetricRegistry metricRegistry = new MetricRegistry();
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void keepsPerWebhookLimitWhileItsPermitsAreDropped() throws Exception {
+		final SlackSendGuard sendGuard = sendGuard(8, 2, 0, Duration.minutes(1));
+		final SlackRuntimeState removed = state();
+		final AtomicInteger concurrent = new AtomicInteger();
+		final AtomicInteger maxConcurrent = new AtomicInteger();
+		final AtomicBoolean sending = new AtomicBoolean(true);
+
+		final Future<?> removals = executor.submit(() -> {
+			while (sending.get()) {
+				sendGuard.removed("notification", removed, Collections.emptyList());
+			}
+		});
+		final List<Future<?>> senders = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			senders.add(executor.submit(() -> {
+				for (int i = 0; i < 200; i++) {
+					sendGuard.execute(WEBHOOK_URL, 2, () -> {
+						maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+						Thread.yield();
+						return concurrent.decrementAndGet();
+					});
+				}
+				return null;
+			}));
+		}
+		for (Future<?> sender : senders) {
+			sender.get(1, TimeUnit.MINUTES);
+		}
+		sending.set(false);
+		removals.get(1, TimeUnit.MINUTES);
+
+		assertTrue(maxConcurrent.get() + " concurrent sends to one webhook", maxConcurrent.get() <= 2);
+	}
+
+	@Test
+	public void dropsPermitsOfRemovedWebhookWithItsLastSend() throws Exception {
+		final SlackSendGuard sendGuard = sendGuard(8, 2, 0, Duration.minutes(1));
+		final CountDownLatch sent = new CountDownLatch(1);
+		final CountDownLatch finish = new CountDownLatch(1);
+		final Future<String> send = executor.submit(() -> sendGuard.execute(WEBHOOK_URL, 2, () -> {
+			sent.countDown();
+			await(finish);
+			return "sent";
+		}));
+		assertTrue(sent.await(10, TimeUnit.SECONDS));
+
+		sendGuard.removed("notification", state(), Collections.emptyList());
+		assertEquals("Permits in use were dropped", 1, webhookCount());
+
+		finish.countDown();
+		assertEquals("sent", send.get(10, TimeUnit.SECONDS));
+		assertEquals("Permits were kept after the last send", 0, webhookCount());
+	}
+
+	@Test
+	public void rejectedSendDoesNotUseRateShare() throws Exception {
+		// One send per 3 seconds and priority, far beyond the wait timeout
+		final SlackSendGuard sendGuard = sendGuard(1, 1, 1, Duration.milliseconds(100));
+		final CountDownLatch sent = new CountDownLatch(1);
+		final CountDownLatch finish = new CountDownLatch(1);
+		final Future<String> lowPrioritySend = executor.submit(() -> sendGuard.execute(WEBHOOK_URL, 1, () -> {
+			sent.countDown();
+			await(finish);
+			return "sent";
+		}));
+		assertTrue(sent.await(10, TimeUnit.SECONDS));
+
+		try {
+			sendGuard.execute(WEBHOOK_URL, 3, () -> "sent");
+			fail("Send without a free permit was not rejected");
+		} catch (SlackClientException e) {
+			// expected
+		}
+		finish.countDown();
+		lowPrioritySend.get(10, TimeUnit.SECONDS);
+
+		assertEquals("sent", sendGuard.execute(WEBHOOK_URL, 3, () -> "sent"));
+		assertEquals(0, sendGuard.inFlight());
+		assertEquals(0, sendGuard.waiting());
+	}
+
+	private SlackSendGuard sendGuard(int maxConcurrentSends, int maxConcurrentSendsPerWebhook, double maxSendsPerSecond,
+									 Duration sendWaitTimeout) {
+		return new SlackSendGuard(maxConcurrentSends, maxConcurrentSendsPerWebhook, sendWaitTimeout,
+				Duration.milliseconds(10), maxSendsPerSecond, 1, 1, 1, metricRegistry);
+	}
+
+	private int webhookCount() {
+		return (Integer) metricRegistry.getGauges().get(name(SlackSendGuard.class, "webhooks")).getValue();
+	}
+
+	private static SlackRuntimeState state() {
+		return new SlackRuntimeState(SlackEventNotificationConfig.builder()
+				.color("#FF0000")
+				.webhookUrl(WEBHOOK_URL)
+				.channel("#test")
+				.customMessage("")
+				.backlogItemMessage("")
+				.userName("Graylog")
+				.notifyChannel(false)
+				.linkNames(false)
+				.iconUrl("")
+				.iconEmoji("")
+				.graylogUrl("")
+				.proxy("")
+				.build(), new Engine(), UrlConnectionTransport.INSTANCE);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.sportalliance.graylog.plugins.slacknotification.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.joschi.jadconfig.util.Size;
+import com.sportalliance.graylog.plugins.slacknotification.DeliveryTarget;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient;
+import com.sportalliance.graylog.plugins.slacknotification.SlackClient.SlackClientException;
+import com.sportalliance.graylog.plugins.slacknotification.SlackTimings;
+import com.sportalliance.graylog.plugins.slacknotification.format.PayloadFormat;
+
+public class DeliveryAuditLogTest {
+
+	@Rule
+	public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void readsAppendedRecordsBackFromFile() throws Exception {
+		final Path spoolDir = temporaryFolder.getRoot().toPath();
+		final DeliveryAuditLog auditLog = new DeliveryAuditLog(spoolDir, 1, Size.megabytes(10), 5);
+		final List<DeliveryRecord> records = Arrays.asList(
+				record(1000, "event-1").httpStatus(200).response("ok").build(),
+				record(2000, "event-2").httpStatus(-1).retries(2).response("java.net.ConnectException").build(),
+				record(3000, "event-3").httpStatus(429).response("rate_limited").build());
+		records.forEach(auditLog::append);
+
+		// Only the newest record is in memory, the others have to be read from the file
+		assertEquals(Arrays.asList(records.get(2), records.get(1), records.get(0)), auditLog.find(null, 0, Long.MAX_VALUE, 10));
+		assertEquals(records.subList(1, 2), auditLog.find("event-2", 0, Long.MAX_VALUE, 10));
+		assertEquals(records.subList(0, 2), reverse(auditLog.find(null, 1000, 3000, 10)));
+
+		auditLog.close();
+		final DeliveryAuditLog reopened = new DeliveryAuditLog(spoolDir, 1, Size.megabytes(10), 5);
+		assertEquals(Arrays.asList(records.get(2), records.get(1), records.get(0)), reopened.find(null, 0, Long.MAX_VALUE, 10));
+	}
+
+	@Test
+	public void rotatesAndKeepsLatestFiles() throws Exception {
+		final Path spoolDir = temporaryFolder.getRoot().toPath();
+		final DeliveryAuditLog auditLog = new DeliveryAuditLog(spoolDir, 1, Size.bytes(200), 3);
+		for (int i = 0; i < 50; i++) {
+			auditLog.append(record(i, "event-" + i).httpStatus(200).response("ok").build());
+		}
+
+		final List<DeliveryRecord> found = auditLog.find(null, 0, Long.MAX_VALUE, 100);
+		assertTrue(Files.exists(spoolDir.resolve("audit/deliveries.2")));
+		assertFalse(Files.exists(spoolDir.resolve("audit/deliveries.3")));
+		assertTrue(found.size() + " records were kept", found.size() > 3 && found.size() < 50);
+		for (int i = 0; i < found.size(); i++) {
+			assertEquals(49 - i, found.get(i).timestamp());
+		}
+	}
+
+	@Test
+	public void skipsCorruptRecords() throws Exception {
+		final Path spoolDir = temporaryFolder.getRoot().toPath();
+		final DeliveryAuditLog auditLog = new DeliveryAuditLog(spoolDir, 1, Size.megabytes(10), 5);
+		for (int i = 1; i <= 3; i++) {
+			auditLog.append(record(i, "event-" + i).httpStatus(200).response("ok").build());
+		}
+		auditLog.close();
+
+		// Damages the length of the notification ID of the second record, after its timestamp
+		final Path file = spoolDir.resolve("audit/deliveries.0");
+		final byte[] bytes = Files.readAllBytes(file);
+		final int header = Integer.BYTES + 1;
+		final int second = header + Integer.BYTES + ByteBuffer.wrap(bytes, header, Integer.BYTES).getInt();
+		bytes[second + Integer.BYTES + Long.BYTES] = (byte) 0xff;
+		bytes[second + Integer.BYTES + Long.BYTES + 1] = (byte) 0xff;
+		Files.write(file, bytes);
+
+		final List<DeliveryRecord> found = new DeliveryAuditLog(spoolDir, 1, Size.megabytes(10), 5)
+				.find(null, 0, Long.MAX_VALUE, 10);
+		assertEquals(2, found.size());
+		assertEquals("event-3", found.get(0).eventId());
+		assertEquals("event-1", found.get(1).eventId());
+	}
+
+	@Test
+	public void stopsAtRecordWithInvalidLength() throws Exception {
+		final Path spoolDir = temporaryFolder.getRoot().toPath();
+		final DeliveryAuditLog auditLog = new DeliveryAuditLog(spoolDir, 1, Size.megabytes(10), 5);
+		auditLog.append(record(1, "event-1").httpStatus(200).response("ok").build());
+		auditLog.close();
+		Files.write(spoolDir.resolve("audit/deliveries.0"), new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff},
+				StandardOpenOption.APPEND);
+
+		final List<DeliveryRecord> found = new DeliveryAuditLog(spoolDir, 1, Size.megabytes(10), 5)
+				.find(null, 0, Long.MAX_VALUE, 10);
+		assertEquals(1, found.size());
+		assertEquals("event-1", found.get(0).eventId());
+	}
+
+	@Test
+	public void countsFailedAttemptsAsRetries() throws Exception {
+		final DeliveryAuditLog auditLog = new DeliveryAuditLog(temporaryFolder.getRoot().toPath(), 10, Size.megabytes(10), 5);
+		// Nothing listens on port 1, so every attempt fails
+		final String url = "http://127.0.0.1:1/hook";
+		final DeliveryTarget target = new DeliveryTarget(url, PayloadFormat.forName(PayloadFormat.GENERIC),
+				new SlackClient(url, "", 0));
+		final byte[] payload = "{}".getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < 3; i++) {
+			try {
+				auditLog.send("notification", "event", target, payload, new SlackTimings());
+				fail("Send to a closed port succeeded");
+			} catch (SlackClientException e) {
+				// expected
+			}
+		}
+
+		final List<DeliveryRecord> found = auditLog.find("event", 0, Long.MAX_VALUE, 10);
+		assertEquals(3, found.size());
+		assertEquals(2, found.get(0).retries());
+		assertEquals(1, found.get(1).retries());
+		assertEquals(0, found.get(2).retries());
+		assertEquals(-1, found.get(0).httpStatus());
+	}
+
+	private static DeliveryRecord.Builder record(long timestamp, String eventId) {
+		return DeliveryRecord.builder()
+				.timestamp(timestamp)
+				.notificationId("notification")
+				.eventId(eventId)
+				.webhookHash(DeliveryAuditLog.hashWebhook("https://hooks.slack.com/services/T000/B000/XXXX"))
+				.latencyMillis(42)
+				.payloadSize(128);
+	}
+
+	private static <T> List<T> reverse(List<T> list) {
+		final List<T> reversed = new ArrayList<>(list);
+		Collections.reverse(reversed);
+		return reversed;
+	}
+}
@@ -0,0 +1,70 @@
+package com.sportalliance.graylog.plugins.slacknotification.format;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class MrkdwnTest {
+
+	private static final String URL = "https://graylog.example.org/search?q=a|b&c=<d>";
+
+	@Test
+	public void escapesControlCharacters() {
+		assertEquals("a &lt; b &amp; c &gt; d", Mrkdwn.escape("a < b & c > d"));
+		assertEquals("&amp;&amp;", Mrkdwn.escape("&&"));
+		assertEquals("*bold* _italic_ a|b", Mrkdwn.escape("*bold* _italic_ a|b"));
+	}
+
+	@Test
+	public void returnsTextWithoutControlCharactersAsItIs() {
+		final String text = "nothing to escape";
+
+		assertSame(text, Mrkdwn.escape(text));
+		assertSame(text, Mrkdwn.unescape(text));
+	}
+
+	@Test
+	public void appendsEscapedText() {
+		final StringBuilder out = new StringBuilder("<!channel> ");
+
+		assertEquals("<!channel> 1 &lt; 2", Mrkdwn.appendEscaped(out, "1 < 2").toString());
+	}
+
+	@Test
+	public void unescapesEscapedText() {
+		for (String text : new String[]{"a < b & c > d", "&lt; is escaped as &amp;lt;", "&amp;", ""}) {
+			assertEquals(text, Mrkdwn.unescape(Mrkdwn.escape(text)));
+		}
+	}
+
+	@Test
+	public void appendsLinkWithEscapedUrlAndLabel() {
+		final StringBuilder out = new StringBuilder("See ");
+
+		assertEquals("See <https://graylog.example.org/search?q=a%7Cb&amp;c=&lt;d&gt;|A|B &lt;C&gt;>",
+				Mrkdwn.appendLink(out, URL, "A|B <C>").toString());
+		assertEquals("<https://graylog.example.org|Graylog>", Mrkdwn.link("https://graylog.example.org", "Graylog"));
+	}
+
+	@Test
+	public void convertsLinksToPlainText() {
+		final String mrkdwn = "See " + Mrkdwn.link(URL, "A|B <C>") + " &amp; " + Mrkdwn.link("https://graylog.example.org", "Graylog");
+
+		assertEquals("See A|B <C> (https://graylog.example.org/search?q=a%7Cb&c=<d>) & Graylog (https://graylog.example.org)",
+				Mrkdwn.toPlainText(mrkdwn));
+	}
+
+	@Test
+	public void convertsLinksToMarkdown() {
+		final String mrkdwn = "See " + Mrkdwn.link("https://graylog.example.org", "Graylog &") + " or 1 &lt; 2";
+
+		assertEquals("See [Graylog &](https://graylog.example.org) or 1 < 2", Mrkdwn.toMarkdown(mrkdwn));
+	}
+
+	@Test
+	public void keepsSpecialMentionsInPlainText() {
+		// Not a link of #appendLink, so it is not rewritten
+		assertEquals("<!channel> alert", Mrkdwn.toPlainText("<!channel> alert"));
+	}
+}
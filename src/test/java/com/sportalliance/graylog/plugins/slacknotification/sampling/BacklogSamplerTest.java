@@ -0,0 +1,146 @@
+package com.sportalliance.graylog.plugins.slacknotification.sampling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageSummary;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+public class BacklogSamplerTest {
+
+	private static final String FIELD = "level";
+
+	@Test
+	public void reservoirKeepsBacklogOrderWithoutDuplicates() {
+		final List<MessageSummary> backlog = backlog(1000);
+		for (List<MessageSummary> list : Arrays.asList(backlog, new LinkedList<>(backlog))) {
+			final BacklogSample sample = BacklogSampler.sample(list, SamplingStrategy.RESERVOIR, 10, null);
+
+			assertEquals(10, sample.items().size());
+			int last = -1;
+			for (MessageSummary item : sample.items()) {
+				final int index = backlog.indexOf(item);
+				assertTrue(index > last);
+				last = index;
+			}
+			assertNull(sample.note(0));
+			assertEquals("_Random sample of 10 of 1000 backlog messages_\n", sample.summary());
+		}
+	}
+
+	@Test
+	public void reservoirChoosesItemsUniformly() {
+		final List<MessageSummary> backlog = backlog(100);
+		final int[] chosen = new int[backlog.size()];
+		final int runs = 2000;
+		for (int run = 0; run < runs; run++) {
+			for (MessageSummary item : BacklogSampler.sample(backlog, SamplingStrategy.RESERVOIR, 10, null).items()) {
+				chosen[backlog.indexOf(item)]++;
+			}
+		}
+
+		// Each item is expected in 200 samples with a standard deviation of about 13
+		for (int index = 0; index < chosen.length; index++) {
+			assertTrue("Item " + index + " chosen " + chosen[index] + " times", chosen[index] > 100 && chosen[index] < 300);
+		}
+	}
+
+	@Test
+	public void reservoirReturnsSmallBacklogAsItIs() {
+		final List<MessageSummary> backlog = backlog(5);
+
+		assertEquals(backlog, BacklogSampler.sample(backlog, SamplingStrategy.RESERVOIR, 10, null).items());
+	}
+
+	@Test
+	public void groupKeepsFirstMessagePerValue() {
+		final List<MessageSummary> backlog = backlog("error", "warn", "error", null, "info", "error", "debug");
+		final BacklogSample sample = BacklogSampler.sample(backlog, SamplingStrategy.GROUP, 3, FIELD);
+
+		assertEquals(Arrays.asList(backlog.get(0), backlog.get(1), backlog.get(3)), sample.items());
+		assertEquals("3 messages with level = error", sample.note(0));
+		assertEquals("1 message with level = warn", sample.note(1));
+		assertEquals("1 message with level = (none)", sample.note(2));
+		assertEquals("_7 backlog messages grouped by level, 2 of them with further values_\n", sample.summary());
+	}
+
+	@Test
+	public void topKFindsMostFrequentValues() {
+		final List<MessageSummary> backlog = backlog("info", "error", "info", "warn", "info", "error", "debug");
+		final BacklogSample sample = BacklogSampler.sample(backlog, SamplingStrategy.TOP_K, 2, FIELD);
+
+		assertSame(backlog.get(0), sample.items().get(0));
+		assertSame(backlog.get(1), sample.items().get(1));
+		assertEquals("3 messages with level = info", sample.note(0));
+		assertEquals("2 messages with level = error", sample.note(1));
+		assertEquals("_Most frequent level values of 7 backlog messages_\n", sample.summary());
+	}
+
+	@Test
+	public void topKKeepsHeavyHitterBeyondCapacity() {
+		// One value per size gets four counters, the unique values keep replacing each other
+		final List<String> values = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			values.add("error");
+			values.add("unique-" + i);
+		}
+		final BacklogSample sample = BacklogSampler.sample(backlog(values.toArray(new String[0])), SamplingStrategy.TOP_K, 1, FIELD);
+
+		assertEquals(1, sample.items().size());
+		assertEquals("50 messages with level = error", sample.note(0));
+	}
+
+	@Test
+	public void topKMarksEstimatedCounts() {
+		final BacklogSample sample = BacklogSampler.sample(backlog("a", "b", "c", "d", "e"), SamplingStrategy.TOP_K, 1, FIELD);
+
+		// The fifth value replaces one of the four counters and inherits its count
+		assertEquals("~2 messages with level = e", sample.note(0));
+	}
+
+	@Test
+	public void escapesFieldValuesInNotes() {
+		final BacklogSample sample = BacklogSampler.sample(backlog("<b>"), SamplingStrategy.GROUP, 1, FIELD);
+
+		assertEquals("1 message with level = &lt;b&gt;", sample.note(0));
+	}
+
+	@Test
+	public void limitsSampleSize() {
+		final String[] values = new String[500];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = "value-" + i;
+		}
+		final List<MessageSummary> backlog = backlog(values);
+
+		for (SamplingStrategy strategy : SamplingStrategy.values()) {
+			assertEquals(BacklogSampler.MAX_SIZE, BacklogSampler.sample(backlog, strategy, 1000, FIELD).items().size());
+		}
+	}
+
+	private static List<MessageSummary> backlog(int size) {
+		return backlog(new String[size]);
+	}
+
+	private static List<MessageSummary> backlog(String... levels) {
+		final List<MessageSummary> backlog = new ArrayList<>(levels.length);
+		for (int i = 0; i < levels.length; i++) {
+			final Message message = new Message("message " + i, "test", new DateTime(1000L * i, DateTimeZone.UTC));
+			if (levels[i] != null) {
+				message.addField(FIELD, levels[i]);
+			}
+			backlog.add(new MessageSummary("graylog_0", message));
+		}
+		return backlog;
+	}
+}
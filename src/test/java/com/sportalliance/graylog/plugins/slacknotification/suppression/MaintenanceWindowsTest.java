@@ -0,0 +1,96 @@
+package com.sportalliance.graylog.plugins.slacknotification.suppression;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+
+import org.junit.Test;
+
+public class MaintenanceWindowsTest {
+
+	@Test
+	public void includesStartAndExcludesEnd() {
+		final MaintenanceWindows windows = MaintenanceWindows.parse("2019-11-02T20:00:00Z/2019-11-02T23:00:00Z");
+
+		assertFalse(windows.contains(millis("2019-11-02T19:59:59.999Z")));
+		assertTrue(windows.contains(millis("2019-11-02T20:00:00Z")));
+		assertTrue(windows.contains(millis("2019-11-02T22:59:59.999Z")));
+		assertFalse(windows.contains(millis("2019-11-02T23:00:00Z")));
+	}
+
+	@Test
+	public void findsWindowAmongSeveral() {
+		final MaintenanceWindows windows = MaintenanceWindows.parse(
+				"2019-11-03T20:00:00Z/2019-11-03T21:00:00Z, 2019-11-01T20:00:00Z/2019-11-01T21:00:00Z;"
+						+ "2019-11-02T20:00:00Z/2019-11-02T21:00:00Z");
+
+		assertFalse(windows.contains(millis("2019-11-01T19:00:00Z")));
+		assertTrue(windows.contains(millis("2019-11-01T20:30:00Z")));
+		assertFalse(windows.contains(millis("2019-11-02T12:00:00Z")));
+		assertTrue(windows.contains(millis("2019-11-02T20:30:00Z")));
+		assertTrue(windows.contains(millis("2019-11-03T20:30:00Z")));
+		assertFalse(windows.contains(millis("2019-11-04T00:00:00Z")));
+	}
+
+	@Test
+	public void mergesContainedWindows() {
+		// Without merging, the lookup would find the inner window, which ended before the timestamp
+		final MaintenanceWindows windows = MaintenanceWindows.parse(
+				"2019-11-02T20:00:00Z/2019-11-02T23:00:00Z 2019-11-02T21:00:00Z/2019-11-02T22:00:00Z");
+
+		assertTrue(windows.contains(millis("2019-11-02T22:30:00Z")));
+		assertFalse(windows.contains(millis("2019-11-02T23:00:00Z")));
+	}
+
+	@Test
+	public void mergesOverlappingAndAdjacentWindows() {
+		final MaintenanceWindows windows = MaintenanceWindows.parse(
+				"2019-11-02T20:00:00Z/2019-11-02T21:00:00Z, 2019-11-02T21:00:00Z/2019-11-02T22:00:00Z,"
+						+ "2019-11-02T21:30:00Z/2019-11-02T23:00:00Z");
+
+		assertTrue(windows.contains(millis("2019-11-02T21:00:00Z")));
+		assertTrue(windows.contains(millis("2019-11-02T22:30:00Z")));
+		assertFalse(windows.contains(millis("2019-11-02T23:00:00Z")));
+	}
+
+	@Test
+	public void takesOffsetsIntoAccount() {
+		final MaintenanceWindows windows = MaintenanceWindows.parse("2019-11-02T21:00:00+01:00/2019-11-02T22:00:00+01:00");
+
+		assertFalse(windows.contains(millis("2019-11-02T19:59:00Z")));
+		assertTrue(windows.contains(millis("2019-11-02T20:00:00Z")));
+		assertFalse(windows.contains(millis("2019-11-02T21:00:00Z")));
+	}
+
+	@Test
+	public void containsNothingWithoutWindows() {
+		assertSame(MaintenanceWindows.NONE, MaintenanceWindows.parse(" "));
+		assertFalse(MaintenanceWindows.NONE.contains(millis("2019-11-02T20:00:00Z")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsWindowEndingBeforeStart() {
+		MaintenanceWindows.parse("2019-11-02T23:00:00Z/2019-11-02T20:00:00Z");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsEmptyWindow() {
+		MaintenanceWindows.parse("2019-11-02T20:00:00Z/2019-11-02T20:00:00Z");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsWindowWithoutEnd() {
+		MaintenanceWindows.parse("2019-11-02T20:00:00Z");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTimestampWithoutOffset() {
+		MaintenanceWindows.parse("2019-11-02T20:00:00/2019-11-02T23:00:00");
+	}
+
+	private static long millis(String instant) {
+		return Instant.parse(instant).toEpochMilli();
+	}
+}
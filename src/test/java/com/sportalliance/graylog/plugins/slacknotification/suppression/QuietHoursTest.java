@@ -0,0 +1,121 @@
+package com.sportalliance.graylog.plugins.slacknotification.suppression;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Instant;
+
+import org.junit.Test;
+
+public class QuietHoursTest {
+
+	@Test
+	public void wrapsTimesAroundMidnight() {
+		final QuietHours quietHours = QuietHours.parse("Mon-Fri 22:00-07:00", "UTC");
+
+		// 2019-07-01 is a Monday
+		assertFalse(quietHours.isQuiet(millis("2019-07-01T21:59:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-07-01T22:00:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-07-02T06:59:00Z")));
+		assertFalse(quietHours.isQuiet(millis("2019-07-02T07:00:00Z")));
+		// Friday night ends on Saturday morning, Saturday night is not quiet
+		assertTrue(quietHours.isQuiet(millis("2019-07-06T06:00:00Z")));
+		assertFalse(quietHours.isQuiet(millis("2019-07-06T23:00:00Z")));
+		// Monday morning belongs to Sunday night, which is not quiet
+		assertFalse(quietHours.isQuiet(millis("2019-07-01T06:00:00Z")));
+	}
+
+	@Test
+	public void wrapsTimesAroundEndOfWeek() {
+		final QuietHours quietHours = QuietHours.parse("Sun 22:00-07:00", "UTC");
+
+		assertFalse(quietHours.isQuiet(millis("2019-06-30T21:59:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-06-30T22:00:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-07-01T06:59:00Z")));
+		assertFalse(quietHours.isQuiet(millis("2019-07-01T07:00:00Z")));
+	}
+
+	@Test
+	public void wrapsDaysAroundEndOfWeek() {
+		final QuietHours quietHours = QuietHours.parse("Fri-Mon 12:00-13:00", "UTC");
+
+		assertTrue(quietHours.isQuiet(millis("2019-07-05T12:30:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-07-06T12:30:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-07-07T12:30:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-07-08T12:30:00Z")));
+		assertFalse(quietHours.isQuiet(millis("2019-07-09T12:30:00Z")));
+		assertFalse(quietHours.isQuiet(millis("2019-07-04T12:30:00Z")));
+	}
+
+	@Test
+	public void coversWholeDaysUntil2400() {
+		final QuietHours quietHours = QuietHours.parse("Sat,Sun 00:00-24:00", "UTC");
+
+		assertFalse(quietHours.isQuiet(millis("2019-07-05T23:59:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-07-06T00:00:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-07-07T23:59:00Z")));
+		assertFalse(quietHours.isQuiet(millis("2019-07-08T00:00:00Z")));
+	}
+
+	@Test
+	public void combinesEntries() {
+		final QuietHours quietHours = QuietHours.parse("Mon 08:00-09:00; Wed 08:00-09:00\n*  12:00-12:30", "UTC");
+
+		assertTrue(quietHours.isQuiet(millis("2019-07-01T08:30:00Z")));
+		assertFalse(quietHours.isQuiet(millis("2019-07-02T08:30:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-07-03T08:30:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-07-02T12:15:00Z")));
+	}
+
+	@Test
+	public void followsDaylightSavingTime() {
+		final QuietHours quietHours = QuietHours.parse("Mon-Fri 22:00-07:00", "Europe/Berlin");
+
+		// 22:00 is 21:00 UTC in winter and 20:00 UTC in summer
+		assertFalse(quietHours.isQuiet(millis("2019-01-07T20:30:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-01-07T21:30:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-07-01T20:30:00Z")));
+		assertFalse(quietHours.isQuiet(millis("2019-07-01T19:30:00Z")));
+	}
+
+	@Test
+	public void followsClockChange() {
+		// On 2019-03-31 clocks in Berlin jump from 02:00 to 03:00, so the window is only one hour long
+		final QuietHours quietHours = QuietHours.parse("Sun 01:00-03:00", "Europe/Berlin");
+
+		assertFalse(quietHours.isQuiet(millis("2019-03-30T23:59:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-03-31T00:00:00Z")));
+		assertTrue(quietHours.isQuiet(millis("2019-03-31T00:59:00Z")));
+		assertFalse(quietHours.isQuiet(millis("2019-03-31T01:00:00Z")));
+	}
+
+	@Test
+	public void isNeverQuietWithoutWindows() {
+		assertFalse(QuietHours.parse("", "UTC").isQuiet(millis("2019-07-01T12:00:00Z")));
+		assertFalse(QuietHours.NONE.isQuiet(millis("2019-07-01T12:00:00Z")));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsTimeAfter2400() {
+		QuietHours.parse("Mon 22:00-24:01", "UTC");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownDay() {
+		QuietHours.parse("Mo 22:00-07:00", "UTC");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsMissingTimeRange() {
+		QuietHours.parse("Mon 22:00", "UTC");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownTimeZone() {
+		QuietHours.parse("Mon 22:00-07:00", "Mars/Olympus_Mons");
+	}
+
+	private static long millis(String instant) {
+		return Instant.parse(instant).toEpochMilli();
+	}
+}
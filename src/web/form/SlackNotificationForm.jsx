@@ -2,8 +2,14 @@ import React from 'react';
 import PropTypes from 'prop-types';
 import lodash from 'lodash';
 
+import { Button } from 'react-bootstrap';
+
 import { Input } from 'components/bootstrap';
 import FormsUtils from 'util/FormsUtils';
+import URLUtils from 'util/URLUtils';
+import fetch from 'logic/rest/FetchProvider';
+
+const TEST_URL = '/plugins/com.sportalliance.graylog.plugins.slacknotification.SlackNotificationPlugin/test';
 
 class SlackNotificationForm extends React.Component {
   static propTypes = {
@@ -36,7 +42,73 @@ class SlackNotificationForm extends React.Component {
     icon_url: '',
     icon_emoji: '',
     graylog_url: '',
-    proxy: ''
+    proxy: '',
+    digest_mode: false,
+    digest_interval_minutes: 10,
+    block_kit: false,
+    compression_threshold: 0,
+    message_format: 'slack',
+    additional_targets: [],
+    backlog_fields: '',
+    backlog_fields_short: true,
+    backlog_link: false,
+    backlog_link_items: 3,
+    live_message: false,
+    api_token: '',
+    live_message_update_interval_seconds: 30,
+    live_message_window_minutes: 60,
+    quiet_hours: '',
+    time_zone: 'UTC',
+    maintenance_windows: '',
+    repeat_suppression_minutes: 0,
+    backlog_upload: '',
+    backlog_upload_threshold: 50,
+    backlog_sampling: '',
+    backlog_sample_size: 5,
+    backlog_sample_field: 'source',
+  };
+
+  state = {
+    testRunning: false,
+    testSend: false,
+    testResult: undefined,
+    testError: undefined,
+  };
+
+  handleTest = () => {
+    const { config } = this.props;
+    const { testSend } = this.state;
+    this.setState({ testRunning: true, testResult: undefined, testError: undefined });
+    const body = { config: { ...config, type: 'slack-notification-v1' }, send: testSend };
+    fetch('POST', URLUtils.qualifyUrl(TEST_URL), body)
+      .then(
+        result => this.setState({ testResult: result }),
+        error => this.setState({ testError: error.message }),
+      )
+      .finally(() => this.setState({ testRunning: false }));
+  };
+
+  renderTestResult = () => {
+    const { testResult, testError } = this.state;
+    if (testError) {
+      return <p className="text-danger">Test failed: {testError}</p>;
+    }
+    if (!testResult) {
+      return null;
+    }
+
+    const { timings } = testResult;
+    return (
+      <pre>
+        {`Sent: ${testResult.sent} (HTTP ${testResult.http_status})${testResult.error ? `, error: ${testResult.error}` : ''}\n`}
+        {`Payload size: ${testResult.payload_size} bytes\n`}
+        {`Model build: ${timings.model_build_ms.toFixed(2)} ms\n`}
+        {`Template render: ${timings.template_render_ms.toFixed(2)} ms\n`}
+        {`Serialize: ${timings.serialize_ms.toFixed(2)} ms\n`}
+        {`Connect: ${timings.connect_ms.toFixed(2)} ms\n`}
+        {`Response: ${timings.response_ms.toFixed(2)} ms`}
+      </pre>
+    );
   };
 
   propagateChange = (key, value) => {
@@ -46,13 +118,31 @@ class SlackNotificationForm extends React.Component {
     onChange(nextConfig);
   };
 
+  handleTargetsChange = (event) => {
+    // One target per line: <format> <webhook URL>
+    const targets = event.target.value.split('\n')
+      .map(line => line.trim())
+      .filter(line => line.length > 0)
+      .map((line) => {
+        const [format, webhookUrl = ''] = line.split(/\s+/, 2);
+        return { format: format, webhook_url: webhookUrl };
+      });
+    this.propagateChange('additional_targets', targets);
+  };
+
   handleChange = (event) => {
     const { name } = event.target;
     this.propagateChange(name, FormsUtils.getValueFromInput(event.target));
   };
 
+  handleTestSendChange = (event) => {
+    // Only an option of the test, not part of the config
+    this.setState({ testSend: FormsUtils.getValueFromInput(event.target) });
+  };
+
   render() {
     const { config, validation } = this.props;
+    const { testRunning, testSend } = this.state;
 
     return (
       <React.Fragment>
@@ -74,6 +164,28 @@ class SlackNotificationForm extends React.Component {
                value={config.webhook_url || ''}
                onChange={this.handleChange}
                required />
+        <Input id="notification-messageFormat"
+               name="message_format"
+               label="Message Format"
+               type="select"
+               bsStyle={validation.errors.message_format ? 'error' : null}
+               help={lodash.get(validation, 'errors.message_format[0]', 'Payload format the webhook URL understands')}
+               value={config.message_format || 'slack'}
+               onChange={this.handleChange}>
+          <option value="slack">Slack</option>
+          <option value="mattermost">Mattermost</option>
+          <option value="rocketchat">Rocket.Chat</option>
+          <option value="teams">Microsoft Teams</option>
+          <option value="generic">Generic JSON</option>
+        </Input>
+        <Input id="notification-additionalTargets"
+               name="additional_targets"
+               label="Additional Targets (optional)"
+               type="textarea"
+               bsStyle={validation.errors.additional_targets ? 'error' : null}
+               help={lodash.get(validation, 'errors.additional_targets[0]', 'Further receivers of the same message, one per line as "<format> <webhook URL>", e.g. "teams https://example.webhook.office.com/..."')}
+               value={(config.additional_targets || []).map(target => `${target.format} ${target.webhook_url}`).join('\n')}
+               onChange={this.handleTargetsChange} />
         <Input id="notification-channel"
                name="channel"
                label="Channel"
@@ -99,6 +211,98 @@ class SlackNotificationForm extends React.Component {
                help={lodash.get(validation, 'errors.backlog_item_message[0]', 'Template that is added as attachment to the slack message for each backlog item. The following properties are available for template building: "event_definition", "event", "backlog_item", "streams", "graylog_url". See http://docs.graylog.org/en/3.1/pages/streams/alerts.html for more details. Slack recommends to have no more than 20 attachments and throws an error when attempting to include more than 100. So don\'t use a too high backlog items number. Also consider that other parts of the slack notification may use attachments!')}
                value={config.backlog_item_message || ''}
                onChange={this.handleChange} />
+        <Input id="notification-backlogFields"
+               name="backlog_fields"
+               label="Backlog Fields (optional)"
+               type="text"
+               bsStyle={validation.errors.backlog_fields ? 'error' : null}
+               help={lodash.get(validation, 'errors.backlog_fields[0]', 'Comma separated message fields, e.g. "source, level, http_status". If set, each backlog item shows these fields instead of the Backlog Item Message, which is faster to build than a template')}
+               value={config.backlog_fields || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-backlogFieldsShort"
+               name="backlog_fields_short"
+               label="Short Backlog Fields (optional)"
+               type="checkbox"
+               bsStyle={validation.errors.backlog_fields_short ? 'error' : null}
+               help={lodash.get(validation, 'errors.backlog_fields_short[0]', 'Show the backlog fields side by side instead of one per line')}
+               checked={config.backlog_fields_short || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-backlogLink"
+               name="backlog_link"
+               label="Backlog Link (optional)"
+               type="checkbox"
+               bsStyle={validation.errors.backlog_link ? 'error' : null}
+               help={lodash.get(validation, 'errors.backlog_link[0]', 'Only render the first backlog items and add a link to a Graylog search with the whole backlog. Requires the Graylog URL')}
+               checked={config.backlog_link || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-backlogLinkItems"
+               name="backlog_link_items"
+               label="Backlog Link Items (optional)"
+               type="number"
+               min="0"
+               bsStyle={validation.errors.backlog_link_items ? 'error' : null}
+               help={lodash.get(validation, 'errors.backlog_link_items[0]', 'Number of backlog items rendered in backlog link mode')}
+               value={config.backlog_link_items || 0}
+               onChange={this.handleChange} />
+        <Input id="notification-backlogSampling"
+               name="backlog_sampling"
+               label="Backlog Sampling (optional)"
+               type="select"
+               bsStyle={validation.errors.backlog_sampling ? 'error' : null}
+               help={lodash.get(validation, 'errors.backlog_sampling[0]', 'How the rendered items of backlogs larger than the Backlog Sample Size are chosen')}
+               value={config.backlog_sampling || ''}
+               onChange={this.handleChange}>
+          <option value="">First items</option>
+          <option value="reservoir">Random sample</option>
+          <option value="group">One example per value of the sample field</option>
+          <option value="top_k">Most frequent values of the sample field</option>
+        </Input>
+        <Input id="notification-backlogSampleSize"
+               name="backlog_sample_size"
+               label="Backlog Sample Size (optional)"
+               type="number"
+               min="1"
+               bsStyle={validation.errors.backlog_sample_size ? 'error' : null}
+               help={lodash.get(validation, 'errors.backlog_sample_size[0]', 'Number of backlog items rendered when sampling')}
+               value={config.backlog_sample_size || 1}
+               onChange={this.handleChange} />
+        <Input id="notification-backlogSampleField"
+               name="backlog_sample_field"
+               label="Backlog Sample Field (optional)"
+               type="text"
+               bsStyle={validation.errors.backlog_sample_field ? 'error' : null}
+               help={lodash.get(validation, 'errors.backlog_sample_field[0]', 'Message field the backlog is grouped or counted by, e.g. "source"')}
+               value={config.backlog_sample_field || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-backlogUpload"
+               name="backlog_upload"
+               label="Backlog Upload (optional)"
+               type="select"
+               bsStyle={validation.errors.backlog_upload ? 'error' : null}
+               help={lodash.get(validation, 'errors.backlog_upload[0]', 'Upload large backlogs as a file to the channel instead of listing them in the message. Requires a Slack Web API token with the files:write scope')}
+               value={config.backlog_upload || ''}
+               onChange={this.handleChange}>
+          <option value="">Disabled</option>
+          <option value="csv">CSV</option>
+          <option value="ndjson">NDJSON</option>
+        </Input>
+        <Input id="notification-backlogUploadThreshold"
+               name="backlog_upload_threshold"
+               label="Backlog Upload Threshold (optional)"
+               type="number"
+               min="0"
+               bsStyle={validation.errors.backlog_upload_threshold ? 'error' : null}
+               help={lodash.get(validation, 'errors.backlog_upload_threshold[0]', 'Backlog size above which the backlog is uploaded as a file')}
+               value={config.backlog_upload_threshold || 0}
+               onChange={this.handleChange} />
+        <Input id="notification-blockKit"
+               name="block_kit"
+               label="Block Kit Layout (optional)"
+               type="checkbox"
+               bsStyle={validation.errors.block_kit ? 'error' : null}
+               help={lodash.get(validation, 'errors.block_kit[0]', 'Send the message as Slack Block Kit blocks instead of legacy attachments')}
+               checked={config.block_kit || ''}
+               onChange={this.handleChange} />
         <Input id="notification-userName"
                name="user_name"
                label="User Name (optional)"
@@ -155,6 +359,111 @@ class SlackNotificationForm extends React.Component {
                help={lodash.get(validation, 'errors.proxy[0]', 'Please insert the proxy information in the follwoing format: <ProxyAddress>:<Port>')}
                value={config.proxy || ''}
                onChange={this.handleChange} />
+        <Input id="notification-digestMode"
+               name="digest_mode"
+               label="Digest Mode (optional)"
+               type="checkbox"
+               bsStyle={validation.errors.digest_mode ? 'error' : null}
+               help={lodash.get(validation, 'errors.digest_mode[0]', 'Collect events and send one summary per digest interval instead of one message per event')}
+               checked={config.digest_mode || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-digestIntervalMinutes"
+               name="digest_interval_minutes"
+               label="Digest Interval (optional)"
+               type="number"
+               min="1"
+               bsStyle={validation.errors.digest_interval_minutes ? 'error' : null}
+               help={lodash.get(validation, 'errors.digest_interval_minutes[0]', 'Minutes between two digest messages when digest mode is enabled')}
+               value={config.digest_interval_minutes || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-liveMessage"
+               name="live_message"
+               label="Live Message (optional)"
+               type="checkbox"
+               bsStyle={validation.errors.live_message ? 'error' : null}
+               help={lodash.get(validation, 'errors.live_message[0]', 'Post one message per alert via the Slack Web API and update its counter when the alert fires again instead of posting again')}
+               checked={config.live_message || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-apiToken"
+               name="api_token"
+               label="Slack API Token (optional)"
+               type="password"
+               bsStyle={validation.errors.api_token ? 'error' : null}
+               help={lodash.get(validation, 'errors.api_token[0]', 'Bot token with the chat:write scope, required for live messages, and with the files:write scope, required for backlog uploads. Stored encrypted, keep the field as it is to keep the token')}
+               value={config.api_token || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-liveMessageUpdateIntervalSeconds"
+               name="live_message_update_interval_seconds"
+               label="Live Message Update Interval (optional)"
+               type="number"
+               min="1"
+               bsStyle={validation.errors.live_message_update_interval_seconds ? 'error' : null}
+               help={lodash.get(validation, 'errors.live_message_update_interval_seconds[0]', 'Minimum seconds between two updates of a live message, fires in between are combined')}
+               value={config.live_message_update_interval_seconds || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-liveMessageWindowMinutes"
+               name="live_message_window_minutes"
+               label="Live Message Window (optional)"
+               type="number"
+               min="1"
+               bsStyle={validation.errors.live_message_window_minutes ? 'error' : null}
+               help={lodash.get(validation, 'errors.live_message_window_minutes[0]', 'Minutes without fires after which the alert is posted as a new message')}
+               value={config.live_message_window_minutes || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-quietHours"
+               name="quiet_hours"
+               label="Quiet Hours (optional)"
+               type="text"
+               bsStyle={validation.errors.quiet_hours ? 'error' : null}
+               help={lodash.get(validation, 'errors.quiet_hours[0]', 'Recurring windows in which events are only counted, e.g. "Mon-Fri 22:00-07:00; Sat,Sun 00:00-24:00"')}
+               value={config.quiet_hours || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-timeZone"
+               name="time_zone"
+               label="Time Zone (optional)"
+               type="text"
+               bsStyle={validation.errors.time_zone ? 'error' : null}
+               help={lodash.get(validation, 'errors.time_zone[0]', 'Time zone of the quiet hours, e.g. "Europe/Berlin"')}
+               value={config.time_zone || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-maintenanceWindows"
+               name="maintenance_windows"
+               label="Maintenance Windows (optional)"
+               type="textarea"
+               bsStyle={validation.errors.maintenance_windows ? 'error' : null}
+               help={lodash.get(validation, 'errors.maintenance_windows[0]', 'One-off windows in which events are only counted, one per line as "<start>/<end>" in ISO 8601, e.g. "2019-11-02T20:00:00Z/2019-11-02T23:00:00Z"')}
+               value={config.maintenance_windows || ''}
+               onChange={this.handleChange} />
+        <Input id="notification-repeatSuppressionMinutes"
+               name="repeat_suppression_minutes"
+               label="Repeat Suppression (optional)"
+               type="number"
+               min="0"
+               bsStyle={validation.errors.repeat_suppression_minutes ? 'error' : null}
+               help={lodash.get(validation, 'errors.repeat_suppression_minutes[0]', 'Minutes in which further events with the same key are only counted, 0 sends all of them')}
+               value={config.repeat_suppression_minutes || 0}
+               onChange={this.handleChange} />
+        <Input id="notification-compressionThreshold"
+               name="compression_threshold"
+               label="Compression Threshold (optional)"
+               type="number"
+               min="0"
+               bsStyle={validation.errors.compression_threshold ? 'error' : null}
+               help={lodash.get(validation, 'errors.compression_threshold[0]', 'Compress requests with gzip when the payload has at least this many bytes. Only for Slack compatible receivers that accept compressed requests, Slack itself does not. 0 disables compression')}
+               value={config.compression_threshold || 0}
+               onChange={this.handleChange} />
+        <Input id="notification-testSend"
+               name="test_send"
+               label="Send test message"
+               type="checkbox"
+               help="Send the sample message to the webhook when testing, otherwise it is only rendered"
+               checked={testSend}
+               onChange={this.handleTestSendChange} />
+        <Button bsStyle="info" bsSize="small" disabled={testRunning || !config.webhook_url} onClick={this.handleTest}>
+          {testRunning ? 'Testing...' : 'Test & measure'}
+        </Button>
+        <span className="help-block">Renders a sample message with this configuration, sends it to the webhook if enabled above and shows the time spent per step.</span>
+        {this.renderTestResult()}
       </React.Fragment>
     );
   }
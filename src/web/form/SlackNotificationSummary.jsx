@@ -27,6 +27,14 @@ class SlackNotificationSummary extends React.Component {
             <td>Webhook URL</td>
             <td>{notification.config.webhook_url}</td>
           </tr>
+          <tr>
+            <td>Message Format</td>
+            <td>{notification.config.message_format}</td>
+          </tr>
+          <tr>
+            <td>Additional Targets</td>
+            <td>{(notification.config.additional_targets || []).map(target => target.format).join(', ')}</td>
+          </tr>
           <tr>
             <td>Channel</td>
             <td>{notification.config.channel}</td>
@@ -39,6 +47,46 @@ class SlackNotificationSummary extends React.Component {
             <td>Backlog Item Message</td>
             <td>{notification.config.backlog_item_message}</td>
           </tr>
+          <tr>
+            <td>Backlog Fields</td>
+            <td>{notification.config.backlog_fields}</td>
+          </tr>
+          <tr>
+            <td>Short Backlog Fields</td>
+            <td>{notification.config.backlog_fields_short}</td>
+          </tr>
+          <tr>
+            <td>Backlog Link</td>
+            <td>{notification.config.backlog_link}</td>
+          </tr>
+          <tr>
+            <td>Backlog Link Items</td>
+            <td>{notification.config.backlog_link_items}</td>
+          </tr>
+          <tr>
+            <td>Backlog Sampling</td>
+            <td>{notification.config.backlog_sampling}</td>
+          </tr>
+          <tr>
+            <td>Backlog Sample Size</td>
+            <td>{notification.config.backlog_sample_size}</td>
+          </tr>
+          <tr>
+            <td>Backlog Sample Field</td>
+            <td>{notification.config.backlog_sample_field}</td>
+          </tr>
+          <tr>
+            <td>Backlog Upload</td>
+            <td>{notification.config.backlog_upload}</td>
+          </tr>
+          <tr>
+            <td>Backlog Upload Threshold</td>
+            <td>{notification.config.backlog_upload_threshold}</td>
+          </tr>
+          <tr>
+            <td>Block Kit Layout</td>
+            <td>{notification.config.block_kit}</td>
+          </tr>
           <tr>
             <td>User Name</td>
             <td>{notification.config.user_name}</td>
@@ -67,6 +115,46 @@ class SlackNotificationSummary extends React.Component {
             <td>Proxy</td>
             <td>{notification.config.proxy}</td>
           </tr>
+          <tr>
+            <td>Digest Mode</td>
+            <td>{notification.config.digest_mode}</td>
+          </tr>
+          <tr>
+            <td>Digest Interval (minutes)</td>
+            <td>{notification.config.digest_interval_minutes}</td>
+          </tr>
+          <tr>
+            <td>Live Message</td>
+            <td>{notification.config.live_message}</td>
+          </tr>
+          <tr>
+            <td>Live Message Update Interval (seconds)</td>
+            <td>{notification.config.live_message_update_interval_seconds}</td>
+          </tr>
+          <tr>
+            <td>Live Message Window (minutes)</td>
+            <td>{notification.config.live_message_window_minutes}</td>
+          </tr>
+          <tr>
+            <td>Quiet Hours</td>
+            <td>{notification.config.quiet_hours}</td>
+          </tr>
+          <tr>
+            <td>Time Zone</td>
+            <td>{notification.config.time_zone}</td>
+          </tr>
+          <tr>
+            <td>Maintenance Windows</td>
+            <td>{notification.config.maintenance_windows}</td>
+          </tr>
+          <tr>
+            <td>Repeat Suppression (minutes)</td>
+            <td>{notification.config.repeat_suppression_minutes}</td>
+          </tr>
+          <tr>
+            <td>Compression Threshold (bytes)</td>
+            <td>{notification.config.compression_threshold}</td>
+          </tr>
         </React.Fragment>
       </CommonNotificationSummary>
     );